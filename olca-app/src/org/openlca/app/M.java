@@ -321,6 +321,8 @@ public class M extends NLS {
 	public static String Factor;
 	public static String Factors;
 	public static String FailedToLoadFlowProperty;
+	public static String FailedToOpenResult;
+	public static String FailedToSaveResultIn;
 	public static String Fetch;
 	public static String FetchRemoteModel;
 	public static String FetchingChanges;
@@ -501,6 +503,7 @@ public class M extends NLS {
 	public static String MaximumMemoryUsage;
 	public static String Mean;
 	public static String MeanFormula;
+	public static String Median;
 	public static String MediumOpportunity;
 	public static String MediumRisk;
 	public static String MemoryToHighMessage;
@@ -596,6 +599,7 @@ public class M extends NLS {
 	public static String NumberOfDecimalPlaces;
 	public static String NumberOfIterations;
 	public static String NumberOfSimulations;
+	public static String NumberOfThreads;
 
 	// O
 	public static String OK;
@@ -612,6 +616,8 @@ public class M extends NLS {
 	public static String OpenMiniatureView;
 	public static String OpenPluginManager;
 	public static String OpenProvider;
+	public static String OpenResult;
+	public static String OpenTheDatabaseOfTheResult;
 	public static String OpenUpdateManager;
 	public static String Other;
 	public static String OutOfMemory;
@@ -635,6 +641,8 @@ public class M extends NLS {
 	public static String Paste;
 	public static String PedigreeMatrix;
 	public static String PedigreeMatrixMessage;
+	public static String Percentile5;
+	public static String Percentile95;
 	public static String Physical;
 	public static String PhysicalAndEconomicAllocation;
 	public static String PleaseEnterAName;
@@ -738,6 +746,7 @@ public class M extends NLS {
 	public static String RestoreDatabase;
 	public static String Result;
 	public static String Results;
+	public static String ResultSaved;
 	public static String ResultsOf;
 	public static String ResultsOfProject;
 	public static String Reviewer;
@@ -758,6 +767,7 @@ public class M extends NLS {
 	public static String SaveAsLCIResult;
 	public static String SaveChanges;
 	public static String SaveChangesQuestion;
+	public static String SaveResult;
 	public static String SavingDiagramAsImageIn;
 	public static String ScanningRepository;
 	public static String Scores;
@@ -14,11 +14,18 @@ public final class Preferences extends AbstractPreferenceInitializer {
 	public static final String LAST_IMPORT_FOLDER = "LAST_IMPORT_FOLDER";
 	public static final String LAST_EXPORT_FOLDER = "LAST_EXPORT_FOLDER";
 
+	/**
+	 * The number of threads for Monte Carlo simulations; 0 means that the
+	 * number is derived from the available processors.
+	 */
+	public static final String SIMULATION_THREADS = "SIMULATION_THREADS";
+
 	@Override
 	public void initializeDefaultPreferences() {
 		IPreferenceStore store = getStore();
 		store.setDefault(NUMBER_ACCURACY, 5);
 		store.setDefault(FORMAT_INPUT_VALUES, true);
+		store.setDefault(SIMULATION_THREADS, 0);
 	}
 
 	public static void init() {
@@ -9,6 +9,7 @@ import org.openlca.app.db.Database;
 import org.openlca.app.navigation.CategoryElement;
 import org.openlca.app.navigation.INavigationElement;
 import org.openlca.app.navigation.ModelElement;
+import org.openlca.app.navigation.ModelPageElement;
 import org.openlca.app.util.Labels;
 import org.openlca.cloud.api.RepositoryClient;
 import org.openlca.cloud.model.data.Commit;
@@ -37,6 +38,8 @@ public class CloudUtil {
 		Category category = null;
 		if (element.getParent() instanceof CategoryElement)
 			category = ((CategoryElement) element.getParent()).getContent();
+		else if (element.getParent() instanceof ModelPageElement)
+			category = ((ModelPageElement) element.getParent()).getCategory();
 		return Datasets.toDataset(descriptor, category);
 	}
 
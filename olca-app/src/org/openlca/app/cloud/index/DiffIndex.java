@@ -1,10 +1,15 @@
 package org.openlca.app.cloud.index;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
 
 import org.mapdb.DB;
@@ -15,18 +20,89 @@ import org.openlca.cloud.model.data.Dataset;
 import org.openlca.cloud.model.data.FileReference;
 import org.openlca.core.model.ModelType;
 import org.openlca.util.Dirs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 // NOT SYNCHRONIZED //
+/**
+ * Besides the diffs, the index file contains secondary sets of the IDs of the
+ * changed (by model type), untracked, and new/changed/deleted diffs and a
+ * counter of the changed diffs. These are maintained with each update, so
+ * that queries for changes only read the changed diffs and not the complete
+ * index.
+ * <p>
+ * In batch mode (see {@link #beginBatch()}), the updates of the parent
+ * categories and changed top-level elements are collected in memory and each
+ * touched parent is written only once when the batch is flushed (with
+ * {@link #commit()} or {@link #endBatch()}). Until then, the changed children
+ * of the parents and {@link #hasChanged(ModelType)} are not up to date.
+ */
 public class DiffIndex {
 
+	private static final char SEP = '\u0000';
+
+	/** Marks a category that is not in the index in the parent cache. */
+	private static final String MISSING = "";
+
 	private File file;
 	private DB db;
 	private Map<String, Diff> index;
 	private Map<String, Set<String>> changedTopLevelElements;
 
+	/** The changed diffs in the format: model type SEP ID. */
+	private NavigableSet<String> changed;
+
+	/** The IDs of the untracked diffs. */
+	private NavigableSet<String> untracked;
+
+	/** The diffs by type (without NO_DIFF) in the format: type SEP ID. */
+	private NavigableSet<String> diffTypes;
+
+	private org.mapdb.Atomic.Integer changedCount;
+
+	// the state of the batch mode; these fields are null if the index is
+	// not in batch mode
+
+	/** Parent category key -> (child ID -> changed). */
+	private Map<String, Map<String, Boolean>> childDeltas;
+
+	/** Model type -> (top-level ref. ID -> changed). */
+	private Map<String, Map<String, Boolean>> topLevelDeltas;
+
+	/** Category key -> key of its parent category, or MISSING. */
+	private Map<String, String> parentKeys;
+
 	public static DiffIndex getFor(RepositoryClient client) {
 		RepositoryConfig config = client.getConfig();
-		return new DiffIndex(getIndexDirectory(config));
+		File dir = getIndexDirectory(config);
+		recover(dir);
+		return new DiffIndex(dir);
+	}
+
+	/**
+	 * Completes or reverts a replacement of the index directory that was
+	 * interrupted (see {@link #replaceWith(DiffIndex)}).
+	 */
+	private static void recover(File dir) {
+		File old = siblingOf(dir, ".old");
+		if (!old.exists())
+			return;
+		if (dir.exists()) {
+			// the new index was already moved into place
+			Dirs.delete(old.toPath());
+			return;
+		}
+		try {
+			Files.move(old.toPath(), dir.toPath(),
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Logger log = LoggerFactory.getLogger(DiffIndex.class);
+			log.error("failed to restore diff index from " + old, e);
+		}
+	}
+
+	private static File siblingOf(File dir, String suffix) {
+		return new File(dir.getParentFile(), dir.getName() + suffix);
 	}
 
 	public static File getIndexDirectory(RepositoryConfig config) {
@@ -42,7 +118,7 @@ public class DiffIndex {
 	}
 
 	public void init() {
-		db.atomicInteger("version").set(2);
+		db.atomicInteger("version").set(DiffIndexUpgrades.CURRENT_VERSION);
 	}
 
 	File getDir() {
@@ -55,6 +131,66 @@ public class DiffIndex {
 		db = DBMaker.fileDB(file).lockDisable().closeOnJvmShutdown().make();
 		index = db.hashMap("diffIndex");
 		changedTopLevelElements = db.hashMap("changedTopLevelElements");
+		changed = db.treeSet("changed");
+		untracked = db.treeSet("untracked");
+		diffTypes = db.treeSet("diffTypes");
+		changedCount = db.atomicInteger("changedCount");
+	}
+
+	/**
+	 * Rebuilds the secondary sets and the changed counter from the diffs in
+	 * the index (used when upgrading an index).
+	 */
+	void buildSecondaryIndices() {
+		changed.clear();
+		untracked.clear();
+		diffTypes.clear();
+		changedCount.set(0);
+		for (Map.Entry<String, Diff> e : index.entrySet()) {
+			updateSecondaryIndices(e.getKey(), e.getValue());
+		}
+	}
+
+	private void put(String key, Diff diff) {
+		index.put(key, diff);
+		invalidateParentKey(key);
+		updateSecondaryIndices(key, diff);
+	}
+
+	private void updateSecondaryIndices(String key, Diff diff) {
+		String changedKey = diff.getDataset().type.name() + SEP + key;
+		if (diff.hasChanged()) {
+			if (changed.add(changedKey)) {
+				changedCount.incrementAndGet();
+			}
+		} else if (changed.remove(changedKey)) {
+			changedCount.decrementAndGet();
+		}
+		if (diff.tracked) {
+			untracked.remove(key);
+		} else {
+			untracked.add(key);
+		}
+		for (DiffType type : DiffType.values()) {
+			if (type == DiffType.NO_DIFF)
+				continue;
+			if (type == diff.type) {
+				diffTypes.add(type.name() + SEP + key);
+			} else {
+				diffTypes.remove(type.name() + SEP + key);
+			}
+		}
+	}
+
+	private void removeSecondaryIndices(String key, Diff diff) {
+		String changedKey = diff.getDataset().type.name() + SEP + key;
+		if (changed.remove(changedKey)) {
+			changedCount.decrementAndGet();
+		}
+		untracked.remove(key);
+		if (diff.type != DiffType.NO_DIFF) {
+			diffTypes.remove(diff.type.name() + SEP + key);
+		}
 	}
 
 	void open() {
@@ -66,11 +202,17 @@ public class DiffIndex {
 	public void close() {
 		if (db.isClosed())
 			return;
+		flushBatch();
 		db.commit();
 		db.close();
 	}
 
 	public void clear() {
+		if (childDeltas != null) {
+			childDeltas.clear();
+			topLevelDeltas.clear();
+			parentKeys.clear();
+		}
 		close();
 		File dir = file.getParentFile();
 		Dirs.delete(dir.toPath());
@@ -80,6 +222,58 @@ public class DiffIndex {
 		db.commit();
 	}
 
+	/**
+	 * Creates a new, empty index in a directory next to the directory of this
+	 * index. The new index can be filled and then replace this index (see
+	 * {@link #replaceWith(DiffIndex)}).
+	 */
+	DiffIndex createBuild() {
+		File buildDir = siblingOf(getDir(), ".build");
+		if (buildDir.exists()) {
+			Dirs.delete(buildDir.toPath());
+		}
+		return new DiffIndex(buildDir);
+	}
+
+	/**
+	 * Replaces the content of this index with the content of the given index.
+	 * The directory of this index is renamed, the directory of the other index
+	 * is renamed to the directory of this index, and then the old directory is
+	 * deleted. Thus, no files of the old index are left in the directory, and
+	 * if the replacement is interrupted, the old directory is restored when
+	 * the index is opened the next time.
+	 */
+	void replaceWith(DiffIndex build) throws IOException {
+		build.close();
+		close();
+		try {
+			File dir = getDir();
+			File old = siblingOf(dir, ".old");
+			if (old.exists()) {
+				Dirs.delete(old.toPath());
+			}
+			Files.move(dir.toPath(), old.toPath(),
+					StandardCopyOption.ATOMIC_MOVE);
+			try {
+				Files.move(build.getDir().toPath(), dir.toPath(),
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				Files.move(old.toPath(), dir.toPath(),
+						StandardCopyOption.ATOMIC_MOVE);
+				throw e;
+			}
+			Dirs.delete(old.toPath());
+		} finally {
+			open();
+		}
+	}
+
+	/** Closes the index and deletes its directory. */
+	void delete() {
+		close();
+		Dirs.delete(getDir().toPath());
+	}
+
 	public void add(Dataset dataset, long localId) {
 		Diff diff = index.get(dataset.toId());
 		if (diff != null)
@@ -87,6 +281,7 @@ public class DiffIndex {
 		diff = new Diff(dataset);
 		diff.localId = localId;
 		index.put(dataset.toId(), diff);
+		invalidateParentKey(dataset.toId());
 	}
 
 	public void setTracked(FileReference ref, boolean value) {
@@ -96,7 +291,7 @@ public class DiffIndex {
 		diff.tracked = value;
 		boolean isChanged = value && diff.changed != null;
 		updateParents(diff, isChanged);
-		index.put(ref.toId(), diff);
+		put(ref.toId(), diff);
 	}
 
 	public void update(Dataset dataset, DiffType newType) {
@@ -122,7 +317,7 @@ public class DiffIndex {
 			diff.changed = dataset;
 		}
 		updateParents(diff, changed);
-		index.put(dataset.toId(), diff);
+		put(dataset.toId(), diff);
 	}
 
 	private void updateParents(Diff diff, boolean changed) {
@@ -135,6 +330,10 @@ public class DiffIndex {
 	}
 
 	private void updateParents(Dataset dataset, boolean changed) {
+		if (childDeltas != null) {
+			collectParentUpdates(dataset, changed);
+			return;
+		}
 		String parentKey =  ModelType.CATEGORY.name() + dataset.categoryRefId;
 		while (parentKey != null) {
 			Diff parent = index.get(parentKey);
@@ -165,44 +364,166 @@ public class DiffIndex {
 		changedTopLevelElements.put(type, elements);
 	}
 
-	public Diff get(FileReference ref) {
-		return index.get(ref.toId());
+	/**
+	 * Starts the batch mode: the updates of the parent categories are
+	 * collected until the next commit or the end of the batch.
+	 */
+	public void beginBatch() {
+		if (childDeltas != null)
+			return;
+		childDeltas = new HashMap<>();
+		topLevelDeltas = new HashMap<>();
+		parentKeys = new HashMap<>();
 	}
 
-	public List<Diff> getChanged() {
-		List<Diff> changed = new ArrayList<>();
-		for (Diff diff : index.values()) {
-			if (diff.hasChanged()) {
-				changed.add(diff);
+	/** Writes the collected updates and ends the batch mode. */
+	public void endBatch() {
+		flushBatch();
+		childDeltas = null;
+		topLevelDeltas = null;
+		parentKeys = null;
+	}
+
+	private void collectParentUpdates(Dataset dataset, boolean changed) {
+		String childId = dataset.toId();
+		String key = ModelType.CATEGORY.name() + dataset.categoryRefId;
+		while (true) {
+			String next = parentKeys.get(key);
+			if (next == null) {
+				Diff parent = index.get(key);
+				next = parent == null
+						? MISSING
+						: ModelType.CATEGORY.name() + parent.dataset.categoryRefId;
+				parentKeys.put(key, next);
+			}
+			if (MISSING.equals(next))
+				break;
+			Map<String, Boolean> children = childDeltas.get(key);
+			if (children == null) {
+				children = new HashMap<>();
+				childDeltas.put(key, children);
 			}
+			children.put(childId, changed);
+			key = next;
+		}
+		ModelType categoryType = dataset.type == ModelType.CATEGORY ? dataset.categoryType : dataset.type;
+		Map<String, Boolean> elements = topLevelDeltas.get(categoryType.name());
+		if (elements == null) {
+			elements = new HashMap<>();
+			topLevelDeltas.put(categoryType.name(), elements);
 		}
-		return changed;
+		elements.put(dataset.refId, changed);
 	}
 
-	public List<String> getUntracked() {
-		List<String> untracked = new ArrayList<>();
-		for (Diff diff : index.values()) {
-			if (!diff.tracked) {
-				untracked.add(diff.dataset.toId());
+	/** Writes each parent that was touched in the batch once. */
+	private void flushBatch() {
+		if (childDeltas == null)
+			return;
+		for (Map.Entry<String, Map<String, Boolean>> e : childDeltas.entrySet()) {
+			Diff parent = index.get(e.getKey());
+			if (parent == null)
+				continue;
+			apply(parent.changedChildren, e.getValue());
+			index.put(e.getKey(), parent);
+		}
+		for (Map.Entry<String, Map<String, Boolean>> e : topLevelDeltas.entrySet()) {
+			Set<String> elements = changedTopLevelElements.get(e.getKey());
+			if (elements == null) {
+				elements = new HashSet<>();
 			}
+			apply(elements, e.getValue());
+			changedTopLevelElements.put(e.getKey(), elements);
 		}
-		return untracked;
+		childDeltas.clear();
+		topLevelDeltas.clear();
+	}
+
+	private void apply(Set<String> set, Map<String, Boolean> deltas) {
+		for (Map.Entry<String, Boolean> delta : deltas.entrySet()) {
+			if (delta.getValue()) {
+				set.add(delta.getKey());
+			} else {
+				set.remove(delta.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Removes a cached parent key when a category is added, updated, or
+	 * removed in batch mode.
+	 */
+	private void invalidateParentKey(String key) {
+		if (parentKeys == null)
+			return;
+		if (key.startsWith(ModelType.CATEGORY.name())) {
+			parentKeys.remove(key);
+		}
+	}
+
+	public Diff get(FileReference ref) {
+		return index.get(ref.toId());
+	}
+
+	public List<Diff> getChanged() {
+		return getDiffs(changed);
+	}
+
+	/** Returns the changed diffs of the given model type. */
+	public List<Diff> getChanged(ModelType type) {
+		String prefix = type.name() + SEP;
+		return getDiffs(changed.subSet(
+				prefix, true, prefix + '\uffff', false));
+	}
+
+	/**
+	 * Returns the number of changed diffs; this is the same as
+	 * `getChanged().size()` but without reading the diffs.
+	 */
+	public int getChangedCount() {
+		return changedCount.get();
+	}
+
+	public List<String> getUntracked() {
+		return new ArrayList<>(untracked);
 	}
 
 	public List<Diff> getAll(DiffType... types) {
 		if (types == null || types.length == 0)
 			return new ArrayList<>(index.values());
 		List<Diff> ofType = new ArrayList<>();
-		for (Diff diff : index.values()) {
-			for (DiffType type : types) {
-				if (diff.type == type) {
-					ofType.add(diff);
+		for (DiffType type : types) {
+			if (type == DiffType.NO_DIFF) {
+				// NO_DIFF is not indexed
+				for (Diff diff : index.values()) {
+					if (diff.type == type) {
+						ofType.add(diff);
+					}
 				}
+				continue;
 			}
+			String prefix = type.name() + SEP;
+			ofType.addAll(getDiffs(diffTypes.subSet(
+					prefix, true, prefix + '\uffff', false)));
 		}
 		return ofType;
 	}
 
+	/**
+	 * Returns the diffs of the given secondary keys (in the format: prefix SEP
+	 * ID).
+	 */
+	private List<Diff> getDiffs(Set<String> keys) {
+		List<Diff> diffs = new ArrayList<>();
+		for (String key : keys) {
+			String id = key.substring(key.indexOf(SEP) + 1);
+			Diff diff = index.get(id);
+			if (diff != null) {
+				diffs.add(diff);
+			}
+		}
+		return diffs;
+	}
+
 	public boolean hasChanged(ModelType type) {
 		Set<String> elements = changedTopLevelElements.get(type.name());
 		return elements != null && !elements.isEmpty();
@@ -212,10 +533,13 @@ public class DiffIndex {
 		Diff diff = index.remove(ref.toId());
 		if (diff == null)
 			return;
+		invalidateParentKey(ref.toId());
+		removeSecondaryIndices(ref.toId(), diff);
 		updateParents(diff, false);
 	}
 
 	public void commit() {
+		flushBatch();
 		db.commit();
 	}
 
@@ -9,7 +9,7 @@ import org.mapdb.DBMaker;
 
 public class DiffIndexUpgrades {
 
-	public static final int CURRENT_VERSION = 2;
+	public static final int CURRENT_VERSION = 3;
 
 	public static int getVersion(DiffIndex index) {
 		index.close();
@@ -28,6 +28,9 @@ public class DiffIndexUpgrades {
 		if (version < 2) {
 			upgradeV2(index);
 		}
+		if (version < 3) {
+			upgradeV3(index);
+		}
 	}
 
 	private static void upgradeV2(DiffIndex index) {
@@ -56,4 +59,14 @@ public class DiffIndexUpgrades {
 		index.open();
 	}
 
+	/**
+	 * Version 3 contains the secondary sets of changed, untracked, and
+	 * new/changed/deleted diffs and the counter of changed diffs.
+	 */
+	private static void upgradeV3(DiffIndex index) {
+		index.buildSecondaryIndices();
+		index.init();
+		index.commit();
+	}
+
 }
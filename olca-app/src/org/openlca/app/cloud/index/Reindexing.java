@@ -1,12 +1,24 @@
 package org.openlca.app.cloud.index;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.dialogs.ProgressMonitorDialog;
+import org.openlca.app.M;
 import org.openlca.app.db.Database;
+import org.openlca.app.db.IndexUpdater;
+import org.openlca.app.util.Labels;
+import org.openlca.app.util.UI;
 import org.openlca.cloud.api.RepositoryClient;
 import org.openlca.cloud.model.data.Dataset;
 import org.openlca.cloud.model.data.FetchRequestData;
@@ -22,43 +34,116 @@ import org.openlca.core.model.ModelType;
 import org.openlca.core.model.Version;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.openlca.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Rebuilds the diff index of a connected database. The descriptors of the
+ * model types are loaded concurrently while the index is written type by type
+ * into a fresh index file (in batch mode, committed after each type). When
+ * the new index is complete, it replaces the current index at once; if the
+ * reindexing fails, the current index is kept. The changes of models during
+ * the reindexing are recorded by the index updater and applied again to the
+ * new index after it replaced the current index. The replacement and the
+ * replay are done while holding the monitor of the index updater, so that no
+ * events are written to the index while it is closed for the swap.
+ */
 public class Reindexing {
 
+	private final Logger log = LoggerFactory.getLogger(getClass());
 	private IDatabase database;
+	private DiffIndex current;
 	private DiffIndex index;
 	private RepositoryClient client;
-	private CategoryDao categoryDao;
-	private List<String> untracked;
+	private Map<Long, Category> categories;
+	private Set<String> untracked;
 
 	public static void execute() {
-		new Reindexing().run();
+		execute(new NullProgressMonitor());
 	}
 
-	private void run() {
+	public static void execute(IProgressMonitor monitor) {
+		new Reindexing().run(monitor);
+	}
+
+	/**
+	 * Runs the reindexing in a progress dialog that shows the progress per
+	 * model type.
+	 */
+	public static void executeWithProgress() {
+		try {
+			new ProgressMonitorDialog(UI.shell()).run(
+					true, false, Reindexing::execute);
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(Reindexing.class);
+			log.error("Reindexing failed", e);
+		}
+	}
+
+	private void run(IProgressMonitor monitor) {
 		Map<ModelType, Map<String, FetchRequestData>> datasets = init();
 		if (datasets == null)
 			return;
-		run(ModelType.CATEGORY, datasets.get(ModelType.CATEGORY));
+		List<ModelType> types = new ArrayList<>();
+		types.add(ModelType.CATEGORY);
 		for (ModelType type : ModelType.values()) {
-			if (!type.isCategorized() || type == ModelType.CATEGORY)
-				continue;
-			Map<String, FetchRequestData> dataMap = datasets.get(type);
-			run(type, dataMap);
+			if (type.isCategorized() && type != ModelType.CATEGORY) {
+				types.add(type);
+			}
 		}
-		index.commit();
+		monitor.beginTask(M.RebuildingIndex, types.size());
+		IndexUpdater updater = Database.getIndexUpdater();
+		updater.beginRebuild();
+
+		// load the descriptors of all types concurrently
+		int threads = Math.max(1, Math.min(types.size(),
+				Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Map<ModelType, Future<Descriptors>> descriptors = new HashMap<>();
+		for (ModelType type : types) {
+			descriptors.put(type, pool.submit(() -> load(type)));
+		}
+		pool.shutdown();
+
+		index = current.createBuild();
+		boolean complete = false;
+		try {
+			index.init();
+			index.beginBatch();
+			for (ModelType type : types) {
+				monitor.subTask(Labels.modelType(type));
+				Descriptors d = descriptors.get(type).get();
+				run(type, datasets.get(type), d);
+				index.commit();
+				monitor.worked(1);
+			}
+			index.endBatch();
+			complete = true;
+		} catch (Exception e) {
+			log.error("Reindexing failed; keep the current index", e);
+			pool.shutdownNow();
+			index.delete();
+		}
+		synchronized (updater) {
+			if (complete) {
+				try {
+					current.replaceWith(index);
+				} catch (Exception e) {
+					log.error("Failed to replace the index", e);
+					index.delete();
+				}
+			}
+			updater.endRebuild();
+		}
+		monitor.done();
 	}
 
-	private void run(ModelType type, Map<String, FetchRequestData> dataMap) {
-		Map<String, CategorizedDescriptor> descriptorMap = getDescriptors(type);
+	private void run(ModelType type, Map<String, FetchRequestData> dataMap,
+			Descriptors descriptors) {
 		if (dataMap != null) {
-			remoteSync(dataMap.values(), descriptorMap);
-		}
-		if (type == ModelType.PARAMETER) {
-			localSync(dataMap, new ParameterDao(database).getGlobalDescriptors());
-		} else {
-			localSync(dataMap, descriptorMap.values());
+			remoteSync(dataMap.values(), descriptors.byRefId);
 		}
+		localSync(dataMap, descriptors.local);
 	}
 
 	private Map<ModelType, Map<String, FetchRequestData>> init() {
@@ -68,13 +153,14 @@ public class Reindexing {
 		client = Database.getRepositoryClient();
 		if (client == null)
 			return null;
-		index = Database.getDiffIndex();
-		if (index == null)
+		current = Database.getDiffIndex();
+		if (current == null)
 			return null;
-		categoryDao = new CategoryDao(database);
-		untracked = index.getUntracked();
-		index.clear();
-		index.init();
+		categories = new HashMap<>();
+		for (Category category : new CategoryDao(database).getAll()) {
+			categories.put(category.id, category);
+		}
+		untracked = new HashSet<>(current.getUntracked());
 		if (client.getConfig().getLastCommitId() == null)
 			return new HashMap<>();
 		try {
@@ -119,13 +205,17 @@ public class Reindexing {
 		}
 	}
 
-	private Map<String, CategorizedDescriptor> getDescriptors(ModelType type) {
+	/** Loads the descriptors of the given type; called in a worker thread. */
+	private Descriptors load(ModelType type) {
 		CategorizedEntityDao<?, ?> dao = Daos.categorized(database, type);
-		Map<String, CategorizedDescriptor> descriptors = new HashMap<>();
+		Descriptors d = new Descriptors();
 		for (CategorizedDescriptor descriptor : dao.getDescriptors()) {
-			descriptors.put(descriptor.refId, descriptor);
+			d.byRefId.put(descriptor.refId, descriptor);
 		}
-		return descriptors;
+		d.local = type == ModelType.PARAMETER
+				? new ParameterDao(database).getGlobalDescriptors()
+				: d.byRefId.values();
+		return d;
 	}
 
 	private void putDeleted(Dataset dataset) {
@@ -172,9 +262,14 @@ public class Reindexing {
 	private Dataset toDataset(CategorizedDescriptor descriptor) {
 		Category category = null;
 		if (descriptor.category != null) {
-			category = categoryDao.getForId(descriptor.category);
+			category = categories.get(descriptor.category);
 		}
 		return Datasets.toDataset(descriptor, category);
 	}
 
+	private static class Descriptors {
+		final Map<String, CategorizedDescriptor> byRefId = new HashMap<>();
+		Collection<? extends CategorizedDescriptor> local;
+	}
+
 }
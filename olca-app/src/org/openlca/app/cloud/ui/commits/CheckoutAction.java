@@ -6,7 +6,6 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.dialogs.ProgressMonitorDialog;
 import org.eclipse.jface.operation.IRunnableWithProgress;
-import org.openlca.app.App;
 import org.openlca.app.M;
 import org.openlca.app.cloud.index.Reindexing;
 import org.openlca.app.cloud.ui.FetchNotifierMonitor;
@@ -49,7 +48,7 @@ class CheckoutAction extends Action {
 			MsgBox.error(M.CommitError);
 		} finally {
 			Database.getIndexUpdater().enable();
-			App.runWithProgress(M.RebuildingIndex, Reindexing::execute);
+			Reindexing.executeWithProgress();
 			Navigator.refresh();
 			HistoryView.refresh();
 			CompareView.clear();
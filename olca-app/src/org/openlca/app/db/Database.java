@@ -7,6 +7,8 @@ import org.openlca.app.App;
 import org.openlca.app.cloud.TokenDialog;
 import org.openlca.app.cloud.index.DiffIndex;
 import org.openlca.app.navigation.CopyPaste;
+import org.openlca.app.search.SearchIndex;
+import org.openlca.app.validation.ValidationCache;
 import org.openlca.cloud.api.RepositoryClient;
 import org.openlca.cloud.api.RepositoryConfig;
 import org.openlca.core.database.IDatabase;
@@ -22,6 +24,8 @@ public class Database {
 	private static DatabaseListener listener;
 	private static DatabaseList configurations = loadConfigs();
 	private static DiffIndex diffIndex;
+	private static SearchIndex searchIndex;
+	private static ValidationCache validationCache;
 	private static RepositoryClient repositoryClient;
 	private static Server ipcServer;
 
@@ -36,13 +40,46 @@ public class Database {
 		return listener.getIndexUpdater();
 	}
 
+	/**
+	 * Returns the full-text search index of the active database. Note that
+	 * the index may be still in construction; see
+	 * {@link SearchIndex#isReady()}.
+	 */
+	public static SearchIndex getSearchIndex() {
+		return searchIndex;
+	}
+
+	/**
+	 * Returns the persistent cache of the validation results of the active
+	 * database.
+	 */
+	public static ValidationCache getValidationCache() {
+		return validationCache;
+	}
+
+	/**
+	 * Returns the number of models that were inserted, updated, or deleted
+	 * since the activation of the database. This can be used to invalidate
+	 * caches that depend on the content of the database.
+	 */
+	public static long getChangeCount() {
+		return listener == null ? 0 : listener.changes.get();
+	}
+
 	public static IDatabase activate(IDatabaseConfiguration config)
 			throws Exception {
 		try {
 			database = config.createInstance();
-			listener = new DatabaseListener(Database.database);
+			searchIndex = SearchIndex.getFor(database);
+			validationCache = ValidationCache.getFor(database);
+			listener = new DatabaseListener(Database.database, searchIndex,
+					validationCache);
 			database.addListener(listener);
 			Cache.create(database);
+			if (!searchIndex.isReady()) {
+				SearchIndex index = searchIndex;
+				App.run("Build search index", index::rebuild);
+			}
 			Database.config = config;
 			Logger log = LoggerFactory.getLogger(Database.class);
 			log.trace("activated database {} with version{}",
@@ -55,6 +92,14 @@ public class Database {
 			return database;
 		} catch (Exception e) {
 			database = null;
+			if (searchIndex != null) {
+				searchIndex.close();
+				searchIndex = null;
+			}
+			if (validationCache != null) {
+				validationCache.close();
+				validationCache = null;
+			}
 			Cache.close();
 			Database.config = null;
 			throw e;
@@ -111,6 +156,14 @@ public class Database {
 		}
 		Cache.close();
 		CopyPaste.clearCache();
+		if (searchIndex != null) {
+			searchIndex.close();
+			searchIndex = null;
+		}
+		if (validationCache != null) {
+			validationCache.close();
+			validationCache = null;
+		}
 		database.close();
 		database = null;
 		listener = null;
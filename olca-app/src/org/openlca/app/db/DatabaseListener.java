@@ -1,21 +1,50 @@
 package org.openlca.app.db;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openlca.app.search.SearchIndex;
+import org.openlca.app.validation.ValidationCache;
 import org.openlca.cloud.model.data.Dataset;
 import org.openlca.cloud.util.Datasets;
 import org.openlca.core.database.CategoryDao;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.IDatabaseListener;
 import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 
+/**
+ * Updates the search index, the diff index, the validation cache, and the
+ * caches when models are inserted, updated, or deleted. While a transaction
+ * of the index updater is running (e.g. during an import), the events are
+ * buffered and applied as a batch when the buffer is full or the transaction
+ * ends. The categories of the models are then resolved once per batch and the
+ * search index is committed once per batch.
+ */
 class DatabaseListener implements IDatabaseListener {
 
-	private final IndexUpdater indexUpdater = new IndexUpdater();
+	/** The maximum number of buffered events. */
+	private static final int MAX_EVENTS = 1000;
+
+	private final IndexUpdater indexUpdater = new IndexUpdater(this::flush);
 	private final CategoryDao categoryDao;
+	private final SearchIndex searchIndex;
+	private final ValidationCache validationCache;
+	private final List<Event> events = new ArrayList<>();
+
+	/** The number of model events since the database was activated. */
+	final AtomicLong changes = new AtomicLong();
 
-	DatabaseListener(IDatabase database) {
+	DatabaseListener(IDatabase database, SearchIndex searchIndex,
+			ValidationCache validationCache) {
 		this.categoryDao = new CategoryDao(database);
+		this.searchIndex = searchIndex;
+		this.validationCache = validationCache;
 	}
 
 	IndexUpdater getIndexUpdater() {
@@ -24,43 +53,101 @@ class DatabaseListener implements IDatabaseListener {
 
 	@Override
 	public void modelInserted(BaseDescriptor descriptor) {
-		if (indexUpdater.disabled)
-			return;
-		Dataset dataset = toDataset(descriptor);
-		if (dataset == null)
-			return;
-		indexUpdater.insert(dataset, descriptor.id);
+		handle(new Event(descriptor, Event.INSERT));
 	}
 
 	@Override
 	public void modelUpdated(BaseDescriptor descriptor) {
-		if (indexUpdater.disabled)
-			return;
-		Dataset dataset = toDataset(descriptor);
-		if (dataset == null)
-			return;
-		indexUpdater.update(dataset, descriptor.id);
+		handle(new Event(descriptor, Event.UPDATE));
 	}
 
 	@Override
 	public void modelDeleted(BaseDescriptor descriptor) {
-		if (indexUpdater.disabled)
-			return;
-		Dataset dataset = toDataset(descriptor);
-		if (dataset == null)
+		handle(new Event(descriptor, Event.DELETE));
+	}
+
+	private synchronized void handle(Event event) {
+		changes.incrementAndGet();
+		events.add(event);
+		if (!indexUpdater.inTransaction || events.size() >= MAX_EVENTS) {
+			flush();
+		}
+	}
+
+	/** Applies the buffered events. */
+	synchronized void flush() {
+		if (events.isEmpty())
 			return;
-		indexUpdater.delete(dataset);
+		List<BaseDescriptor> put = new ArrayList<>();
+		List<BaseDescriptor> removed = new ArrayList<>();
+		Map<Long, Category> categories = new HashMap<>();
+		for (Event event : events) {
+			BaseDescriptor descriptor = event.descriptor;
+			if (event.type == Event.DELETE) {
+				removed.add(descriptor);
+			} else {
+				put.add(descriptor);
+			}
+			if (event.type != Event.INSERT) {
+				Cache.evict(descriptor);
+			}
+			if (descriptor.type == ModelType.CATEGORY) {
+				categories.remove(descriptor.id);
+			}
+			if (indexUpdater.disabled)
+				continue;
+			Dataset dataset = toDataset(descriptor, categories);
+			if (dataset == null)
+				continue;
+			switch (event.type) {
+			case Event.INSERT:
+				indexUpdater.insert(dataset, descriptor.id);
+				break;
+			case Event.UPDATE:
+				indexUpdater.update(dataset, descriptor.id);
+				break;
+			default:
+				indexUpdater.delete(dataset);
+			}
+		}
+		events.clear();
+		searchIndex.update(put, removed);
+		if (validationCache != null) {
+			List<BaseDescriptor> changed = new ArrayList<>(put);
+			changed.addAll(removed);
+			validationCache.invalidate(changed);
+		}
 	}
 
-	private Dataset toDataset(BaseDescriptor descriptor) {
+	private Dataset toDataset(BaseDescriptor descriptor,
+			Map<Long, Category> categories) {
 		if (!(descriptor instanceof CategorizedDescriptor))
 			return null;
 		CategorizedDescriptor element = (CategorizedDescriptor) descriptor;
 		Category category = null;
 		if (element.category != null) {
-			category = categoryDao.getForId(element.category);
+			category = categories.get(element.category);
+			if (category == null) {
+				category = categoryDao.getForId(element.category);
+				categories.put(element.category, category);
+			}
 		}
 		return Datasets.toDataset(element, category);
 	}
 
+	private static class Event {
+
+		static final byte INSERT = 0;
+		static final byte UPDATE = 1;
+		static final byte DELETE = 2;
+
+		final BaseDescriptor descriptor;
+		final byte type;
+
+		Event(BaseDescriptor descriptor, byte type) {
+			this.descriptor = descriptor;
+			this.type = type;
+		}
+	}
+
 }
@@ -1,29 +1,68 @@
 package org.openlca.app.db;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.openlca.app.cloud.index.Diff;
 import org.openlca.app.cloud.index.DiffIndex;
 import org.openlca.app.cloud.index.DiffType;
 import org.openlca.cloud.model.data.Dataset;
 import org.openlca.core.model.ModelType;
 
+/**
+ * Updates the diff index when models are inserted, updated, or deleted. Within
+ * a transaction, the index runs in batch mode so that the parent categories
+ * of the changed models are written only once when the transaction ends.
+ * While the diff index is rebuilt, the events are also recorded and applied
+ * again to the new index when it replaced the previous one.
+ *
+ * All accesses to the diff index are done while holding the monitor of the
+ * updater. The reindexing replaces the index while holding that monitor too,
+ * so that no event is written to the index while it is closed for the swap.
+ */
 public class IndexUpdater {
 
 	boolean disabled;
-	private boolean inTransaction;
+	volatile boolean inTransaction;
+
+	/** Applies the buffered events of the database listener. */
+	private final Runnable flush;
+
+	/** The events that occur while the diff index is rebuilt; or null. */
+	private List<Runnable> rebuildEvents;
+
+	IndexUpdater(Runnable flush) {
+		this.flush = flush;
+	}
 
 	public void beginTransaction() {
 		// no multitransaction support implemented
 		if (inTransaction)
 			throw new IllegalStateException("A transaction is already running");
 		inTransaction = true;
+		synchronized (this) {
+			DiffIndex index = getIndex();
+			if (index != null)
+				index.beginBatch();
+		}
 	}
 
 	public void endTransaction() {
 		if (!inTransaction)
 			throw new IllegalStateException("No transaction running");
-		DiffIndex index = getIndex();
-		if (index != null)
-			index.commit();
+		// the flush acquires the monitor of the database listener and then
+		// the monitor of the updater; thus it is called outside of the
+		// monitor of the updater
+		if (flush != null) {
+			flush.run();
+		}
+		synchronized (this) {
+			DiffIndex index = getIndex();
+			if (index != null) {
+				index.endBatch();
+				index.commit();
+			}
+		}
 		inTransaction = false;
 	}
 
@@ -35,7 +74,39 @@ public class IndexUpdater {
 		disabled = false;
 	}
 
-	public void insert(Dataset dataset, long localId) {
+	/**
+	 * Starts recording the events of the index updater while the diff index
+	 * is rebuilt (see {@link #endRebuild()}).
+	 */
+	public synchronized void beginRebuild() {
+		rebuildEvents = new ArrayList<>();
+	}
+
+	/**
+	 * Stops recording the events and applies the recorded events to the
+	 * current diff index. This is called after the rebuilt index replaced the
+	 * previous index so that the changes during the rebuild are not lost.
+	 * Applying an event again to an index that already contains it does not
+	 * change that index.
+	 */
+	public synchronized void endRebuild() {
+		List<Runnable> events = rebuildEvents;
+		rebuildEvents = null;
+		if (events == null)
+			return;
+		for (Runnable event : events) {
+			event.run();
+		}
+	}
+
+	private void record(Runnable event) {
+		if (rebuildEvents != null) {
+			rebuildEvents.add(event);
+		}
+	}
+
+	public synchronized void insert(Dataset dataset, long localId) {
+		record(() -> insert(dataset, localId));
 		DiffIndex index = getIndex();
 		if (index == null)
 			return;
@@ -50,7 +121,8 @@ public class IndexUpdater {
 		index.update(dataset, DiffType.NEW);
 	}
 
-	public void update(Dataset dataset, long localId) {
+	public synchronized void update(Dataset dataset, long localId) {
+		record(() -> update(dataset, localId));
 		DiffIndex index = getIndex();
 		if (index == null)
 			return;
@@ -63,7 +135,7 @@ public class IndexUpdater {
 	private void update(Dataset dataset, long localId, DiffIndex index) {
 		Diff existing = index.get(dataset);
 		if (existing == null) {
-			insert(dataset, localId);
+			insert(dataset, localId, index);
 			return;
 		}
 		// Parent categories are updated when child categories are added or
@@ -78,7 +150,8 @@ public class IndexUpdater {
 		}
 	}
 	
-	public void delete(Dataset dataset) {
+	public synchronized void delete(Dataset dataset) {
+		record(() -> delete(dataset));
 		DiffIndex index = getIndex();
 		if (index == null)
 			return;
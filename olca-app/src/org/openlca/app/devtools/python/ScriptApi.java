@@ -9,6 +9,7 @@ import java.util.List;
 
 import org.openlca.app.App;
 import org.openlca.app.db.Cache;
+import org.openlca.app.editors.systems.Statistics;
 import org.openlca.core.database.ActorDao;
 import org.openlca.core.database.CategoryDao;
 import org.openlca.core.database.Daos;
@@ -593,6 +594,14 @@ public class ScriptApi {
 		return simulator.getResult();
 	}
 
+	/**
+	 * Calculates the graph statistics of the given product system (number of
+	 * links, connectivity, link degrees, cycles, depth distribution etc.).
+	 */
+	public Statistics getStatistics(ProductSystem system) {
+		return Statistics.calculate(system, Cache.getEntityCache());
+	}
+
 	public List<? extends RootEntity> query(String jpql, ModelType type) {
 		return Daos.root(database, type).getAll(jpql, new HashMap<>());
 	}
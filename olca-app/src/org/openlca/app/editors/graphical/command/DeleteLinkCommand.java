@@ -1,12 +1,16 @@
 package org.openlca.app.editors.graphical.command;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.gef.commands.Command;
 import org.openlca.app.M;
 import org.openlca.app.editors.graphical.model.Link;
 import org.openlca.app.editors.graphical.model.ProductSystemNode;
+import org.openlca.core.model.ProcessLink;
 
 public class DeleteLinkCommand extends Command {
 
@@ -35,9 +39,14 @@ public class DeleteLinkCommand extends Command {
 		if (links.isEmpty())
 			return;
 		ProductSystemNode sysNode = links.get(0).outputNode.parent();
+		// remove the process links in one pass over the product system
+		Set<ProcessLink> removals = new HashSet<>();
+		for (Link link : links) {
+			removals.add(link.processLink);
+		}
+		sysNode.getProductSystem().processLinks.removeIf(removals::contains);
+		sysNode.linkSearch.removeAll(removals);
 		for (Link link : links) {
-			sysNode.getProductSystem().processLinks.remove(link.processLink);
-			sysNode.linkSearch.remove(link.processLink);
 			link.unlink();
 		}
 		sysNode.editor.setDirty(true);
@@ -58,9 +67,13 @@ public class DeleteLinkCommand extends Command {
 		if (links.isEmpty())
 			return;
 		ProductSystemNode sysNode = links.get(0).outputNode.parent();
+		List<ProcessLink> processLinks = new ArrayList<>(links.size());
+		for (Link link : links) {
+			processLinks.add(link.processLink);
+		}
+		sysNode.getProductSystem().processLinks.addAll(processLinks);
+		sysNode.linkSearch.putAll(processLinks);
 		for (Link link : links) {
-			sysNode.getProductSystem().processLinks.add(link.processLink);
-			sysNode.linkSearch.put(link.processLink);
 			link.link();
 			link.updateVisibilty();
 		}
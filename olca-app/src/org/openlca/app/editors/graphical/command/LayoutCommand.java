@@ -7,6 +7,7 @@ import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.gef.commands.Command;
 import org.openlca.app.M;
+import org.openlca.app.editors.graphical.layout.LayoutJob;
 import org.openlca.app.editors.graphical.layout.LayoutManager;
 import org.openlca.app.editors.graphical.layout.LayoutType;
 import org.openlca.app.editors.graphical.model.ProcessNode;
@@ -64,6 +65,7 @@ public class LayoutCommand extends Command {
 
 	@Override
 	public void undo() {
+		LayoutJob.cancel(model);
 		for (ProcessNode node : model.getChildren())
 			if (oldConstraints.get(node.figure) != null)
 				node.setXyLayoutConstraints(oldConstraints.get(node.figure));
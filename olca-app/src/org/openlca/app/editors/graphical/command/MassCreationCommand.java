@@ -9,6 +9,7 @@ import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.gef.commands.Command;
 import org.openlca.app.M;
+import org.openlca.app.editors.graphical.layout.LayoutJob;
 import org.openlca.app.editors.graphical.layout.LayoutManager;
 import org.openlca.app.editors.graphical.model.Link;
 import org.openlca.app.editors.graphical.model.ProcessNode;
@@ -104,6 +105,7 @@ public class MassCreationCommand extends Command {
 
 	@Override
 	public void undo() {
+		LayoutJob.cancel(sysNode);
 		for (Link link : createdLinks)
 			unlink(link);
 		for (ProcessNode node : createdNodes)
@@ -0,0 +1,475 @@
+package org.openlca.app.editors.graphical.layout;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * A layered layout of a process graph. The nodes are identified by their
+ * positions 0..n-1 and the edges go from providers to recipients. Starting
+ * from a root node, a spanning tree is built where the providers of a node
+ * are placed in the layer (column) on its left side and the recipients in the
+ * layer on its right side. The position (slot) of a node within its layer is
+ * derived from the number of leaves of the sub-trees; when a slot is already
+ * occupied, the node and its sub-tree are moved to the next free slot. Nodes
+ * that are not reachable from the root start a new component which is placed
+ * below the previous components.
+ *
+ * All algorithms are iterative and work on primitive arrays; the occupied
+ * slots are stored in a bitmap per layer. Thus, the layout can be calculated
+ * for large graphs in a background job. It does not access any figures: the
+ * sizes of the nodes are passed into {@link #place} and the results are
+ * stored in the public arrays of this class.
+ */
+public class LayeredLayout {
+
+	/** The layer of each node. */
+	public final int[] layers;
+
+	/** The slot of each node within its layer. */
+	public final int[] slots;
+
+	/** The component of each node or -1 if the node was not placed. */
+	public final int[] components;
+
+	/** The x-coordinates of the nodes after {@link #place} was called. */
+	public final int[] x;
+
+	/** The y-coordinates of the nodes after {@link #place} was called. */
+	public final int[] y;
+
+	/** The number of components of the graph. */
+	public int componentCount;
+
+	private final int n;
+	private final TIntArrayList edgeProviders = new TIntArrayList();
+	private final TIntArrayList edgeRecipients = new TIntArrayList();
+
+	// the edges in compressed row format: the providers (in-edges) and
+	// recipients (out-edges) of node i are stored in the ranges
+	// [start[i], start[i + 1])
+	private int[] inStart;
+	private int[] inEdges;
+	private int[] outStart;
+	private int[] outEdges;
+
+	// the spanning tree: the left (provider) and right (recipient) children
+	// of a node are stored as linked lists; as a node is a child of at most
+	// one parent, a single array for the next sibling is sufficient
+	private int[] leftHead;
+	private int[] leftTail;
+	private int[] rightHead;
+	private int[] rightTail;
+	private int[] next;
+	private boolean[] contained;
+
+	/** The number of leaves of the sub-tree of a node. */
+	private int[] sizes;
+
+	/** The maximum number of left-steps from a node to a leaf. */
+	private int[] leftDepths;
+
+	private IProgressMonitor monitor;
+	private int steps;
+
+	public LayeredLayout(int nodeCount) {
+		this.n = nodeCount;
+		layers = new int[n];
+		slots = new int[n];
+		components = new int[n];
+		Arrays.fill(components, -1);
+		x = new int[n];
+		y = new int[n];
+	}
+
+	/** Adds an edge from the given provider to the given recipient. */
+	public void addEdge(int provider, int recipient) {
+		if (provider < 0 || provider >= n || recipient < 0 || recipient >= n)
+			return;
+		edgeProviders.add(provider);
+		edgeRecipients.add(recipient);
+	}
+
+	/**
+	 * Calculates the layers and slots of the nodes. The layout starts with
+	 * the given root node which can be -1 if there is no root node. The given
+	 * monitor can be null; if it is canceled, an OperationCanceledException is
+	 * thrown.
+	 */
+	public void run(int root, IProgressMonitor monitor) {
+		this.monitor = monitor;
+		index();
+		leftHead = filled(-1);
+		leftTail = filled(-1);
+		rightHead = filled(-1);
+		rightTail = filled(-1);
+		next = filled(-1);
+		contained = new boolean[n];
+		sizes = new int[n];
+		leftDepths = new int[n];
+		int component = 0;
+		if (root >= 0 && root < n) {
+			layoutComponent(root, component++);
+		}
+		for (int i = 0; i < n; i++) {
+			if (contained[i])
+				continue;
+			layoutComponent(i, component++);
+		}
+		componentCount = component;
+	}
+
+	private int[] filled(int value) {
+		int[] array = new int[n];
+		Arrays.fill(array, value);
+		return array;
+	}
+
+	/** Creates the compressed row format of the edges (a counting sort). */
+	private void index() {
+		int m = edgeProviders.size();
+		inStart = new int[n + 1];
+		outStart = new int[n + 1];
+		for (int e = 0; e < m; e++) {
+			inStart[edgeRecipients.get(e) + 1]++;
+			outStart[edgeProviders.get(e) + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			inStart[i + 1] += inStart[i];
+			outStart[i + 1] += outStart[i];
+		}
+		inEdges = new int[m];
+		outEdges = new int[m];
+		int[] inPos = Arrays.copyOf(inStart, n);
+		int[] outPos = Arrays.copyOf(outStart, n);
+		for (int e = 0; e < m; e++) {
+			int provider = edgeProviders.get(e);
+			int recipient = edgeRecipients.get(e);
+			inEdges[inPos[recipient]++] = provider;
+			outEdges[outPos[provider]++] = recipient;
+		}
+	}
+
+	private void layoutComponent(int root, int component) {
+		contained[root] = true;
+		buildTree(root);
+		TIntArrayList order = preOrder(root);
+		for (int i = order.size() - 1; i >= 0; i--) {
+			calculateSize(order.get(i));
+		}
+		sortLeft(root);
+		assignSlots(root, order, component);
+	}
+
+	/**
+	 * Builds the spanning tree level by level: first the providers of all
+	 * nodes of a level are added (recursively, with an explicit stack of
+	 * levels) and then the recipients.
+	 */
+	private void buildTree(int root) {
+		ArrayDeque<Level> stack = new ArrayDeque<>();
+		stack.push(new Level(new int[] { root }));
+		TIntArrayList children = new TIntArrayList();
+		while (!stack.isEmpty()) {
+			checkCanceled();
+			Level level = stack.peek();
+			if (level.phase == 2) {
+				stack.pop();
+				continue;
+			}
+			boolean left = level.phase == 0;
+			level.phase++;
+			int[] start = left ? inStart : outStart;
+			int[] edges = left ? inEdges : outEdges;
+			children.resetQuick();
+			for (int node : level.nodes) {
+				for (int k = start[node]; k < start[node + 1]; k++) {
+					int child = edges[k];
+					if (contained[child])
+						continue;
+					contained[child] = true;
+					append(node, child, left);
+					children.add(child);
+				}
+			}
+			if (!children.isEmpty()) {
+				stack.push(new Level(children.toArray()));
+			}
+		}
+	}
+
+	private void append(int parent, int child, boolean left) {
+		int[] head = left ? leftHead : rightHead;
+		int[] tail = left ? leftTail : rightTail;
+		if (head[parent] < 0) {
+			head[parent] = child;
+		} else {
+			next[tail[parent]] = child;
+		}
+		tail[parent] = child;
+	}
+
+	/**
+	 * Returns the nodes of the tree in pre-order and sets the layers of the
+	 * nodes relative to the root.
+	 */
+	private TIntArrayList preOrder(int root) {
+		TIntArrayList order = new TIntArrayList();
+		TIntArrayList stack = new TIntArrayList();
+		layers[root] = 0;
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			checkCanceled();
+			int node = stack.removeAt(stack.size() - 1);
+			order.add(node);
+			for (int c = leftHead[node]; c >= 0; c = next[c]) {
+				layers[c] = layers[node] - 1;
+				stack.add(c);
+			}
+			for (int c = rightHead[node]; c >= 0; c = next[c]) {
+				layers[c] = layers[node] + 1;
+				stack.add(c);
+			}
+		}
+		return order;
+	}
+
+	/** Expects that the sizes of the children are already calculated. */
+	private void calculateSize(int node) {
+		int size = 0;
+		int leftDepth = -1;
+		for (int c = leftHead[node]; c >= 0; c = next[c]) {
+			size += sizes[c];
+			leftDepth = Math.max(leftDepth, leftDepths[c]);
+		}
+		for (int c = rightHead[node]; c >= 0; c = next[c]) {
+			size += sizes[c];
+		}
+		sizes[node] = size == 0 ? 1 : size;
+		leftDepths[node] = leftDepth + 1;
+	}
+
+	/**
+	 * Sorts the left children of the root by their sizes in descending order
+	 * and then alternates between the largest and smallest remaining children
+	 * so that the large sub-trees are distributed.
+	 */
+	private void sortLeft(int root) {
+		int count = 0;
+		for (int c = leftHead[root]; c >= 0; c = next[c]) {
+			count++;
+		}
+		if (count < 2)
+			return;
+		// sort by size descending; the original position is the tie-breaker
+		long[] keys = new long[count];
+		int[] children = new int[count];
+		int i = 0;
+		for (int c = leftHead[root]; c >= 0; c = next[c]) {
+			children[i] = c;
+			keys[i] = ((long) (Integer.MAX_VALUE - sizes[c]) << 32) | i;
+			i++;
+		}
+		Arrays.sort(keys);
+		int[] sorted = new int[count];
+		for (i = 0; i < count; i++) {
+			sorted[i] = children[(int) (keys[i] & 0xFFFFFFFFL)];
+		}
+		int[] alternated = new int[count];
+		int pos = 0;
+		for (i = 0; pos < count; i++) {
+			alternated[pos++] = sorted[i];
+			if (pos < count) {
+				alternated[pos++] = sorted[count - i - 1];
+			}
+		}
+		leftHead[root] = alternated[0];
+		for (i = 1; i < count; i++) {
+			next[alternated[i - 1]] = alternated[i];
+		}
+		next[alternated[count - 1]] = -1;
+		leftTail[root] = alternated[count - 1];
+	}
+
+	private void assignSlots(int root, TIntArrayList order, int component) {
+
+		// set the absolute layers and allocate the bitmaps
+		int rootLayer = leftDepths[root];
+		int minLayer = Integer.MAX_VALUE;
+		int maxLayer = Integer.MIN_VALUE;
+		for (int i = 0; i < order.size(); i++) {
+			int node = order.get(i);
+			int layer = rootLayer + layers[node];
+			layers[node] = layer;
+			minLayer = Math.min(minLayer, layer);
+			maxLayer = Math.max(maxLayer, layer);
+		}
+		BitSet[] occupied = new BitSet[maxLayer - minLayer + 1];
+
+		// place the nodes in pre-order; the offset (addition) of a node is
+		// passed to its children
+		TIntArrayList stack = new TIntArrayList();
+		TIntArrayList kids = new TIntArrayList();
+		TIntArrayList additions = new TIntArrayList();
+		stack.add(root);
+		stack.add(0);
+		while (!stack.isEmpty()) {
+			checkCanceled();
+			int addition = stack.removeAt(stack.size() - 1);
+			int node = stack.removeAt(stack.size() - 1);
+			int idx = layers[node] - minLayer;
+			BitSet bits = occupied[idx];
+			if (bits == null) {
+				bits = occupied[idx] = new BitSet();
+			}
+			int slot = sizes[node] / 2 + addition;
+			int free = bits.nextClearBit(slot);
+			addition += free - slot;
+			bits.set(free);
+			slots[node] = free;
+			components[node] = component;
+
+			// push the children in reverse order so that they are placed
+			// in the order of the tree: left children first
+			kids.resetQuick();
+			additions.resetQuick();
+			int sum = 0;
+			for (int c = leftHead[node]; c >= 0; c = next[c]) {
+				kids.add(c);
+				additions.add(addition + sum);
+				sum += sizes[c];
+			}
+			for (int c = rightHead[node]; c >= 0; c = next[c]) {
+				kids.add(c);
+				additions.add(addition + sum);
+				sum += sizes[c];
+			}
+			for (int i = kids.size() - 1; i >= 0; i--) {
+				stack.add(kids.get(i));
+				stack.add(additions.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Calculates the coordinates of the nodes from their layers and slots.
+	 * The width of a grid column is the maximum width of the nodes in that
+	 * column and the height of a grid row the maximum height of the nodes in
+	 * that row; empty columns and rows take no space. The components are
+	 * placed below each other.
+	 *
+	 * @param widths
+	 *            the widths of the nodes
+	 * @param heights
+	 *            the heights of the nodes
+	 * @param hSpace
+	 *            the horizontal space between the grid columns
+	 * @param vSpace
+	 *            the vertical space between the grid rows
+	 * @param vertical
+	 *            if false, the layers are the grid columns from left to
+	 *            right; if true, the layers are the grid rows from bottom to
+	 *            top (the providers are placed below their recipients)
+	 */
+	public void place(int[] widths, int[] heights, int hSpace, int vSpace,
+			boolean vertical) {
+
+		// group the nodes by component (a counting sort)
+		int[] start = new int[componentCount + 1];
+		for (int i = 0; i < n; i++) {
+			if (components[i] >= 0) {
+				start[components[i] + 1]++;
+			}
+		}
+		for (int c = 0; c < componentCount; c++) {
+			start[c + 1] += start[c];
+		}
+		int[] nodes = new int[start[componentCount]];
+		int[] pos = Arrays.copyOf(start, componentCount);
+		for (int i = 0; i < n; i++) {
+			if (components[i] >= 0) {
+				nodes[pos[components[i]]++] = i;
+			}
+		}
+
+		int offset = 0;
+		for (int c = 0; c < componentCount; c++) {
+			int minCol = Integer.MAX_VALUE;
+			int maxCol = Integer.MIN_VALUE;
+			int minRow = Integer.MAX_VALUE;
+			int maxRow = Integer.MIN_VALUE;
+			for (int k = start[c]; k < start[c + 1]; k++) {
+				int node = nodes[k];
+				int col = vertical ? slots[node] : layers[node];
+				int row = vertical ? -layers[node] : slots[node];
+				minCol = Math.min(minCol, col);
+				maxCol = Math.max(maxCol, col);
+				minRow = Math.min(minRow, row);
+				maxRow = Math.max(maxRow, row);
+			}
+			if (minCol > maxCol)
+				continue;
+			int[] colWidths = new int[maxCol - minCol + 1];
+			int[] rowHeights = new int[maxRow - minRow + 1];
+			for (int k = start[c]; k < start[c + 1]; k++) {
+				int node = nodes[k];
+				int col = (vertical ? slots[node] : layers[node]) - minCol;
+				int row = (vertical ? -layers[node] : slots[node]) - minRow;
+				colWidths[col] = Math.max(colWidths[col], widths[node]);
+				rowHeights[row] = Math.max(rowHeights[row], heights[node]);
+			}
+			int[] colX = offsets(colWidths, hSpace);
+			int[] rowY = offsets(rowHeights, vSpace);
+			int bottom = offset;
+			for (int k = start[c]; k < start[c + 1]; k++) {
+				checkCanceled();
+				int node = nodes[k];
+				int col = (vertical ? slots[node] : layers[node]) - minCol;
+				int row = (vertical ? -layers[node] : slots[node]) - minRow;
+				x[node] = colX[col];
+				y[node] = rowY[row] + offset;
+				bottom = Math.max(bottom, y[node] + heights[node]);
+			}
+			offset = bottom + vSpace;
+		}
+	}
+
+	private int[] offsets(int[] sizes, int space) {
+		int[] offsets = new int[sizes.length];
+		int pos = space;
+		for (int i = 0; i < sizes.length; i++) {
+			if (i > 0 && sizes[i - 1] > 0) {
+				pos += sizes[i - 1] + space;
+			}
+			offsets[i] = pos;
+		}
+		return offsets;
+	}
+
+	private void checkCanceled() {
+		if (monitor == null)
+			return;
+		steps++;
+		if ((steps & 0x3FF) == 0 && monitor.isCanceled())
+			throw new OperationCanceledException();
+	}
+
+	/** A level of the spanning tree while it is built. */
+	private static class Level {
+
+		final int[] nodes;
+
+		/** 0: add the providers, 1: add the recipients, 2: done */
+		int phase;
+
+		Level(int[] nodes) {
+			this.nodes = nodes;
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package org.openlca.app.editors.graphical.layout;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+import org.openlca.app.M;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculates the layout of a diagram in a background job and applies the
+ * result in the UI thread. There is at most one pending layout per diagram:
+ * when a new layout is scheduled, the previous one is canceled and its result
+ * is not applied anymore. Small diagrams are layouted directly as the result
+ * should be visible in the same update (e.g. within an undoable command).
+ */
+public class LayoutJob extends Job {
+
+	/** Diagrams up to this number of nodes are layouted in the UI thread. */
+	public static final int SYNC_LIMIT = 500;
+
+	/** The pending jobs of the diagrams; only accessed in the UI thread. */
+	private static final Map<Object, LayoutJob> pending = new WeakHashMap<>();
+
+	private final Object diagram;
+	private final Display display;
+	private final Consumer<IProgressMonitor> layout;
+	private final Runnable apply;
+
+	private LayoutJob(Object diagram, Consumer<IProgressMonitor> layout,
+			Runnable apply) {
+		super(M.Layout);
+		this.diagram = diagram;
+		this.layout = layout;
+		this.apply = apply;
+		Display current = Display.getCurrent();
+		this.display = current != null ? current : Display.getDefault();
+	}
+
+	/**
+	 * Runs the given layout function and applies the result with the given
+	 * function. If the diagram has more than {@link #SYNC_LIMIT} nodes, the
+	 * layout is calculated in a background job which cancels a pending
+	 * layout of the same diagram; the result is then applied in the UI
+	 * thread. Must be called from the UI thread.
+	 */
+	public static void run(Object diagram, int size,
+			Consumer<IProgressMonitor> layout, Runnable apply) {
+		cancel(diagram);
+		if (size <= SYNC_LIMIT) {
+			layout.accept(null);
+			apply.run();
+			return;
+		}
+		LayoutJob job = new LayoutJob(diagram, layout, apply);
+		pending.put(diagram, job);
+		job.schedule();
+	}
+
+	/**
+	 * Cancels the pending layout of the given diagram, e.g. when the previous
+	 * positions of the nodes are restored. Must be called from the UI thread.
+	 */
+	public static void cancel(Object diagram) {
+		LayoutJob job = pending.remove(diagram);
+		if (job != null) {
+			job.cancel();
+		}
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		try {
+			layout.accept(monitor);
+		} catch (OperationCanceledException e) {
+			return Status.CANCEL_STATUS;
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("failed to calculate layout", e);
+			return Status.OK_STATUS;
+		}
+		if (monitor.isCanceled())
+			return Status.CANCEL_STATUS;
+		display.asyncExec(() -> {
+			if (pending.get(diagram) != this)
+				return;
+			pending.remove(diagram);
+			apply.run();
+		});
+		return Status.OK_STATUS;
+	}
+
+}
@@ -44,8 +44,8 @@ public class LayoutManager extends AbstractLayout {
 	}
 
 	private void layoutAsTree() {
-		TreeLayout layout = new TreeLayout();
-		layout.layout(node);
+		TreeLayout layout = new TreeLayout(node);
+		LayoutJob.run(node, layout.size(), layout::run, layout::apply);
 	}
 
 	private void layoutXY() {
@@ -81,6 +81,7 @@ public class LayoutManager extends AbstractLayout {
 		Animation.recordInitialState(container);
 		if (Animation.playbackState(container))
 			return;
+		LayoutJob.cancel(node);
 		if (type != null)
 			switch (type) {
 			case TREE_LAYOUT:
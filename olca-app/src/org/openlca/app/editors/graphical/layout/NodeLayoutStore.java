@@ -83,8 +83,7 @@ public final class NodeLayoutStore {
 			return false;
 		try {
 			List<NodeLayoutInfo> layoutInfo = parseJson(file);
-			for (NodeLayoutInfo layout : layoutInfo)
-				apply(layout, node);
+			apply(layoutInfo, node);
 			return true;
 		} catch (IOException e) {
 			Logger log = LoggerFactory.getLogger(NodeLayoutStore.class);
@@ -93,19 +92,33 @@ public final class NodeLayoutStore {
 		}
 	}
 
-	private static void apply(NodeLayoutInfo info, ProductSystemNode model)
-			throws NodeLayoutException {
-		ProcessNode node = model.getProcessNode(info.id);
-		if (node != null) {
-			node.apply(info);
-			return;
+	/**
+	 * Applies the layout to the model. The missing nodes are first added in
+	 * one step so that the edit parts are only refreshed once. Then the
+	 * layout information is applied and finally the links of the new nodes
+	 * are created (which depend on the expansion state of the nodes).
+	 */
+	private static void apply(List<NodeLayoutInfo> infos,
+			ProductSystemNode model) throws NodeLayoutException {
+		List<ProcessNode> created = new ArrayList<>();
+		for (NodeLayoutInfo info : infos) {
+			if (model.getProcessNode(info.id) != null)
+				continue;
+			ProcessNode node = ProcessNode.create(info.id);
+			if (node == null)
+				continue;
+			created.add(node);
+		}
+		model.addAll(created);
+		for (NodeLayoutInfo info : infos) {
+			ProcessNode node = model.getProcessNode(info.id);
+			if (node != null) {
+				node.apply(info);
+			}
+		}
+		for (ProcessNode node : created) {
+			model.editor.createNecessaryLinks(node);
 		}
-		node = ProcessNode.create(info.id);
-		if (node == null)
-			return;
-		model.add(node);
-		node.apply(info);
-		model.editor.createNecessaryLinks(node);
 	}
 
 	private static List<NodeLayoutInfo> parseJson(
@@ -1,270 +1,105 @@
 package org.openlca.app.editors.graphical.layout;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.draw2d.geometry.Dimension;
-import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.openlca.app.editors.graphical.model.ProcessNode;
 import org.openlca.app.editors.graphical.model.ProductSystemNode;
-import org.openlca.app.editors.graphical.search.MutableProcessLinkSearchMap;
 import org.openlca.core.model.ProcessLink;
-import org.openlca.core.model.ProductSystem;
 
-public class TreeLayout {
-
-	private Map<Long, Integer> containing = new HashMap<>();
-	private Map<Integer, Integer> heights = new HashMap<>();
-	private Map<Integer, Integer> widths = new HashMap<>();
-	private Map<Point, Long> locations = new HashMap<>();
-	private MutableProcessLinkSearchMap linkSearch;
-
-	private void applyLayout(Node node, int addition, int actualDepth) {
-		int x = actualDepth;
-		int y = node.getSize() / 2 + addition;
-		while (locations.get(new Point(x, y)) != null) {
-			y++;
-			addition++;
-		}
-		locations.put(new Point(x, y), node.processId);
-		for (int i = 0; i < node.leftChildren.size(); i++) {
-			Node child = node.leftChildren.get(i);
-			int sizeAddition = 0;
-			for (int j = 0; j < i; j++)
-				sizeAddition += node.leftChildren.get(j).getSize();
-			applyLayout(child, addition + sizeAddition, actualDepth - 1);
-		}
-		for (int i = 0; i < node.rightChildren.size(); i++) {
-			Node child = node.rightChildren.get(i);
-			int sizeAddition = 0;
-			for (int a = 0; a < node.leftChildren.size(); a++)
-				sizeAddition += node.leftChildren.get(a).getSize();
-			for (int j = 0; j < i; j++)
-				sizeAddition += node.rightChildren.get(j).getSize();
-			applyLayout(child, addition + sizeAddition, actualDepth + 1);
-		}
-	}
+import gnu.trove.map.hash.TLongIntHashMap;
 
-	private Node build(ProductSystem productSystem) {
-		Node node = new Node();
-		node.processId = productSystem.referenceProcess.id;
-		build(productSystem, new Node[] { node });
-		return node;
-	}
+/**
+ * The tree layout of the visible process nodes of a product system. The nodes,
+ * their sizes, and the links between them are collected when the layout is
+ * created (in the UI thread). The positions are then calculated with a
+ * {@link LayeredLayout} in {@link #run} which can be called from a background
+ * job; {@link #apply} sets the positions to the nodes in a single update.
+ */
+public class TreeLayout {
 
-	private void build(ProductSystem productSystem, Node[] nodes) {
-		List<Node> children = new ArrayList<>();
-		for (Node node : nodes) {
-			long processId = node.processId;
-			for (ProcessLink link : linkSearch.getLinks(processId)) {
-				if (link.processId != processId)
-					continue;
-				long providerId = link.providerId;
-				if (containing.get(providerId) != null)
-					continue;
-				Node child = new Node();
-				child.processId = providerId;
-				node.leftChildren.add(child);
-				containing.put(child.processId, 1);
-				children.add(child);
+	private final ProductSystemNode systemNode;
+	private final List<ProcessNode> nodes = new ArrayList<>();
+	private final List<ProcessNode> hidden = new ArrayList<>();
+	private final int[] widths;
+	private final int[] heights;
+	private final int root;
+	private final LayeredLayout layout;
+
+	public TreeLayout(ProductSystemNode systemNode) {
+		this.systemNode = systemNode;
+		TLongIntHashMap index = new TLongIntHashMap(16, 0.5f, -1L, -1);
+		for (ProcessNode node : systemNode.getChildren()) {
+			if (!node.isVisible()) {
+				hidden.add(node);
+				continue;
 			}
+			index.put(node.process.id, nodes.size());
+			nodes.add(node);
 		}
-		if (children.size() > 0)
-			build(productSystem, children.toArray(new Node[children.size()]));
-		children.clear();
-		for (Node node : nodes) {
-			long processId = node.processId;
-			for (ProcessLink link : linkSearch.getLinks(processId)) {
-				if (link.providerId != processId)
-					continue;
-				long recipientId = link.processId;
-				if (containing.get(recipientId) != null)
+		widths = new int[nodes.size()];
+		heights = new int[nodes.size()];
+		layout = new LayeredLayout(nodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			ProcessNode node = nodes.get(i);
+			Dimension size = node.getSize();
+			if (size != null) {
+				widths[i] = size.width;
+				heights[i] = size.height;
+			}
+			// add the links of a node where it is the recipient
+			long id = node.process.id;
+			for (ProcessLink link : systemNode.linkSearch.getLinks(id)) {
+				if (link.processId != id)
 					continue;
-				Node child = new Node();
-				child.processId = recipientId;
-				node.rightChildren.add(child);
-				containing.put(child.processId, 1);
-				children.add(child);
+				layout.addEdge(index.get(link.providerId), i);
 			}
 		}
-		if (children.size() > 0)
-			build(productSystem, children.toArray(new Node[children.size()]));
-	}
-
-	private void prepare(ProductSystemNode productSystemNode) {
-		for (ProcessNode processNode : productSystemNode.getChildren()) {
-			if (processNode.isVisible())
-				continue;
-			long id = processNode.process.id;
-			Dimension size = processNode.getSize();
-			containing.put(id, 1);
-			processNode.setXyLayoutConstraints(new Rectangle(0, 0, size.width, size.height));
-		}
-		for (long processId : productSystemNode.getProductSystem().processes)
-			if (productSystemNode.getProcessNode(processId) == null)
-				containing.put(processId, 1);
+		long refId = systemNode.getProductSystem().referenceProcess.id;
+		root = index.get(refId);
 	}
 
-	public Map<Integer, Integer> getHeights() {
-		return heights;
+	/** Returns the number of nodes that are layouted. */
+	public int size() {
+		return nodes.size();
 	}
 
-	public Map<Integer, Integer> getWidths() {
-		return widths;
+	/**
+	 * Calculates the positions of the nodes. The monitor can be null; see
+	 * {@link LayeredLayout#run}.
+	 */
+	public void run(IProgressMonitor monitor) {
+		layout.run(root, monitor);
+		layout.place(widths, heights, LayoutManager.H_SPACE,
+				LayoutManager.V_SPACE, false);
 	}
 
-	public void layout(ProductSystemNode productSystemNode) {
-		this.linkSearch = productSystemNode.linkSearch;
-		prepare(productSystemNode);
-		List<Node> nodes = new ArrayList<>();
-		Node mainNode = build(productSystemNode.getProductSystem());
-		mainNode.sort();
-		nodes.add(mainNode);
-		for (ProcessNode processNode : productSystemNode.getChildren()) {
-			if (containing.get(processNode.process.id) != null)
+	/**
+	 * Sets the calculated positions to the nodes that are still in the
+	 * diagram. Must be called in the UI thread.
+	 */
+	public void apply() {
+		for (ProcessNode node : hidden) {
+			if (systemNode.getProcessNode(node.process.id) != node)
 				continue;
-			Node node = new Node();
-			node.processId = processNode.process.id;
-			build(productSystemNode.getProductSystem(), new Node[] { node });
-			node.sort();
-			nodes.add(node);
-		}
-		int additionalHeight = 0;
-		for (Node node : nodes) {
-			int newAdditionalHeight = 0;
-			locations.clear();
-			applyLayout(node, 0, node.getLeftDepth());
-			int minimumX = Integer.MAX_VALUE;
-			int maximumX = Integer.MIN_VALUE;
-			int minimumY = Integer.MAX_VALUE;
-			int maximumY = Integer.MIN_VALUE;
-			for (Point p : locations.keySet()) {
-				if (p.x < minimumX)
-					minimumX = p.x;
-				if (p.x > maximumX)
-					maximumX = p.x;
-				if (p.y < minimumY)
-					minimumY = p.y;
-				if (p.y > maximumY)
-					maximumY = p.y;
-			}
-			Map<Long, ProcessNode> processNodes = new HashMap<>();
-			for (ProcessNode processNode : productSystemNode.getChildren())
-				processNodes.put(processNode.process.id, processNode);
-			for (int x = minimumX; x <= maximumX; x++) {
-				widths.put(x, 0);
-				for (int y = minimumY; y <= maximumY; y++) {
-					Long processId = locations.get(new Point(x, y));
-					if (processId == null)
-						continue;
-					ProcessNode pn = processNodes.get(processId);
-					if (pn == null)
-						continue;
-					Dimension size = pn.getSize();
-					if (size == null)
-						continue;
-					int width = Math.max(widths.get(x), size.width);
-					widths.put(x, width);
-				}
-			}
-			for (int y = minimumY; y <= maximumY; y++) {
-				heights.put(y, 0);
-				for (int x = minimumX; x <= maximumX; x++) {
-					Long processId = locations.get(new Point(x, y));
-					if (processId == null)
-						continue;
-					ProcessNode pn = processNodes.get(processId);
-					if (pn == null)
-						continue;
-					Dimension size = pn.getSize();
-					if (size == null)
-						continue;
-					int height = Math.max(heights.get(y), size.height);
-					heights.put(y, height);
-				}
-			}
-			int xPosition = LayoutManager.H_SPACE;
-			for (int x = minimumX; x <= maximumX; x++) {
-				if (x > minimumX && widths.get(x - 1) > 0)
-					xPosition += widths.get(x - 1) + LayoutManager.H_SPACE;
-				int yPosition = LayoutManager.V_SPACE;
-				for (int y = minimumY; y <= maximumY; y++) {
-					Long processId = locations.get(new Point(x, y));
-					if (y > minimumY && heights.get(y - 1) > 0)
-						yPosition += heights.get(y - 1) + LayoutManager.V_SPACE;
-					if (processId == null)
-						continue;
-					ProcessNode processNode = processNodes.get(processId);
-					if (processNode == null)
-						continue;
-					Dimension size = processNode.getSize();
-					if (size == null)
-						continue;
-					processNode.setXyLayoutConstraints(new Rectangle(xPosition, yPosition + additionalHeight,
-							size.width, size.height));
-					newAdditionalHeight = Math.max(newAdditionalHeight, yPosition + additionalHeight + size.height);
-				}
-			}
-			additionalHeight = newAdditionalHeight + LayoutManager.V_SPACE;
-		}
-		containing.clear();
-		widths.clear();
-		heights.clear();
-		locations.clear();
-	}
-
-	private class Node {
-
-		long processId;
-		List<Node> leftChildren = new ArrayList<>();
-		List<Node> rightChildren = new ArrayList<>();
-
-		int getLeftDepth() {
-			if (leftChildren.size() == 0)
-				return 0;
-			int depth = 1;
-			int depthAdd = 0;
-			for (int i = 0; i < leftChildren.size(); i++)
-				depthAdd = Math.max(depthAdd, leftChildren.get(i).getLeftDepth());
-			depth += depthAdd;
-			return depth;
-		}
-
-		int getSize() {
-			if (rightChildren.size() == 0 && leftChildren.size() == 0)
-				return 1;
-			int size = 0;
-			for (int i = 0; i < rightChildren.size(); i++)
-				size += rightChildren.get(i).getSize();
-			for (int i = 0; i < leftChildren.size(); i++)
-				size += leftChildren.get(i).getSize();
-			return size;
+			Dimension size = node.getSize();
+			if (size == null)
+				continue;
+			node.setXyLayoutConstraints(
+					new Rectangle(0, 0, size.width, size.height));
 		}
-
-		void sort() {
-			List<Node> temp = new ArrayList<>();
-			temp.addAll(leftChildren);
-			Collections.sort(temp, (o1, o2) -> {
-				return Integer.compare(o2.getSize(), o1.getSize());
-			});
-			leftChildren.clear();
-			int count = 0;
-			int i = 0;
-			while (count < temp.size()) {
-				leftChildren.add(temp.get(i));
-				count++;
-				if (count < temp.size()) {
-					leftChildren.add(temp.get(temp.size() - i - 1));
-					count++;
-				}
-				i++;
-			}
+		for (int i = 0; i < nodes.size(); i++) {
+			ProcessNode node = nodes.get(i);
+			if (systemNode.getProcessNode(node.process.id) != node)
+				continue;
+			if (node.getSize() == null || layout.components[i] < 0)
+				continue;
+			node.setXyLayoutConstraints(new Rectangle(layout.x[i],
+					layout.y[i], widths[i], heights[i]));
 		}
-
 	}
 
 }
@@ -1,6 +1,7 @@
 package org.openlca.app.editors.graphical.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.draw2d.IFigure;
@@ -26,6 +27,22 @@ abstract class Node implements Comparable<Node> {
 		return true;
 	}
 
+	/**
+	 * Adds the given nodes as children to this node. Unlike calling
+	 * {@link #add(Node)} for each node, the children of the edit part are only
+	 * refreshed once.
+	 */
+	public void addAll(Collection<? extends Node> nodes) {
+		if (nodes == null || nodes.isEmpty())
+			return;
+		for (Node child : nodes) {
+			if (children.add(child))
+				child.parent = this;
+		}
+		if (editPart != null)
+			editPart.refreshChildren();
+	}
+
 	public boolean remove(Node child) {
 		if (!children.remove(child))
 			return false;
@@ -1,7 +1,8 @@
 package org.openlca.app.editors.graphical.model;
 
-import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.draw2d.ImageFigure;
 import org.eclipse.draw2d.MouseEvent;
@@ -57,13 +58,12 @@ class ProcessExpander extends ImageFigure {
 		expanded = true;
 
 		// set expanded nodes visible
-		List<ProcessNode> nodes = new ArrayList<>();
+		Set<ProcessNode> nodes = new LinkedHashSet<>();
 		for (Link link : node.links) {
 			ProcessNode match = getMatchingNode(link);
-			if (match == null || nodes.contains(match))
+			if (match == null || !nodes.add(match))
 				continue;
 			match.setVisible(true);
-			nodes.add(match);
 		}
 		// then the links of the nodes because
 		// there visibility depends on the
@@ -1,5 +1,6 @@
 package org.openlca.app.editors.graphical.model;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.openlca.app.db.Database;
@@ -9,12 +10,23 @@ import org.openlca.core.matrix.cache.FlowTable;
 import org.openlca.core.model.ProcessLink;
 import org.openlca.core.model.ProductSystem;
 
+import gnu.trove.impl.Constants;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 public class ProductSystemNode extends Node {
 
 	public final ProductSystemGraphEditor editor;
 	public final MutableProcessLinkSearchMap linkSearch;
 	public final FlowTable flows = FlowTable.create(Database.get());
 
+	/**
+	 * An index process ID -> process node of the child nodes. It is updated
+	 * when nodes are added or removed so that the lookup of a process node
+	 * does not need to scan the children.
+	 */
+	private final TLongObjectHashMap<ProcessNode> processNodes = new TLongObjectHashMap<>(
+			Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1L);
+
 	public ProductSystemNode(ProductSystemGraphEditor editor) {
 		List<ProcessLink> links = editor.getSystemEditor()
 				.getModel().processLinks;
@@ -33,10 +45,41 @@ public class ProductSystemNode extends Node {
 	}
 
 	public ProcessNode getProcessNode(long id) {
-		for (ProcessNode node : getChildren())
-			if (node.process.id == id)
-				return node;
-		return null;
+		return processNodes.get(id);
+	}
+
+	@Override
+	public boolean add(Node child) {
+		index(child);
+		return super.add(child);
+	}
+
+	@Override
+	public void addAll(Collection<? extends Node> nodes) {
+		if (nodes == null)
+			return;
+		for (Node child : nodes) {
+			index(child);
+		}
+		super.addAll(nodes);
+	}
+
+	@Override
+	public boolean remove(Node child) {
+		if (child instanceof ProcessNode) {
+			ProcessNode node = (ProcessNode) child;
+			if (processNodes.get(node.process.id) == node) {
+				processNodes.remove(node.process.id);
+			}
+		}
+		return super.remove(child);
+	}
+
+	private void index(Node child) {
+		if (!(child instanceof ProcessNode))
+			return;
+		ProcessNode node = (ProcessNode) child;
+		processNodes.put(node.process.id, node);
 	}
 
 	@Override
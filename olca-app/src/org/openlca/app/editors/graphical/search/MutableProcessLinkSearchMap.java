@@ -2,58 +2,96 @@ package org.openlca.app.editors.graphical.search;
 
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.Collection;
+import java.util.HashMap;
 
 import org.openlca.core.model.ProcessLink;
 
+/**
+ * A process link search map that can be updated in constant time. The slot of
+ * a link in the data list is tracked in a hash map (with the same equality as
+ * the product system uses, so that merged link instances are found after the
+ * model was saved), and slots of removed links are kept in a free-list so that
+ * they can be reused by new links.
+ */
 public class MutableProcessLinkSearchMap extends ProcessLinkSearchMap {
 
+	/** Maps the links to their slots in the data list. */
+	private final HashMap<ProcessLink, Integer> slots;
+
+	/** The slots of removed links that can be reused. */
+	private final TIntArrayList freeSlots = new TIntArrayList();
+
 	public MutableProcessLinkSearchMap(Collection<ProcessLink> links) {
 		super(links);
+		slots = new HashMap<>(data.size() * 2);
+		for (int i = 0; i < data.size(); i++) {
+			slots.put(data.get(i), i);
+		}
 	}
 
 	public void put(ProcessLink link) {
-		int index = remove(link);
-		if (index == -1)
-			index = getAvailableIndex();
+		// a removed slot is pushed on the free-list and directly reused
+		remove(link);
+		int index = getAvailableIndex();
 		if (index < data.size())
 			data.set(index, link);
 		else
 			data.add(link);
+		slots.put(link, index);
 		index(link.providerId, index, providerIndex);
 		index(link.processId, index, connectionIndex);
 	}
 
+	/**
+	 * Adds the given links to the map. The capacity of the data list is
+	 * ensured once for all links so that no intermediate array copies are
+	 * needed when the links are appended.
+	 */
+	public void putAll(Collection<ProcessLink> links) {
+		data.ensureCapacity(data.size() + links.size());
+		for (ProcessLink link : links) {
+			put(link);
+		}
+	}
+
 	private int getAvailableIndex() {
-		for (int index = 0; index < data.size(); index++)
-			if (data.get(index) == null) // previously removed link
-				return index;
-		return data.size();
+		if (freeSlots.isEmpty())
+			return data.size();
+		return freeSlots.removeAt(freeSlots.size() - 1);
 	}
 
 	public void removeAll(Collection<ProcessLink> links) {
 		for (ProcessLink link : links)
 			remove(link);
+		if (slots.isEmpty()) {
+			// all links were removed: release the data
+			data.clear();
+			freeSlots.clear();
+		}
 	}
 
 	public int remove(ProcessLink link) {
-		int index = data.indexOf(link);
-		if (index < 0)
+		Integer slot = slots.remove(link);
+		if (slot == null)
 			return -1;
+		int index = slot;
 		data.set(index, null);
+		freeSlots.add(index);
 		remove(link.providerId, index, providerIndex);
 		remove(link.processId, index, connectionIndex);
 		return index;
 	}
 
 	private void remove(long id, int index,
-			TLongObjectHashMap<TIntArrayList> map) {
-		TIntArrayList list = map.get(id);
-		if (list == null)
+			TLongObjectHashMap<TIntHashSet> map) {
+		TIntHashSet set = map.get(id);
+		if (set == null)
 			return;
-		list.remove(index);
-		if (list.size() == 0)
+		set.remove(index);
+		if (set.size() == 0)
 			map.remove(id);
 	}
 
@@ -2,7 +2,6 @@ package org.openlca.app.editors.graphical.search;
 
 import gnu.trove.impl.Constants;
 import gnu.trove.iterator.TIntIterator;
-import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 
@@ -23,13 +22,13 @@ public class ProcessLinkSearchMap {
 	 * A map process-ID -> process links, where the process is a provider means
 	 * it has the product output or waste input that is described by the link.
 	 */
-	final TLongObjectHashMap<TIntArrayList> providerIndex;
+	final TLongObjectHashMap<TIntHashSet> providerIndex;
 
 	/**
 	 * A map process-ID -> process links, where the process is connected by a
 	 * product input or waste output to another process.
 	 */
-	TLongObjectHashMap<TIntArrayList> connectionIndex;
+	TLongObjectHashMap<TIntHashSet> connectionIndex;
 
 	ArrayList<ProcessLink> data;
 
@@ -44,15 +43,14 @@ public class ProcessLinkSearchMap {
 		}
 	}
 
-	void index(long key, int val, TLongObjectHashMap<TIntArrayList> map) {
-		TIntArrayList list = map.get(key);
-		if (list == null) {
-			list = new TIntArrayList(Constants.DEFAULT_CAPACITY, -1);
-			map.put(key, list);
+	void index(long key, int val, TLongObjectHashMap<TIntHashSet> map) {
+		TIntHashSet set = map.get(key);
+		if (set == null) {
+			set = new TIntHashSet(Constants.DEFAULT_CAPACITY,
+					Constants.DEFAULT_LOAD_FACTOR, -1);
+			map.put(key, set);
 		}
-		if (list.contains(val))
-			return;
-		list.add(val);
+		set.add(val);
 	}
 
 	/**
@@ -65,12 +63,12 @@ public class ProcessLinkSearchMap {
 		// in some kind of product systems (e.g. from IO-databases) we do
 		// not just merge the incoming and outgoing links here
 		TIntHashSet intSet = new TIntHashSet(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1);
-		TIntArrayList list = providerIndex.get(processId);
-		if (list != null)
-			intSet.addAll(list);
-		list = connectionIndex.get(processId);
-		if (list != null)
-			intSet.addAll(list);
+		TIntHashSet set = providerIndex.get(processId);
+		if (set != null)
+			intSet.addAll(set);
+		set = connectionIndex.get(processId);
+		if (set != null)
+			intSet.addAll(set);
 		return getLinks(intSet.iterator());
 	}
 
@@ -91,11 +89,11 @@ public class ProcessLinkSearchMap {
 	}
 
 	private List<ProcessLink> getLinks(long processId,
-			TLongObjectHashMap<TIntArrayList> map) {
-		TIntArrayList list = map.get(processId);
-		if (list == null)
+			TLongObjectHashMap<TIntHashSet> map) {
+		TIntHashSet set = map.get(processId);
+		if (set == null)
 			return Collections.emptyList();
-		return getLinks(list.iterator());
+		return getLinks(set.iterator());
 	}
 
 	private List<ProcessLink> getLinks(TIntIterator iterator) {
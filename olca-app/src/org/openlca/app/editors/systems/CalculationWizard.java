@@ -165,6 +165,10 @@ public class CalculationWizard extends Wizard {
 		Preferences.set("calc.nwset", nwsVal);
 		saveDefault(CalculationType.class, setup.type);
 		Preferences.set("calc.numberOfRuns", Integer.toString(setup.numberOfRuns));
+		if (setup.type == CalculationType.MONTE_CARLO_SIMULATION) {
+			Preferences.getStore().setValue(
+					Preferences.SIMULATION_THREADS, page.getThreadCount());
+		}
 		Preferences.set("calc.costCalculation", Boolean.toString(setup.withCosts));
 		if (dqSetup == null) {
 			Preferences.set("calc.dqAssessment", "false");
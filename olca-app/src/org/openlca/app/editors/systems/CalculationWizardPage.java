@@ -42,6 +42,7 @@ class CalculationWizardPage extends WizardPage {
 	private ImpactMethodViewer methodViewer;
 	private NwSetComboViewer nwViewer;
 	private Text iterationText;
+	private Text threadText;
 	private Button costCheck;
 	private Button dqAssessment;
 	private Button storeInventoryResult;
@@ -52,6 +53,7 @@ class CalculationWizardPage extends WizardPage {
 
 	private CalculationType type;
 	private int iterationCount;
+	private int threadCount;
 
 	CalculationWizardPage() {
 		super(CalculationWizardPage.class.getCanonicalName());
@@ -153,6 +155,21 @@ class CalculationWizardPage extends WizardPage {
 		iterationText = new Text(monteCarloOptions, SWT.BORDER);
 		UI.gridData(iterationText, false, false).widthHint = 80;
 		iterationText.addModifyListener(e -> numberOfRunsChanged());
+		Label threadLabel = UI.formLabel(monteCarloOptions, M.NumberOfThreads);
+		UI.gridData(threadLabel, false, false);
+		threadText = new Text(monteCarloOptions, SWT.BORDER);
+		UI.gridData(threadText, false, false).widthHint = 80;
+		threadText.setToolTipText("0 = number of processors - 1");
+		threadText.addModifyListener(e -> numberOfThreadsChanged());
+	}
+
+	private void numberOfThreadsChanged() {
+		String text = threadText.getText();
+		try {
+			threadCount = Math.max(0, Integer.parseInt(text));
+		} catch (Exception e) {
+			MsgBox.error(M.InvalidNumber, text + " " + M.IsNotValidNumber);
+		}
 	}
 
 	private void numberOfRunsChanged() {
@@ -210,6 +227,9 @@ class CalculationWizardPage extends WizardPage {
 		if (Strings.isNullOrEmpty(itCount))
 			itCount = "100";
 		iterationText.setText(itCount);
+		int threads = Preferences.getStore().getInt(
+				Preferences.SIMULATION_THREADS);
+		threadText.setText(Integer.toString(Math.max(0, threads)));
 		boolean withCosts = getDefaultBoolean("calc.costCalculation");
 		costCheck.setSelection(withCosts);
 		boolean doDqAssessment = getDefaultBoolean("calc.dqAssessment");
@@ -310,6 +330,14 @@ class CalculationWizardPage extends WizardPage {
 		return setUp;
 	}
 
+	/**
+	 * Returns the number of threads for a Monte Carlo simulation; 0 means that
+	 * it is derived from the number of processors.
+	 */
+	int getThreadCount() {
+		return threadCount;
+	}
+
 	boolean doDqAssessment() {
 		return dqAssessment.getSelection();
 	}
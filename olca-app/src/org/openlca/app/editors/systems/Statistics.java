@@ -1,12 +1,8 @@
 package org.openlca.app.editors.systems;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.Queue;
 
 import org.openlca.app.db.Database;
 import org.openlca.core.database.EntityCache;
@@ -22,24 +18,48 @@ import org.openlca.core.model.descriptors.ProcessDescriptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-
+import gnu.trove.map.hash.TLongIntHashMap;
 import gnu.trove.map.hash.TLongLongHashMap;
 
-class Statistics {
+/**
+ * Calculates statistics of the graph of a product system. The process links
+ * are stored in primitive adjacency arrays (compressed sparse rows) for the
+ * incoming and outgoing edges of the processes so that all graph statistics
+ * are calculated in linear time of the number of processes and links. The
+ * statistics are also available in the Python scripting API.
+ */
+public class Statistics {
+
+	public int processCount;
+	public int linkCount;
+	public int techMatrixSize;
+	public boolean connectedGraph;
+	public ProcessDescriptor refProcess;
+	public List<LinkDegree> topInDegrees;
+	public List<LinkDegree> topOutDegrees;
+
+	public int singleProviderLinkCount;
+	public int defaultProviderLinkCount;
+	public int multiProviderLinkCount;
 
-	int processCount;
-	int linkCount;
-	int techMatrixSize;
-	boolean connectedGraph;
-	ProcessDescriptor refProcess;
-	List<LinkDegree> topInDegrees;
-	List<LinkDegree> topOutDegrees;
+	/**
+	 * The number of cycles in the graph, i.e. the number of strongly connected
+	 * components with more than one process or with a self-loop.
+	 */
+	public int cycleCount;
 
-	int singleProviderLinkCount;
-	int defaultProviderLinkCount;
-	int multiProviderLinkCount;
+	/** The number of processes that are part of a cycle. */
+	public int processesInCycles;
+
+	/** The number of processes of the largest cycle. */
+	public int largestCycle;
+
+	/**
+	 * The number of processes per depth: the value at index i is the number
+	 * of processes that are i links upstream of the reference process (on the
+	 * shortest path).
+	 */
+	public int[] depthDistribution = new int[0];
 
 	private Statistics() {
 	}
@@ -56,93 +76,162 @@ class Statistics {
 		return statistics;
 	}
 
+	/** Returns the maximum depth of the graph. */
+	public int maxDepth() {
+		return Math.max(0, depthDistribution.length - 1);
+	}
+
 	private void doCalc(ProductSystem system, EntityCache cache) {
 		processCount = system.processes.size();
 		linkCount = system.processLinks.size();
 		refProcess = Descriptors.toDescriptor(system.referenceProcess);
 		HashSet<LongPair> processProducts = new HashSet<>();
-		Multimap<Long, Long> inEdges = HashMultimap.create();
-		Multimap<Long, Long> outEdges = HashMultimap.create();
 		for (ProcessLink link : system.processLinks) {
 			processProducts.add(LongPair.of(link.providerId, link.flowId));
-			inEdges.put(link.processId, link.providerId);
-			outEdges.put(link.providerId, link.processId);
 		}
 		techMatrixSize = processProducts.size();
-		connectedGraph = isConnectedGraph(system, inEdges);
-		topInDegrees = calculateMostLinked(inEdges, 5, cache);
-		topOutDegrees = calculateMostLinked(outEdges, 5, cache);
+		Graph g = new Graph(system);
+		int ref = system.referenceProcess == null
+				? -1
+				: g.index.get(system.referenceProcess.id);
+		connectedGraph = isConnectedGraph(g, ref);
+		depthDistribution = depthDistribution(g, ref);
+		calculateCycles(g);
+		topInDegrees = calculateMostLinked(g, g.inStart, 5, cache);
+		topOutDegrees = calculateMostLinked(g, g.outStart, 5, cache);
 		collectProviderInfos(system, Database.get());
 	}
 
 	/**
-	 * The product system graph is connected if we can visit every process in the
-	 * product system traversing the graph starting from the reference process and
-	 * following the incoming process links.
+	 * The product system graph is connected if we can visit every process in
+	 * the product system traversing the graph starting from the reference
+	 * process and following the incoming process links.
 	 */
-	private static boolean isConnectedGraph(ProductSystem system,
-			Multimap<Long, Long> inEdges) {
-		if (system.referenceProcess == null)
+	private static boolean isConnectedGraph(Graph g, int ref) {
+		if (ref < 0)
 			return false;
-		HashMap<Long, Boolean> visited = new HashMap<>();
-		Queue<Long> queue = new ArrayDeque<>();
-		queue.add(system.referenceProcess.id);
-		while (!queue.isEmpty()) {
-			Long recipient = queue.poll();
-			visited.put(recipient, Boolean.TRUE);
-			for (Long provider : inEdges.get(recipient)) {
-				Boolean state = visited.get(provider);
-				if (!Objects.equals(state, Boolean.TRUE)
-						&& !queue.contains(provider))
-					queue.add(provider);
-			}
-		}
-		for (Long processId : system.processes) {
-			Boolean val = visited.get(processId);
-			if (!Objects.equals(val, Boolean.TRUE))
+		int[] depths = g.depths(ref);
+		for (int i = 0; i < g.systemProcesses; i++) {
+			if (depths[i] < 0)
 				return false;
 		}
 		return true;
 	}
 
-	private static List<LinkDegree> calculateMostLinked(
-			Multimap<Long, Long> edges,
+	private static int[] depthDistribution(Graph g, int ref) {
+		if (ref < 0)
+			return new int[0];
+		int[] depths = g.depths(ref);
+		int max = 0;
+		for (int d : depths) {
+			max = Math.max(max, d);
+		}
+		int[] distribution = new int[max + 1];
+		for (int d : depths) {
+			if (d >= 0) {
+				distribution[d]++;
+			}
+		}
+		return distribution;
+	}
+
+	/**
+	 * Calculates the strongly connected components of the graph with an
+	 * iterative version of Tarjan's algorithm.
+	 */
+	private void calculateCycles(Graph g) {
+		int n = g.size;
+		int[] index = new int[n];
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int sp = 0;
+		int[] callStack = new int[n];
+		int[] edgePos = new int[n];
+		int counter = 0;
+		for (int i = 0; i < n; i++) {
+			index[i] = -1;
+		}
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0)
+				continue;
+			int csp = 0;
+			callStack[csp++] = root;
+			index[root] = low[root] = counter++;
+			edgePos[root] = g.outStart[root];
+			stack[sp++] = root;
+			onStack[root] = true;
+			while (csp > 0) {
+				int v = callStack[csp - 1];
+				if (edgePos[v] < g.outStart[v + 1]) {
+					int w = g.outEdges[edgePos[v]++];
+					if (index[w] < 0) {
+						index[w] = low[w] = counter++;
+						edgePos[w] = g.outStart[w];
+						stack[sp++] = w;
+						onStack[w] = true;
+						callStack[csp++] = w;
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+					continue;
+				}
+				// all edges of v visited
+				csp--;
+				if (csp > 0) {
+					int parent = callStack[csp - 1];
+					low[parent] = Math.min(low[parent], low[v]);
+				}
+				if (low[v] != index[v])
+					continue;
+				int size = 0;
+				int w;
+				do {
+					w = stack[--sp];
+					onStack[w] = false;
+					size++;
+				} while (w != v);
+				if (size > 1 || g.hasSelfLoop(v)) {
+					cycleCount++;
+					processesInCycles += size;
+					largestCycle = Math.max(largestCycle, size);
+				}
+			}
+		}
+	}
+
+	private static List<LinkDegree> calculateMostLinked(Graph g, int[] start,
 			int maxSize, EntityCache cache) {
-		Long[] keys = new Long[maxSize];
+		long[] keys = new long[maxSize];
 		int[] degrees = new int[maxSize];
-		for (Long id : edges.keySet()) {
-			int degree = edges.get(id).size();
+		for (int v = 0; v < g.size; v++) {
+			int degree = start[v + 1] - start[v];
 			if (degree == 0)
 				continue;
-			Long key = id;
+			long key = g.ids[v];
 			for (int i = 0; i < maxSize; i++) {
 				if (degree <= degrees[i])
 					continue;
-				if (keys[i] == null) {
-					keys[i] = key;
-					degrees[i] = degree;
+				long swapKey = keys[i];
+				int swapDegree = degrees[i];
+				keys[i] = key;
+				degrees[i] = degree;
+				if (swapDegree == 0)
 					break;
-				} else {
-					Long swapKey = keys[i];
-					int swapDegree = degrees[i];
-					keys[i] = key;
-					degrees[i] = degree;
-					key = swapKey;
-					degree = swapDegree;
-				}
+				key = swapKey;
+				degree = swapDegree;
 			}
 		}
 		return createLinkValues(keys, degrees, cache);
 	}
 
-	private static List<LinkDegree> createLinkValues(Long[] keys, int[] degrees,
+	private static List<LinkDegree> createLinkValues(long[] keys, int[] degrees,
 			EntityCache cache) {
 		List<LinkDegree> linkValues = new ArrayList<>();
 		for (int i = 0; i < keys.length; i++) {
-			Long key = keys[i];
-			if (key == null)
+			if (degrees[i] == 0)
 				break;
-			ProcessDescriptor process = cache.get(ProcessDescriptor.class, key);
+			ProcessDescriptor process = cache.get(ProcessDescriptor.class, keys[i]);
 			LinkDegree value = new LinkDegree();
 			value.process = process;
 			value.degree = degrees[i];
@@ -186,9 +275,143 @@ class Statistics {
 		}
 	}
 
-	static class LinkDegree {
-		int degree;
-		ProcessDescriptor process;
+	public static class LinkDegree {
+		public int degree;
+		public ProcessDescriptor process;
+	}
+
+	/**
+	 * The process graph in compressed sparse row format. The processes are
+	 * mapped to the indices 0..n-1; the processes of the product system come
+	 * first, followed by processes that only occur in links. The neighbours of
+	 * process i are stored in edges[start[i]] .. edges[start[i+1] - 1]
+	 * without duplicates (multiple links between the same processes count as
+	 * one edge).
+	 */
+	private static class Graph {
+
+		final TLongIntHashMap index = new TLongIntHashMap(16, 0.5f, -1L, -1);
+		final long[] ids;
+		final int size;
+		final int systemProcesses;
+
+		/** recipient -> providers */
+		final int[] inStart;
+		final int[] inEdges;
+
+		/** provider -> recipients */
+		final int[] outStart;
+		final int[] outEdges;
+
+		Graph(ProductSystem system) {
+			int n = 0;
+			long[] ids = new long[system.processes.size()
+					+ 2 * system.processLinks.size()];
+			for (Long id : system.processes) {
+				if (id != null && index.putIfAbsent(id, n) < 0) {
+					ids[n++] = id;
+				}
+			}
+			systemProcesses = n;
+			int m = system.processLinks.size();
+			int[] recipients = new int[m];
+			int[] providers = new int[m];
+			int e = 0;
+			for (ProcessLink link : system.processLinks) {
+				if (index.putIfAbsent(link.processId, n) < 0) {
+					ids[n++] = link.processId;
+				}
+				if (index.putIfAbsent(link.providerId, n) < 0) {
+					ids[n++] = link.providerId;
+				}
+				recipients[e] = index.get(link.processId);
+				providers[e] = index.get(link.providerId);
+				e++;
+			}
+			this.size = n;
+			this.ids = ids;
+			inStart = new int[n + 1];
+			outStart = new int[n + 1];
+			inEdges = compress(recipients, providers, n, inStart);
+			outEdges = compress(providers, recipients, n, outStart);
+		}
+
+		/**
+		 * Creates the edge array of the CSR format with counting sort and
+		 * removes duplicate edges with a marker array.
+		 */
+		private static int[] compress(int[] from, int[] to, int n, int[] start) {
+			int m = from.length;
+			int[] counts = new int[n + 1];
+			for (int i = 0; i < m; i++) {
+				counts[from[i] + 1]++;
+			}
+			for (int i = 0; i < n; i++) {
+				counts[i + 1] += counts[i];
+			}
+			int[] edges = new int[m];
+			int[] pos = counts.clone();
+			for (int i = 0; i < m; i++) {
+				edges[pos[from[i]]++] = to[i];
+			}
+
+			// remove duplicates
+			int[] marker = new int[n];
+			for (int i = 0; i < n; i++) {
+				marker[i] = -1;
+			}
+			int k = 0;
+			for (int v = 0; v < n; v++) {
+				start[v] = k;
+				for (int i = counts[v]; i < counts[v + 1]; i++) {
+					int w = edges[i];
+					if (marker[w] == v)
+						continue;
+					marker[w] = v;
+					edges[k++] = w;
+				}
+			}
+			start[n] = k;
+			int[] compressed = new int[k];
+			System.arraycopy(edges, 0, compressed, 0, k);
+			return compressed;
+		}
+
+		/**
+		 * Returns the shortest number of links from the given process to each
+		 * process when following the incoming links (upstream); -1 if a
+		 * process cannot be reached.
+		 */
+		int[] depths(int ref) {
+			int[] depths = new int[size];
+			for (int i = 0; i < size; i++) {
+				depths[i] = -1;
+			}
+			int[] queue = new int[size];
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = ref;
+			depths[ref] = 0;
+			while (head < tail) {
+				int v = queue[head++];
+				for (int i = inStart[v]; i < inStart[v + 1]; i++) {
+					int w = inEdges[i];
+					if (depths[w] >= 0)
+						continue;
+					depths[w] = depths[v] + 1;
+					queue[tail++] = w;
+				}
+			}
+			return depths;
+		}
+
+		boolean hasSelfLoop(int v) {
+			for (int i = outStart[v]; i < outStart[v + 1]; i++) {
+				if (outEdges[i] == v)
+					return true;
+			}
+			return false;
+		}
 	}
 
 }
@@ -60,6 +60,7 @@ class StatisticsPage extends ModelPage<ProductSystem> {
 		Composite body = UI.formBody(form, tk);
 		generalSection(tk, body);
 		providerSection(tk, body);
+		graphSection(tk, body);
 		linkDegreeTable(body, tk, true);
 		linkDegreeTable(body, tk, false);
 		form.reflow(true);
@@ -126,6 +127,44 @@ class StatisticsPage extends ModelPage<ProductSystem> {
 		});
 	}
 
+	private void graphSection(FormToolkit tk, Composite body) {
+		Composite comp = UI.formSection(body, tk, "Graph structure");
+		UI.gridLayout(comp, 2, 15, 10);
+
+		UI.formLabel(comp, "Number of cycles");
+		bind(UI.formLabel(comp, ""), label -> {
+			label.setText(Integer.toString(stats.cycleCount));
+		});
+
+		UI.formLabel(comp, "Processes in cycles");
+		bind(UI.formLabel(comp, ""), label -> {
+			label.setText(Integer.toString(stats.processesInCycles));
+		});
+
+		UI.formLabel(comp, "Processes in the largest cycle");
+		bind(UI.formLabel(comp, ""), label -> {
+			label.setText(Integer.toString(stats.largestCycle));
+		});
+
+		UI.formLabel(comp, "Maximum depth (from reference process)");
+		bind(UI.formLabel(comp, ""), label -> {
+			label.setText(Integer.toString(stats.maxDepth()));
+		});
+
+		UI.formLabel(comp, "Processes per depth");
+		bind(UI.formLabel(comp, ""), label -> {
+			StringBuilder text = new StringBuilder();
+			int[] depths = stats.depthDistribution;
+			for (int i = 0; i < depths.length; i++) {
+				if (i > 0) {
+					text.append(", ");
+				}
+				text.append(i).append(": ").append(depths[i]);
+			}
+			label.setText(text.toString());
+		});
+	}
+
 	private void linkDegreeTable(Composite body, FormToolkit tk, boolean inDegree) {
 		String title = inDegree
 				? "Processes with highest in-degree (linked inputs)"
@@ -50,6 +50,12 @@ public class CategoryElement extends NavigationElement<Category> {
 
 	private void addModelElements(Category category,
 			List<INavigationElement<?>> list) {
+		List<ModelPage> pages = ModelPage.of(category.modelType, category);
+		if (pages != null) {
+			for (ModelPage page : pages)
+				list.add(new ModelPageElement(this, page));
+			return;
+		}
 		try {
 			CategorizedEntityDao<?, ?> dao = Daos.categorized(
 					Database.get(), category.modelType);
@@ -190,6 +190,8 @@ public class CopyPaste {
 	}
 
 	private static Category getCategory(INavigationElement<?> element) {
+		if (element instanceof ModelPageElement)
+			return ((ModelPageElement) element).getCategory();
 		return element instanceof CategoryElement ? ((CategoryElement) element).getContent() : null;
 	}
 
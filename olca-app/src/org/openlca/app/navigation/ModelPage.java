@@ -0,0 +1,173 @@
+package org.openlca.app.navigation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.openlca.app.db.Database;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A page of the models in a category (or of the models without category of a
+ * model type). When a category contains more than {@link #SIZE} models, the
+ * models are not added directly to the navigation tree but split into pages
+ * of their IDs sorted by name. The names are sorted with the same comparison
+ * as the elements in the navigation tree so that the elements of a page are
+ * in the range of the page. The descriptors of a page are only loaded when
+ * the page is expanded.
+ */
+public class ModelPage {
+
+	/** The maximum number of models in a page. */
+	public static final int SIZE = 500;
+
+	public final ModelType type;
+	public final Long category;
+	public final int index;
+
+	/** The IDs of the models in this page. */
+	final long[] ids;
+
+	/** The names of the first and last model in this page. */
+	public final String first;
+	public final String last;
+
+	private ModelPage(ModelType type, Long category, int index, long[] ids,
+			String first, String last) {
+		this.type = type;
+		this.category = category;
+		this.index = index;
+		this.ids = ids;
+		this.first = first;
+		this.last = last;
+	}
+
+	/**
+	 * Splits the models of the given type and category into pages. The
+	 * category can be null to get the pages of the models without category.
+	 * Returns null if the models fit into a single page (or the model type
+	 * does not support paging) so that they can be added directly to the
+	 * tree.
+	 */
+	static List<ModelPage> of(ModelType type, Category category) {
+		String table = tableOf(type);
+		IDatabase db = Database.get();
+		if (table == null || db == null)
+			return null;
+		Long categoryId = category != null ? category.id : null;
+		String where = " where f_category "
+				+ (categoryId == null ? "is null" : "= " + categoryId);
+		List<Item> items = new ArrayList<>();
+		try {
+			// first count the models so that the IDs and names are only
+			// queried for categories that need to be split into pages
+			int[] total = { 0 };
+			NativeSql.on(db).query("select count(*) from " + table + where,
+					r -> {
+						total[0] = r.getInt(1);
+						return false;
+					});
+			if (total[0] <= SIZE)
+				return null;
+			NativeSql.on(db).query("select id, name from " + table + where,
+					r -> {
+						items.add(new Item(r.getLong(1), r.getString(2)));
+						return true;
+					});
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(ModelPage.class);
+			log.error("failed to query model pages of " + type, e);
+			return null;
+		}
+		if (items.size() <= SIZE)
+			return null;
+		items.sort((i1, i2) -> NavigationComparator.compareNames(
+				i1.name, i2.name));
+		List<ModelPage> pages = new ArrayList<>();
+		for (int start = 0; start < items.size(); start += SIZE) {
+			int end = Math.min(start + SIZE, items.size());
+			long[] ids = new long[end - start];
+			for (int i = start; i < end; i++) {
+				ids[i - start] = items.get(i).id;
+			}
+			pages.add(new ModelPage(type, categoryId, pages.size(), ids,
+					items.get(start).name, items.get(end - 1).name));
+		}
+		return pages;
+	}
+
+	private static class Item {
+
+		final long id;
+		final String name;
+
+		Item(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Returns the table of the given model type or null if the models of that
+	 * type cannot be paged.
+	 */
+	public static String tableOf(ModelType type) {
+		if (type == null)
+			return null;
+		switch (type) {
+		case ACTOR:
+			return "tbl_actors";
+		case CURRENCY:
+			return "tbl_currencies";
+		case DQ_SYSTEM:
+			return "tbl_dq_systems";
+		case FLOW:
+			return "tbl_flows";
+		case FLOW_PROPERTY:
+			return "tbl_flow_properties";
+		case IMPACT_METHOD:
+			return "tbl_impact_methods";
+		case LOCATION:
+			return "tbl_locations";
+		case PROCESS:
+			return "tbl_processes";
+		case PRODUCT_SYSTEM:
+			return "tbl_product_systems";
+		case PROJECT:
+			return "tbl_projects";
+		case SOCIAL_INDICATOR:
+			return "tbl_social_indicators";
+		case SOURCE:
+			return "tbl_sources";
+		case UNIT_GROUP:
+			return "tbl_unit_groups";
+		default:
+			// e.g. parameters are filtered by their scope
+			return null;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null)
+			return false;
+		if (obj == this)
+			return true;
+		if (!(obj instanceof ModelPage))
+			return false;
+		ModelPage other = (ModelPage) obj;
+		return this.type == other.type
+				&& Objects.equals(this.category, other.category)
+				&& this.index == other.index;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(type, category, index);
+	}
+}
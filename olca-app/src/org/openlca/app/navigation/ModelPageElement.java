@@ -0,0 +1,58 @@
+package org.openlca.app.navigation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openlca.app.db.Database;
+import org.openlca.core.database.CategorizedEntityDao;
+import org.openlca.core.database.Daos;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents a page of models in the navigation tree; see {@link ModelPage}.
+ */
+public class ModelPageElement extends NavigationElement<ModelPage> {
+
+	public ModelPageElement(INavigationElement<?> parent, ModelPage page) {
+		super(parent, page);
+	}
+
+	/**
+	 * Returns the category of the models in this page or null if the models
+	 * have no category.
+	 */
+	public Category getCategory() {
+		INavigationElement<?> parent = getParent();
+		if (parent instanceof CategoryElement)
+			return ((CategoryElement) parent).getContent();
+		return null;
+	}
+
+	@Override
+	protected List<INavigationElement<?>> queryChilds() {
+		ModelPage page = getContent();
+		List<INavigationElement<?>> list = new ArrayList<>();
+		try {
+			CategorizedEntityDao<?, ?> dao = Daos.categorized(
+					Database.get(), page.type);
+			if (dao == null)
+				return list;
+			Set<Long> ids = new HashSet<>();
+			for (long id : page.ids) {
+				ids.add(id);
+			}
+			for (CategorizedDescriptor d : dao.getDescriptors(ids))
+				list.add(new ModelElement(this, d));
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("failed to get model elements of page " + page.index, e);
+		}
+		return list;
+	}
+
+}
@@ -1,59 +1,218 @@
 package org.openlca.app.navigation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerFilter;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Text;
-import org.eclipse.swt.widgets.TreeItem;
-import org.openlca.app.util.Labels;
+import org.openlca.app.db.Database;
+import org.openlca.app.navigation.filters.EmptyCategoryFilter;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A class for filtering model elements from an navigation tree via a text
- * filter. The filter directly registers a listener on the text field.
+ * filter. The filter directly registers a listener on the text field. The
+ * input is debounced and the matching models are searched in a background
+ * thread in an index of the display names and category paths of the models
+ * (see {@link NameIndex}). The tree is then refreshed once and the paths to
+ * the matching models are expanded. The index is built again when the
+ * database or its content changed since it was built (see
+ * {@link Database#getChangeCount()}).
  */
 public class ModelTextFilter extends ViewerFilter {
 
+	/** The delay in milliseconds before a search is started. */
+	private static final int DELAY = 300;
+
+	/** Up to this number of matches, all matching paths are expanded. */
+	private static final int MAX_EXPANDED = 200;
+
 	private final Text filterText;
+	private final TreeViewer viewer;
+	private final AtomicInteger generation = new AtomicInteger();
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "model text filter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// the index and the state for which it was built; these fields are only
+	// accessed in the thread of the executor
+	private NameIndex index;
+	private IDatabase indexDb;
+	private long indexChanges;
+	private List<ModelType> indexTypes;
+
+	/** The result of the last search; null when there is no filter text. */
+	private NameIndex.Result result;
 
 	public ModelTextFilter(Text text, TreeViewer viewer) {
 		this.filterText = text;
-		text.addModifyListener(e -> {
-			viewer.refresh();
-			expand(viewer);
+		this.viewer = viewer;
+		text.addModifyListener(e -> schedule());
+		text.addDisposeListener(e -> executor.shutdownNow());
+	}
+
+	private void schedule() {
+		int gen = generation.incrementAndGet();
+		String text = filterText.getText();
+		Display display = filterText.getDisplay();
+		if (text == null || text.trim().isEmpty()) {
+			apply(gen, null);
+			return;
+		}
+		display.timerExec(DELAY, () -> {
+			if (gen != generation.get() || executor.isShutdown())
+				return;
+			List<ModelType> types = typesOf(viewer.getInput());
+			executor.execute(() -> {
+				if (gen != generation.get())
+					return;
+				try {
+					NameIndex.Result r = index(types).find(text);
+					display.asyncExec(() -> apply(gen, r));
+				} catch (Exception e) {
+					Logger log = LoggerFactory.getLogger(getClass());
+					log.error("failed to filter models", e);
+				}
+			});
 		});
 	}
 
-	private void expand(TreeViewer viewer) {
-		TreeItem[] items = viewer.getTree().getItems();
-		while (items != null && items.length > 0) {
-			TreeItem next = items[0];
-			next.setExpanded(true);
-			for (int i = 1; i < items.length; i++)
-				items[i].setExpanded(false);
-			items = next.getItems();
+	/**
+	 * Returns the index for the given types. The index is built again when
+	 * the database or its content changed since it was built.
+	 */
+	private NameIndex index(List<ModelType> types) {
+		IDatabase db = Database.get();
+		long changes = Database.getChangeCount();
+		if (index == null || indexDb != db || indexChanges != changes
+				|| !types.equals(indexTypes)) {
+			index = NameIndex.build(types);
+			indexDb = db;
+			indexChanges = changes;
+			indexTypes = types;
+		}
+		return index;
+	}
+
+	private void apply(int gen, NameIndex.Result r) {
+		if (gen != generation.get() || viewer.getControl().isDisposed())
+			return;
+		result = r;
+		for (ViewerFilter filter : viewer.getFilters()) {
+			if (filter instanceof EmptyCategoryFilter) {
+				((EmptyCategoryFilter) filter).reset();
+			}
+		}
+		viewer.getControl().setRedraw(false);
+		try {
 			viewer.refresh();
+			if (r != null) {
+				expand(r);
+			}
+		} finally {
+			viewer.getControl().setRedraw(true);
+		}
+	}
+
+	/**
+	 * Expands the paths to the matching models. When there are many matches,
+	 * only the first path is expanded.
+	 */
+	private void expand(NameIndex.Result r) {
+		Object input = viewer.getInput();
+		if (!(input instanceof INavigationElement))
+			return;
+		List<Object> expanded = new ArrayList<>();
+		if (r.count <= MAX_EXPANDED) {
+			Queue<INavigationElement<?>> queue = new LinkedList<>();
+			queue.add((INavigationElement<?>) input);
+			while (!queue.isEmpty()) {
+				for (INavigationElement<?> child : queue.poll().getChildren()) {
+					if (child instanceof ModelElement || !select(child))
+						continue;
+					expanded.add(child);
+					queue.add(child);
+				}
+			}
+		} else {
+			INavigationElement<?> next = (INavigationElement<?>) input;
+			while (next != null) {
+				INavigationElement<?> parent = next;
+				next = null;
+				for (INavigationElement<?> child : parent.getChildren()) {
+					if (child instanceof ModelElement || !select(child))
+						continue;
+					expanded.add(child);
+					next = child;
+					break;
+				}
+			}
 		}
+		viewer.setExpandedElements(expanded.toArray());
 	}
 
 	@Override
 	public boolean select(Viewer viewer, Object parentElement, Object element) {
-		String text = filterText.getText();
-		if (text == null || text.trim().isEmpty())
+		if (!(element instanceof INavigationElement))
 			return true;
-		text = text.trim().toLowerCase();
-		return select((INavigationElement<?>) element, text);
+		return select((INavigationElement<?>) element);
 	}
 
-	private boolean select(INavigationElement<?> element, String text) {
+	private boolean select(INavigationElement<?> element) {
+		NameIndex.Result r = result;
+		if (r == null)
+			return true;
 		if (element instanceof ModelElement) {
-			ModelElement modelElement = (ModelElement) element;
-			String feed = Labels.getDisplayName(modelElement.getContent())
-					.toLowerCase();
-			return feed.contains(text);
+			CategorizedDescriptor d = ((ModelElement) element).getContent();
+			return d != null && r.contains(d.type, d.id);
+		}
+		if (element instanceof CategoryElement) {
+			Category category = ((CategoryElement) element).getContent();
+			return category != null && r.categories.contains(category.id);
+		}
+		if (element instanceof ModelPageElement) {
+			ModelPage page = ((ModelPageElement) element).getContent();
+			Set<Long> ids = r.models.get(page.type);
+			if (ids == null)
+				return false;
+			for (long id : page.ids) {
+				if (ids.contains(id))
+					return true;
+			}
+			return false;
+		}
+		if (element instanceof ModelTypeElement)
+			return r.models.containsKey(((ModelTypeElement) element).getContent());
+		return r.count > 0;
+	}
+
+	private List<ModelType> typesOf(Object input) {
+		if (input instanceof ModelTypeElement)
+			return Arrays.asList(((ModelTypeElement) input).getContent());
+		if (input instanceof CategoryElement) {
+			Category category = ((CategoryElement) input).getContent();
+			if (category != null)
+				return Arrays.asList(category.modelType);
 		}
-		for (INavigationElement<?> child : element.getChildren())
-			if (select(child, text))
-				return true;
-		return false;
+		if (input instanceof GroupElement)
+			return Arrays.asList(((GroupElement) input).getContent().types);
+		return Arrays.asList(ModelTypeComparison.getOrderedTypes());
 	}
-}
\ No newline at end of file
+}
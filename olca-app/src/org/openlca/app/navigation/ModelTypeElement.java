@@ -46,6 +46,12 @@ public class ModelTypeElement extends NavigationElement<ModelType> {
 	}
 
 	private void addModelElements(ModelType type, List<INavigationElement<?>> elements) {
+		List<ModelPage> pages = ModelPage.of(type, null);
+		if (pages != null) {
+			for (ModelPage page : pages)
+				elements.add(new ModelPageElement(this, page));
+			return;
+		}
 		try {
 			log.trace("get model elements without category for {}", type);
 			CategorizedEntityDao<?, ?> entityDao = Daos.categorized(Database.get(), type);
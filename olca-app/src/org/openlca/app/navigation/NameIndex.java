@@ -0,0 +1,120 @@
+package org.openlca.app.navigation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openlca.app.db.Database;
+import org.openlca.app.util.Labels;
+import org.openlca.core.database.CategorizedEntityDao;
+import org.openlca.core.database.CategoryDao;
+import org.openlca.core.database.Daos;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ParameterDao;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.openlca.core.model.descriptors.CategoryDescriptor;
+
+/**
+ * An in-memory index of the display names and category paths of the models
+ * of some model types. It is used by the {@link ModelTextFilter} to find the
+ * matching models and the categories that contain them without loading the
+ * elements of the navigation tree.
+ */
+class NameIndex {
+
+	private final List<ModelType> types = new ArrayList<>();
+	private final List<Long> ids = new ArrayList<>();
+	private final List<String> names = new ArrayList<>();
+	private final List<Long> categories = new ArrayList<>();
+
+	/** Category ID -> parent category ID. */
+	private final Map<Long, Long> parents = new HashMap<>();
+
+	private NameIndex() {
+	}
+
+	/** Builds the index; this should be called in a background thread. */
+	static NameIndex build(Collection<ModelType> modelTypes) {
+		NameIndex index = new NameIndex();
+		IDatabase db = Database.get();
+		if (db == null)
+			return index;
+		for (CategoryDescriptor c : new CategoryDao(db).getDescriptors()) {
+			if (c.category != null) {
+				index.parents.put(c.id, c.category);
+			}
+		}
+		for (ModelType type : modelTypes) {
+			if (type == null || type == ModelType.CATEGORY)
+				continue;
+			List<? extends CategorizedDescriptor> descriptors = null;
+			if (type == ModelType.PARAMETER) {
+				descriptors = new ParameterDao(db).getGlobalDescriptors();
+			} else {
+				CategorizedEntityDao<?, ?> dao = Daos.categorized(db, type);
+				if (dao != null) {
+					descriptors = dao.getDescriptors();
+				}
+			}
+			if (descriptors == null)
+				continue;
+			for (CategorizedDescriptor d : descriptors) {
+				index.types.add(type);
+				index.ids.add(d.id);
+				index.names.add(Labels.getDisplayName(d).toLowerCase());
+				index.categories.add(d.category);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the models which display names contain the given text and the
+	 * categories that contain these models.
+	 */
+	Result find(String text) {
+		Result result = new Result();
+		if (text == null)
+			return result;
+		String term = text.trim().toLowerCase();
+		for (int i = 0; i < names.size(); i++) {
+			if (!names.get(i).contains(term))
+				continue;
+			ModelType type = types.get(i);
+			Set<Long> models = result.models.get(type);
+			if (models == null) {
+				result.models.put(type, models = new HashSet<>());
+			}
+			models.add(ids.get(i));
+			result.count++;
+			Long category = categories.get(i);
+			while (category != null && result.categories.add(category)) {
+				category = parents.get(category);
+			}
+		}
+		return result;
+	}
+
+	static class Result {
+
+		/** The IDs of the matching models per model type. */
+		final Map<ModelType, Set<Long>> models = new HashMap<>();
+
+		/** The IDs of the categories that contain a matching model. */
+		final Set<Long> categories = new HashSet<>();
+
+		/** The total number of matching models. */
+		int count;
+
+		boolean contains(ModelType type, long id) {
+			Set<Long> set = models.get(type);
+			return set != null && set.contains(id);
+		}
+	}
+
+}
@@ -2,6 +2,7 @@ package org.openlca.app.navigation;
 
 import java.util.Objects;
 
+import org.eclipse.jface.util.Policy;
 import org.eclipse.jface.viewers.ContentViewer;
 import org.eclipse.jface.viewers.IBaseLabelProvider;
 import org.eclipse.jface.viewers.ILabelProvider;
@@ -21,6 +22,9 @@ public class NavigationComparator extends ViewerComparator {
 			return 0;
 		if (e1 instanceof ModelTypeElement && e2 instanceof ModelTypeElement)
 			return compare((ModelTypeElement) e1, (ModelTypeElement) e2);
+		if (e1 instanceof ModelPageElement && e2 instanceof ModelPageElement)
+			return ((ModelPageElement) e1).getContent().index
+					- ((ModelPageElement) e2).getContent().index;
 		String name1 = getLabel(viewer, e1);
 		String name2 = getLabel(viewer, e2);
 
@@ -30,7 +34,18 @@ public class NavigationComparator extends ViewerComparator {
 		if (e2 instanceof DatabaseElement && name2.contains(" "))
 			name2 = name2.substring(0, name2.indexOf(" "));
 
-		return getComparator().compare(name1, name2);
+		return compareNames(name1, name2);
+	}
+
+	/**
+	 * Compares two names in the same way as the elements of the navigation
+	 * tree are sorted; e.g. to split the models of a category into pages (see
+	 * {@link ModelPage}).
+	 */
+	static int compareNames(String name1, String name2) {
+		return Policy.getComparator().compare(
+				name1 == null ? "" : name1,
+				name2 == null ? "" : name2);
 	}
 
 	private int compare(ModelTypeElement e1, ModelTypeElement e2) {
@@ -50,6 +65,11 @@ public class NavigationComparator extends ViewerComparator {
 			return -1;
 		if (e2 instanceof CategoryElement && e1 instanceof ModelElement)
 			return 1;
+		// model pages after category elements
+		if (e1 instanceof CategoryElement && e2 instanceof ModelPageElement)
+			return -1;
+		if (e2 instanceof CategoryElement && e1 instanceof ModelPageElement)
+			return 1;
 		return 0;
 	}
 
@@ -67,6 +67,11 @@ public class NavigationLabelProvider extends ColumnLabelProvider
 		}
 		if (content instanceof Category)
 			return Images.get((Category) content);
+		if (content instanceof ModelPage) {
+			Category dummy = new Category();
+			dummy.modelType = ((ModelPage) content).type;
+			return Images.get(dummy);
+		}
 		if (content instanceof BaseDescriptor)
 			return Images.get((BaseDescriptor) content);
 		return null;
@@ -111,6 +116,10 @@ public class NavigationLabelProvider extends ColumnLabelProvider
 			return ((Category) content).name;
 		if (content instanceof ModelType)
 			return Labels.modelType((ModelType) content);
+		if (content instanceof ModelPage) {
+			ModelPage page = (ModelPage) content;
+			return page.first + " ... " + page.last;
+		}
 		if (content instanceof BaseDescriptor)
 			return Labels.getDisplayName((BaseDescriptor) content);
 		else
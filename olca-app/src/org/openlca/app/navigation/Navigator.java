@@ -47,6 +47,18 @@ public class Navigator extends CommonNavigator {
 		return root;
 	}
 
+	/**
+	 * Creates the viewer with a virtual tree so that the tree items are only
+	 * created when they become visible. Together with the pages of large
+	 * categories (see {@link ModelPage}), this keeps the expansion of
+	 * categories with many models fast.
+	 */
+	@Override
+	protected CommonViewer createCommonViewerObject(Composite aParent) {
+		return new CommonViewer(getViewSite().getId(), aParent,
+				SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL | SWT.VIRTUAL);
+	}
+
 	@Override
 	protected CommonViewer createCommonViewer(Composite aParent) {
 		CommonViewer viewer = super.createCommonViewer(aParent);
@@ -30,6 +30,8 @@ class RepositoryLabel {
 			return null;
 		if (e instanceof ModelTypeElement)
 			return null;
+		if (e instanceof ModelPageElement)
+			return null;
 		Diff diff = DiffUtil.getDiff(CloudUtil.toDataset(e));
 		if (diff == null || !diff.tracked || diff.type != DiffType.NEW)
 			return null;
@@ -89,6 +91,8 @@ class RepositoryLabel {
 			return true;
 		if (e instanceof ModelTypeElement)
 			return true;
+		if (e instanceof ModelPageElement)
+			return true;
 		Diff diff = DiffUtil.getDiff(CloudUtil.toDataset(e));
 		if (diff == null)
 			return true;
@@ -102,6 +106,8 @@ class RepositoryLabel {
 			return false;
 		if (element instanceof ModelTypeElement)
 			return false;
+		if (element instanceof ModelPageElement)
+			return false;
 		Diff diff = DiffUtil.getDiff(CloudUtil.toDataset(element));
 		if (diff == null)
 			return true;
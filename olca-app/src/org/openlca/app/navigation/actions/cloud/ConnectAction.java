@@ -55,7 +55,7 @@ public class ConnectAction extends Action implements INavigationAction {
 		if (runner.error != null)
 			MsgBox.error(runner.error.getMessage());
 		else {
-			App.runWithProgress(M.RebuildingIndex, Reindexing::execute);
+			Reindexing.executeWithProgress();
 			Navigator.refresh(Navigator.getNavigationRoot());
 		}
 	}
@@ -5,7 +5,6 @@ import org.openlca.app.M;
 import java.util.List;
 
 import org.eclipse.jface.action.Action;
-import org.openlca.app.App;
 import org.openlca.app.cloud.index.Reindexing;
 import org.openlca.app.db.Database;
 import org.openlca.app.navigation.DatabaseElement;
@@ -25,7 +24,7 @@ public class RebuildIndexAction extends Action implements INavigationAction {
 
 	@Override
 	public void run() {
-		App.runWithProgress(M.RebuildingIndex, Reindexing::execute);
+		Reindexing.executeWithProgress();
 		Navigator.refresh(Navigator.getNavigationRoot());
 	}
 
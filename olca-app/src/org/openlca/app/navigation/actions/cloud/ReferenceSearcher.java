@@ -46,7 +46,7 @@ class ReferenceSearcher {
 				allChanged.add(result.local.localId);
 			else
 				zeroCount++;
-		if (allChanged.size() + zeroCount == index.getChanged().size())
+		if (allChanged.size() + zeroCount == index.getChangedCount())
 			return Collections.emptyList();
 		Map<ModelType, Set<Long>> typeToIds = prepareFromResults(toCheck);
 		search(typeToIds);
@@ -68,7 +68,7 @@ class ReferenceSearcher {
 				results.add(diffResult);
 			}
 		}
-		if (allFound.isEmpty() || allChanged.size() == index.getChanged().size())
+		if (allFound.isEmpty() || allChanged.size() == index.getChangedCount())
 			return;
 		Map<ModelType, Set<Long>> next = prepareFromDescriptors(allFound);
 		search(next);
@@ -1,61 +1,184 @@
 package org.openlca.app.navigation.filters;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.eclipse.jface.viewers.StructuredViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerFilter;
+import org.openlca.app.db.Database;
 import org.openlca.app.navigation.CategoryElement;
 import org.openlca.app.navigation.INavigationElement;
 import org.openlca.app.navigation.ModelElement;
+import org.openlca.app.navigation.ModelPage;
+import org.openlca.app.navigation.ModelPageElement;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.model.Category;
+import org.openlca.core.model.ModelType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * A filter which removes empty categories.
+ * A filter which removes empty categories (and empty pages of models in large
+ * categories).
+ *
+ * The result for a category is computed bottom-up and memoized as long as the
+ * other filters of the viewer, the content of the database, and the children
+ * of the category do not change. When there are no other filters, the result
+ * is taken from the categories that contain models in the database which are
+ * collected with one query per model type, without loading the elements of
+ * the tree.
  */
 public final class EmptyCategoryFilter extends ViewerFilter {
 
+	/** Navigation element -> memoized result. */
+	private final Map<INavigationElement<?>, Memo> memos = new WeakHashMap<>();
+
+	/** The IDs of the non-empty categories per model type. */
+	private final Map<ModelType, Set<Long>> nonEmpty = new HashMap<>();
+
+	/** The configuration for which the memoized results are valid. */
+	private List<ViewerFilter> others = new ArrayList<>();
+	private long changes = -1;
+
 	@Override
 	public boolean select(Viewer viewer, Object parentElement, Object element) {
-		if (!(element instanceof CategoryElement))
+		if (!(element instanceof CategoryElement)
+				&& !(element instanceof ModelPageElement))
 			return true;
-		if (!hasContent(viewer, (CategoryElement) element))
-			return false;
-		return true;
+		ViewerFilter[] filters = getOtherFilters(viewer);
+		checkConfiguration(filters);
+		return hasContent(viewer, filters, (INavigationElement<?>) element);
 	}
 
 	/**
-	 * A category element is selected when there are model components in it
-	 * which make it through all filters.
+	 * Clears the memoized results; this should be called when the state of
+	 * another filter of the viewer changed.
 	 */
-	private boolean hasContent(Viewer viewer, CategoryElement element) {
-		List<ModelElement> content = new ArrayList<>();
-		collectContent(element, content);
-		if (content.size() == 0)
-			return false;
-		ViewerFilter[] filters = getFilters(viewer);
-		if (filters.length == 0)
-			return true;
-		for (ModelElement model : content)
-			if (passesFilters(viewer, filters, model))
+	public void reset() {
+		memos.clear();
+		nonEmpty.clear();
+	}
+
+	private void checkConfiguration(ViewerFilter[] filters) {
+		long current = Database.getChangeCount();
+		boolean same = current == changes && filters.length == others.size();
+		for (int i = 0; same && i < filters.length; i++) {
+			same = filters[i] == others.get(i);
+		}
+		if (same)
+			return;
+		reset();
+		changes = current;
+		others = new ArrayList<>();
+		for (ViewerFilter filter : filters) {
+			others.add(filter);
+		}
+	}
+
+	/**
+	 * An element is selected when there are model components in it which make
+	 * it through all filters.
+	 */
+	private boolean hasContent(Viewer viewer, ViewerFilter[] filters,
+			INavigationElement<?> element) {
+		if (filters.length == 0) {
+			if (element instanceof ModelPageElement)
 				return true;
-		return false;
+			if (element instanceof CategoryElement) {
+				Boolean b = countedContent(((CategoryElement) element).getContent());
+				if (b != null)
+					return b;
+			}
+		}
+		List<INavigationElement<?>> children = element.getChildren();
+		Memo memo = memos.get(element);
+		if (memo != null && memo.children == children)
+			return memo.hasContent;
+		boolean hasContent = false;
+		for (INavigationElement<?> child : children) {
+			if (child instanceof ModelElement) {
+				hasContent = passesFilters(viewer, filters, (ModelElement) child);
+			} else {
+				hasContent = hasContent(viewer, filters, child);
+			}
+			if (hasContent)
+				break;
+		}
+		memos.put(element, new Memo(children, hasContent));
+		return hasContent;
+	}
+
+	/**
+	 * Returns true if the category or one of its sub-categories contains a
+	 * model in the database. Returns null if this cannot be decided from the
+	 * database tables.
+	 */
+	private Boolean countedContent(Category category) {
+		if (category == null || category.modelType == null)
+			return null;
+		Set<Long> ids = nonEmpty.get(category.modelType);
+		if (ids == null) {
+			ids = queryNonEmpty(category.modelType);
+			if (ids == null)
+				return null;
+			nonEmpty.put(category.modelType, ids);
+		}
+		return ids.contains(category.id);
 	}
 
-	private void collectContent(CategoryElement element,
-			List<ModelElement> content) {
-		for (INavigationElement<?> contentElement : element.getChildren())
-			if (contentElement instanceof ModelElement)
-				content.add((ModelElement) contentElement);
-			else
-				collectContent((CategoryElement) contentElement, content);
+	private Set<Long> queryNonEmpty(ModelType type) {
+		String table = ModelPage.tableOf(type);
+		IDatabase db = Database.get();
+		if (table == null || db == null)
+			return null;
+		try {
+			NativeSql sql = NativeSql.on(db);
+			Map<Long, Long> parents = new HashMap<>();
+			sql.query("select id, f_category from tbl_categories"
+					+ " where model_type = '" + type.name() + "'", r -> {
+						long parent = r.getLong(2);
+						if (!r.wasNull()) {
+							parents.put(r.getLong(1), parent);
+						}
+						return true;
+					});
+			Set<Long> ids = new HashSet<>();
+			sql.query("select distinct f_category from " + table
+					+ " where f_category is not null", r -> {
+						Long id = r.getLong(1);
+						while (id != null && ids.add(id)) {
+							id = parents.get(id);
+						}
+						return true;
+					});
+			return ids;
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("failed to query non-empty categories of " + type, e);
+			return null;
+		}
 	}
 
-	private ViewerFilter[] getFilters(Viewer viewer) {
+	private ViewerFilter[] getOtherFilters(Viewer viewer) {
 		ViewerFilter[] filters = null;
 		if (viewer instanceof StructuredViewer)
 			filters = ((StructuredViewer) viewer).getFilters();
-		return filters == null ? new ViewerFilter[0] : filters;
+		if (filters == null)
+			return new ViewerFilter[0];
+		List<ViewerFilter> others = new ArrayList<>();
+		for (ViewerFilter filter : filters) {
+			if (!(filter instanceof EmptyCategoryFilter)) {
+				others.add(filter);
+			}
+		}
+		return others.toArray(new ViewerFilter[others.size()]);
 	}
 
 	private boolean passesFilters(Viewer viewer, ViewerFilter[] filters,
@@ -65,4 +188,15 @@ public final class EmptyCategoryFilter extends ViewerFilter {
 				return false;
 		return true;
 	}
+
+	private static class Memo {
+
+		final List<INavigationElement<?>> children;
+		final boolean hasContent;
+
+		Memo(List<INavigationElement<?>> children, boolean hasContent) {
+			this.children = children;
+			this.hasContent = hasContent;
+		}
+	}
 }
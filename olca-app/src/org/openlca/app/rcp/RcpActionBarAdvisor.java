@@ -43,6 +43,7 @@ import org.openlca.app.navigation.actions.ExportAction;
 import org.openlca.app.navigation.actions.ImportAction;
 import org.openlca.app.rcp.images.Icon;
 import org.openlca.app.rcp.images.Images;
+import org.openlca.app.results.snapshots.OpenResultAction;
 import org.openlca.app.tools.mapping.MappingTool;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.Desktop;
@@ -138,6 +139,8 @@ public class RcpActionBarAdvisor extends ActionBarAdvisor {
 		menu.add(new ImportAction());
 		menu.add(new ExportAction());
 		menu.add(new Separator());
+		menu.add(new OpenResultAction());
+		menu.add(new Separator());
 		menu.add(exitAction);
 		menuBar.add(menu);
 	}
@@ -13,6 +13,7 @@ import org.openlca.app.Preferences;
 import org.openlca.app.db.Database;
 import org.openlca.app.logging.Console;
 import org.openlca.app.logging.LoggerConfig;
+import org.openlca.app.results.snapshots.ResultSnapshot;
 import org.osgi.framework.BundleContext;
 
 /**
@@ -65,6 +66,7 @@ public class RcpActivator extends AbstractUIPlugin {
 				"html/base_html.zip");
 		SslCertificates.load();
 		Preferences.init();
+		ResultSnapshot.deleteStaleFiles();
 		App.getSolver();
 	}
 
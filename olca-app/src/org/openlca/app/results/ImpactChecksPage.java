@@ -44,6 +44,7 @@ public class ImpactChecksPage extends FormPage {
 	private final ContributionResult result;
 	private final CalculationSetup setup;
 
+	private ScrolledForm form;
 	private Button groupCheck;
 	private TreeViewer tree;
 
@@ -58,7 +59,7 @@ public class ImpactChecksPage extends FormPage {
 
 	@Override
 	protected void createFormContent(IManagedForm mform) {
-		ScrolledForm form = UI.formHeader(mform,
+		form = UI.formHeader(mform,
 				"Flows that are not covered by the "
 						+ "selected LCIA method",
 				Images.get(result));
@@ -96,17 +97,19 @@ public class ImpactChecksPage extends FormPage {
 	}
 
 	private void setTreeInput() {
-		List<Node> nodes = groupCheck.getSelection()
-				? groupedNodes()
-				: flatNodes();
-		for (Node n : nodes) {
-			if (n.childs != null) {
-				n.childs.sort(this::compare);
+		boolean grouped = groupCheck.getSelection();
+		ResultPages.fillLater(form, "Check LCIA coverage", () -> {
+			List<Node> nodes = grouped
+					? groupedNodes()
+					: flatNodes();
+			for (Node n : nodes) {
+				if (n.childs != null) {
+					n.childs.sort(this::compare);
+				}
 			}
-		}
-		nodes.sort(this::compare);
-		tree.setInput(nodes);
-
+			nodes.sort(this::compare);
+			return nodes;
+		}, nodes -> tree.setInput(nodes));
 	}
 
 	private List<Node> flatNodes() {
@@ -1,11 +1,11 @@
 package org.openlca.app.results;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.eclipse.jface.action.Action;
@@ -26,6 +26,7 @@ import org.openlca.app.M;
 import org.openlca.app.components.ContributionImage;
 import org.openlca.app.rcp.images.Images;
 import org.openlca.app.results.ContributionCutoff.CutoffContentProvider;
+import org.openlca.app.results.contributions.ContributionQuery;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.DQUI;
 import org.openlca.app.util.Labels;
@@ -51,6 +52,7 @@ public class InventoryPage extends FormPage {
 	private CalculationSetup setup;
 	private ContributionResult result;
 	private DQResult dqResult;
+	private ContributionQuery query;
 
 	public InventoryPage(FormEditor editor, ContributionResult result,
 			DQResult dqResult, CalculationSetup setup) {
@@ -58,6 +60,7 @@ public class InventoryPage extends FormPage {
 		this.result = result;
 		this.setup = setup;
 		this.dqResult = dqResult;
+		this.query = ContributionQuery.of(result);
 	}
 
 	@Override
@@ -73,11 +76,20 @@ public class InventoryPage extends FormPage {
 				result, dqResult);
 		reqSection.create(body, toolkit);
 		form.reflow(true);
-		fillTrees(inputTree, outputTree);
-		reqSection.fill();
+		ResultPages.fillLater(form, M.InventoryResults, () -> {
+			reqSection.prepare();
+			return sortedFlows();
+		}, flows -> {
+			inputTree.setInput(flows.get(0));
+			outputTree.setInput(flows.get(1));
+			reqSection.fill();
+		});
 	}
 
-	private void fillTrees(TreeViewer inputTree, TreeViewer outputTree) {
+	/**
+	 * Returns the input and output flows of the result sorted by name.
+	 */
+	private List<List<FlowDescriptor>> sortedFlows() {
 		Collection<FlowDescriptor> flows = result.getFlows();
 		List<FlowDescriptor> inFlows = new ArrayList<>();
 		List<FlowDescriptor> outFlows = new ArrayList<>();
@@ -92,8 +104,7 @@ public class InventoryPage extends FormPage {
 				f1.name, f2.name);
 		Collections.sort(inFlows, comparator);
 		Collections.sort(outFlows, comparator);
-		inputTree.setInput(inFlows);
-		outputTree.setInput(outFlows);
+		return Arrays.asList(inFlows, outFlows);
 	}
 
 	private TreeViewer createTree(Composite parent, boolean forInputs) {
@@ -153,14 +164,13 @@ public class InventoryPage extends FormPage {
 			if (!(e instanceof FlowDescriptor))
 				return null;
 			FlowDescriptor flow = (FlowDescriptor) e;
-			double cutoffValue = Math.abs(getAmount(flow) * this.cutoff);
-			return result.getProcessContributions(flow).contributions.stream()
-					.filter(i -> i.amount != 0)
-					.filter(i -> Math.abs(i.amount) >= cutoffValue)
-					.sorted((i1, i2) -> -Double.compare(i1.amount, i2.amount))
-					.map(i -> new Contribution(i, flow))
-					.collect(Collectors.toList())
-					.toArray();
+			List<ContributionItem<CategorizedDescriptor>> items = query
+					.processes(flow, -1, cutoff).items;
+			Object[] children = new Object[items.size()];
+			for (int i = 0; i < children.length; i++) {
+				children[i] = new Contribution(items.get(i), flow);
+			}
+			return children;
 		}
 
 		@Override
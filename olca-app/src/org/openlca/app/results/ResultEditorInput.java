@@ -6,6 +6,7 @@ import org.eclipse.ui.IPersistableElement;
 import org.openlca.app.M;
 import org.openlca.app.db.Cache;
 import org.openlca.app.rcp.images.Icon;
+import org.openlca.app.results.snapshots.ResultSnapshot;
 import org.openlca.app.util.Labels;
 import org.openlca.core.database.EntityCache;
 import org.openlca.core.math.CalculationSetup;
@@ -20,6 +21,7 @@ public class ResultEditorInput implements IEditorInput {
 	public final String setupKey;
 	public String parameterSetKey;
 	public String dqResultKey;
+	public String snapshotKey;
 
 	public ResultEditorInput(long productSystemId, String resultKey, String setupKey) {
 		this.productSystemId = productSystemId;
@@ -52,6 +54,13 @@ public class ResultEditorInput implements IEditorInput {
 		return this;
 	}
 
+	/** With a snapshot that contains the result. */
+	public ResultEditorInput with(ResultSnapshot snapshot) {
+		if (snapshot != null)
+			snapshotKey = Cache.getAppCache().put(snapshot);
+		return this;
+	}
+
 	@Override
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public Object getAdapter(Class adapter) {
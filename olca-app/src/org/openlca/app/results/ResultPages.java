@@ -0,0 +1,77 @@
+package org.openlca.app.results;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.forms.widgets.ScrolledForm;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper methods for the pages of the result editors. The pages of a form
+ * editor are created when they are activated the first time. The content of a
+ * page should then be computed with {@link #fillLater} so that the page is
+ * shown directly (with a busy indicator as placeholder) and the editor only
+ * pays for the pages the user actually looks at.
+ */
+public final class ResultPages {
+
+	private ResultPages() {
+	}
+
+	/** The key of the fill generation in the data of a form. */
+	private static final String GENERATION = "ResultPages.generation";
+
+	/**
+	 * Computes the content of a page in a background job and passes it to the
+	 * given function in the UI thread. The form shows a busy indicator until
+	 * the content is set. The function is not called when the form was
+	 * disposed in the meantime or when the computation failed. This method
+	 * must be called in the UI thread. When it is called again for the same
+	 * form before the content was set (e.g. when the user changes a selection
+	 * quickly), only the content of the latest call is set and the busy
+	 * indicator is shown until that content is set.
+	 */
+	public static <T> void fillLater(ScrolledForm form, String task,
+			Supplier<T> fn, Consumer<T> fill) {
+		if (form == null || form.isDisposed())
+			return;
+		Display display = form.getDisplay();
+		Object last = form.getData(GENERATION);
+		int gen = last instanceof Integer ? (Integer) last + 1 : 1;
+		form.setData(GENERATION, gen);
+		form.setBusy(true);
+		Job job = new Job(task) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				T content = null;
+				try {
+					content = fn.get();
+				} catch (Exception e) {
+					Logger log = LoggerFactory.getLogger(ResultPages.class);
+					log.error("failed to compute content: " + task, e);
+				}
+				T result = content;
+				display.asyncExec(() -> {
+					if (form.isDisposed())
+						return;
+					// a stale result of an earlier call for the form
+					if (!Integer.valueOf(gen).equals(form.getData(GENERATION)))
+						return;
+					form.setBusy(false);
+					if (result != null) {
+						fill.accept(result);
+					}
+				});
+				return Status.OK_STATUS;
+			}
+		};
+		job.schedule();
+	}
+
+}
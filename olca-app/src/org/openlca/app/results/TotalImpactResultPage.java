@@ -23,6 +23,8 @@ import org.openlca.app.M;
 import org.openlca.app.components.ContributionImage;
 import org.openlca.app.rcp.images.Images;
 import org.openlca.app.results.ContributionCutoff.CutoffContentProvider;
+import org.openlca.app.results.contributions.ContributionQuery;
+import org.openlca.app.results.contributions.ContributionQuery.Top;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.Controls;
 import org.openlca.app.util.DQUI;
@@ -39,6 +41,7 @@ import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
+import org.openlca.core.results.ContributionItem;
 import org.openlca.core.results.ContributionResult;
 
 public class TotalImpactResultPage extends FormPage {
@@ -46,6 +49,8 @@ public class TotalImpactResultPage extends FormPage {
 	private final ContributionResult result;
 	private final DQResult dqResult;
 	private final ImpactFactorProvider impactFactors;
+	private final ContributionQuery query;
+	private FlowDescriptor[] flows;
 
 	private FormToolkit toolkit;
 	private TreeViewer viewer;
@@ -61,6 +66,7 @@ public class TotalImpactResultPage extends FormPage {
 		this.setup = setup;
 		this.dqResult = dqResult;
 		this.impactFactors = impactFactors;
+		this.query = ContributionQuery.of(result);
 	}
 
 	@Override
@@ -297,30 +303,25 @@ public class TotalImpactResultPage extends FormPage {
 			Item parent = (Item) obj;
 			List<Item> children = new ArrayList<>();
 			if (parent.type() == ModelType.IMPACT_CATEGORY && subgroupByProcesses) {
-				double cutoffValue = Math.abs(parent.result() * cutoff);
-				for (CategorizedDescriptor process : result.getProcesses()) {
-					Item child = new Item(parent.impact, process);
-					double result = child.result();
-					if (result == 0)
-						continue;
-					if (Math.abs(result) >= cutoffValue) {
-						children.add(child);
-					}
+				Top<CategorizedDescriptor> top = query.processes(
+						parent.impact, -1, cutoff);
+				for (ContributionItem<CategorizedDescriptor> c : top.items) {
+					children.add(new Item(parent.impact, c.item));
 				}
 			} else {
-				double cutoffValue = Math.abs(parent.result() * cutoff);
-				for (FlowDescriptor flow : result.getFlows()) {
-					// process will be null in case of subgroupByProcesses=false
-					Item child = new Item(parent.impact, parent.process, flow);
-					double result = child.result();
-					if (result == 0)
-						continue;
-					if (Math.abs(result) >= cutoffValue) {
-						children.add(child);
-					}
+				// process will be null in case of subgroupByProcesses=false
+				FlowDescriptor[] flows = flows();
+				double[] values = new double[flows.length];
+				for (int i = 0; i < flows.length; i++) {
+					values[i] = flowResult(parent.impact, parent.process,
+							flows[i]);
+				}
+				Top<FlowDescriptor> top = ContributionQuery.top(
+						flows, values, -1, cutoff);
+				for (ContributionItem<FlowDescriptor> c : top.items) {
+					children.add(new Item(parent.impact, parent.process, c.item));
 				}
 			}
-			children.sort((i1, i2) -> -Double.compare(i1.result(), i2.result()));
 			return children.toArray();
 		}
 
@@ -346,6 +347,27 @@ public class TotalImpactResultPage extends FormPage {
 
 	}
 
+	private FlowDescriptor[] flows() {
+		if (flows == null) {
+			flows = result.getFlows().toArray(new FlowDescriptor[0]);
+		}
+		return flows;
+	}
+
+	/**
+	 * Returns the result of the given flow and impact category; the direct
+	 * result of the given process or the total result if the process is null.
+	 */
+	private double flowResult(ImpactCategoryDescriptor impact,
+			CategorizedDescriptor process, FlowDescriptor flow) {
+		double amount = process == null
+				? result.getTotalFlowResult(flow)
+				: result.getDirectFlowResult(process, flow);
+		if (amount == 0)
+			return 0;
+		return impactFactors.get(impact, process, flow) * amount;
+	}
+
 	public interface ImpactFactorProvider {
 
 		double get(ImpactCategoryDescriptor impact,
@@ -435,7 +457,7 @@ public class TotalImpactResultPage extends FormPage {
 			case PROCESS:
 				return result.getDirectImpactResult(process, impact);
 			case FLOW:
-				return impactFactor() * flowAmount();
+				return flowResult(impact, process, flow);
 			default:
 				return 0;
 			}
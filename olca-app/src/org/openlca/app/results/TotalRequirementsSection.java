@@ -51,6 +51,7 @@ class TotalRequirementsSection {
 	private Map<Long, CategorizedDescriptor> processes = new HashMap<>();
 
 	private TableViewer table;
+	private List<Item> items;
 
 	TotalRequirementsSection(SimpleResult result, DQResult dqResult) {
 		this.result = result;
@@ -117,10 +118,21 @@ class TotalRequirementsSection {
 		label.setFont(UI.boldFont());
 	}
 
+	/**
+	 * Computes the items of the table; this can be called from a background
+	 * thread before the items are set with {@link #fill()}.
+	 */
+	void prepare() {
+		items = createItems();
+	}
+
 	void fill() {
 		if (table == null)
 			return;
-		table.setInput(createItems());
+		if (items == null) {
+			prepare();
+		}
+		table.setInput(items);
 	}
 
 	private String[] columnLabels() {
@@ -20,6 +20,7 @@ import org.openlca.app.results.contributions.ContributionTreePage;
 import org.openlca.app.results.contributions.ProcessResultPage;
 import org.openlca.app.results.contributions.locations.LocationPage;
 import org.openlca.app.results.grouping.GroupPage;
+import org.openlca.app.results.snapshots.ResultSnapshot;
 import org.openlca.core.math.CalculationSetup;
 import org.openlca.core.math.data_quality.DQResult;
 import org.openlca.core.model.ProductSystem;
@@ -44,6 +45,7 @@ public class AnalyzeEditor extends FormEditor implements IResultEditor<FullResul
 	private CalculationSetup setup;
 	private FullResult result;
 	private DQResult dqResult;
+	private ResultSnapshot snapshot;
 
 	@Override
 	public CalculationSetup getSetup() {
@@ -76,6 +78,17 @@ public class AnalyzeEditor extends FormEditor implements IResultEditor<FullResul
 		String name = M.AnalysisResultOf + " " + system.name;
 		setPartName(name);
 		this.result = result;
+		if (input.snapshotKey != null)
+			snapshot = Cache.getAppCache().remove(
+					input.snapshotKey, ResultSnapshot.class);
+	}
+
+	@Override
+	public void dispose() {
+		if (snapshot != null) {
+			snapshot.dispose();
+		}
+		super.dispose();
 	}
 
 	@Override
@@ -102,6 +115,14 @@ public class AnalyzeEditor extends FormEditor implements IResultEditor<FullResul
 		}
 	}
 
+	@Override
+	protected void pageChange(int newPageIndex) {
+		super.pageChange(newPageIndex);
+		if (newPageIndex == diagramIndex && diagram != null) {
+			diagram.initContent();
+		}
+	}
+
 	@Override
 	public void doSave(final IProgressMonitor monitor) {
 	}
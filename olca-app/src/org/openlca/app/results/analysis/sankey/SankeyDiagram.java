@@ -5,17 +5,20 @@ import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.draw2d.ConnectionLayer;
+import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.Layer;
 import org.eclipse.draw2d.LayeredPane;
 import org.eclipse.draw2d.StackLayout;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.gef.DefaultEditDomain;
+import org.eclipse.gef.GraphicalEditPart;
 import org.eclipse.gef.GraphicalViewer;
 import org.eclipse.gef.KeyHandler;
 import org.eclipse.gef.KeyStroke;
@@ -33,6 +36,7 @@ import org.eclipse.jface.action.MenuManager;
 import org.eclipse.swt.SWT;
 import org.openlca.app.App;
 import org.openlca.app.results.analysis.sankey.actions.SankeyMenu;
+import org.openlca.app.results.analysis.sankey.layout.GraphLayoutManager;
 import org.openlca.app.results.analysis.sankey.model.Link;
 import org.openlca.app.results.analysis.sankey.model.ProcessNode;
 import org.openlca.app.results.analysis.sankey.model.ProductSystemNode;
@@ -46,6 +50,8 @@ import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
 import org.openlca.core.results.FullResult;
 
+import gnu.trove.set.hash.TLongHashSet;
+
 public class SankeyDiagram extends GraphicalEditor implements PropertyChangeListener {
 
 	public static final String ID = "editor.ProductSystemSankeyDiagram";
@@ -55,7 +61,15 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 	public ProductSystemNode node;
 	public double zoom = 1;
 	private boolean routed = false;
+	private boolean initialized = false;
+	/** True when the links of the current diagram were created. */
+	private boolean linked = false;
 	private SankeyResult sankeyResult;
+	/**
+	 * Counts the calculations of selections so that the results of outdated
+	 * calculations are dropped; only accessed in the UI thread.
+	 */
+	private int generation;
 	private Map<ProcessLink, Link> createdLinks = new HashMap<>();
 	private Map<Long, ProcessNode> createdProcesses = new HashMap<>();
 	private ProductSystem productSystem;
@@ -66,7 +80,7 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 		this.result = result;
 		productSystem = setup.productSystem;
 		linkSearchMap = new ProcessLinkSearchMap(productSystem.processLinks);
-		sankeyResult = new SankeyResult(productSystem, result);
+		sankeyResult = new SankeyResult(result);
 		if (productSystem != null) {
 			setPartName(productSystem.name);
 		}
@@ -114,28 +128,34 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 		}
 	}
 
-	private void updateModel(double cutoff) {
-		Map<Long, CategorizedDescriptor> processes = new HashMap<>();
-		for (CategorizedDescriptor d : result.getProcesses())
-			processes.put(d.id, d);
+	private void updateModel(TLongHashSet processIds) {
+		processIds.forEach(id -> {
+			CategorizedDescriptor process = sankeyResult.getProcess(id);
+			if (process != null) {
+				node.addChild(createNode(process));
+			}
+			return true;
+		});
+	}
+
+	/**
+	 * Calculates the IDs of the processes that are shown for the given values
+	 * of a selection and cutoff.
+	 */
+	private TLongHashSet processesToDraw(SankeyResult.Values values,
+			double cutoff) {
 		if (cutoff == 0) {
+			TLongHashSet ids = new TLongHashSet();
 			for (Long processId : productSystem.processes) {
-				CategorizedDescriptor d = processes.get(processId);
-				if (d != null) {
-					node.addChild(createNode(d));
-				}
-			}
-		} else {
-			long refProcess = productSystem.referenceProcess.id;
-			Set<Long> processesToDraw = SankeyProcessList.calculate(
-					sankeyResult, refProcess, cutoff, linkSearchMap);
-			for (final Long processId : processesToDraw) {
-				CategorizedDescriptor process = processes.get(processId);
-				if (process != null) {
-					node.addChild(createNode(process));
+				if (sankeyResult.getProcess(processId) != null) {
+					ids.add(processId);
 				}
 			}
+			return ids;
 		}
+		long refProcess = productSystem.referenceProcess.id;
+		return SankeyProcessList.calculate(
+				sankeyResult, values, refProcess, cutoff, linkSearchMap);
 	}
 
 	@Override
@@ -210,20 +230,37 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 		((ScalableRootEditPart) getGraphicalViewer().getRootEditPart())
 				.getZoomManager().setZoomLevels(zoomLevels);
 		getGraphicalViewer().getEditDomain().setActiveTool(new PanningSelectionTool());
-		initContent();
+		// an empty placeholder until the diagram page is activated
+		getGraphicalViewer().setContents(
+				new ProductSystemNode(productSystem, this, null, 0.1));
 	}
 
-	// TODO: avoid double calculation here
-	private void initContent() {
-		Object defaultSelection = getDefaultSelection();
-		if (defaultSelection == null) {
-			getGraphicalViewer().setContents(
-					new ProductSystemNode(productSystem, this, null, 0.1));
+	/**
+	 * Calculates and shows the initial diagram with the default selection.
+	 * The calculation runs in a background job when this method is called
+	 * the first time; the editor calls it when the diagram page is activated.
+	 */
+	public void initContent() {
+		if (initialized)
 			return;
-		}
-		sankeyResult.calculate(defaultSelection);
-		double cutoff = sankeyResult.findCutoff(30);
-		update(defaultSelection, cutoff);
+		initialized = true;
+		Object selection = getDefaultSelection();
+		if (selection == null)
+			return;
+		int gen = ++generation;
+		SankeyResult.Values[] values = new SankeyResult.Values[1];
+		double[] cutoff = new double[1];
+		TLongHashSet[] processes = new TLongHashSet[1];
+		App.run("Calculate sankey results", () -> {
+			values[0] = sankeyResult.calculate(selection);
+			cutoff[0] = sankeyResult.findCutoff(values[0], 30);
+			processes[0] = processesToDraw(values[0], cutoff[0]);
+		}, () -> {
+			if (gen != generation || processes[0] == null)
+				return;
+			sankeyResult.select(values[0]);
+			show(selection, cutoff[0], processes[0]);
+		});
 	}
 
 	public Object getDefaultSelection() {
@@ -259,6 +296,7 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 		if (evt.getPropertyName().equals("firstTimeInitialized")) {
 			createdLinks.clear();
 			updateConnections();
+			linked = true;
 		}
 	}
 
@@ -267,20 +305,127 @@ public class SankeyDiagram extends GraphicalEditor implements PropertyChangeList
 		return super.getGraphicalViewer();
 	}
 
+	/**
+	 * Updates the diagram for the given selection and cutoff. When only the
+	 * cutoff of the current selection changed, the nodes and links of the
+	 * diagram are updated incrementally: the processes below the new cutoff
+	 * are removed and the new processes above the cutoff are added; the
+	 * values of the selection are taken from the cache of the Sankey result.
+	 * When the selection is changed again before the values are calculated,
+	 * the values of this call are dropped.
+	 */
 	public void update(Object selection, double cutoff) {
 		if (selection == null || cutoff < 0d || cutoff > 1d)
 			return;
-		App.run("Calculate sankey results", () -> sankeyResult.calculate(selection), () -> {
-			node = new ProductSystemNode(productSystem, this, selection, cutoff);
-			createdProcesses.clear();
-			createdLinks.clear();
-			updateModel(cutoff);
-			getGraphicalViewer().deselectAll();
-			getGraphicalViewer().setContents(node);
-			node.setRouted(routed);
+		initialized = true;
+		int gen = ++generation;
+		SankeyResult.Values[] values = new SankeyResult.Values[1];
+		TLongHashSet[] processes = new TLongHashSet[1];
+		App.run("Calculate sankey results", () -> {
+			values[0] = sankeyResult.calculate(selection);
+			processes[0] = processesToDraw(values[0], cutoff);
+		}, () -> {
+			if (gen != generation || processes[0] == null)
+				return;
+			sankeyResult.select(values[0]);
+			if (isCurrent(selection)) {
+				applyCutoff(cutoff, processes[0]);
+			} else {
+				show(selection, cutoff, processes[0]);
+			}
 		});
 	}
 
+	/**
+	 * Returns true if the current diagram shows the given selection and its
+	 * nodes and links can be updated incrementally.
+	 */
+	private boolean isCurrent(Object selection) {
+		if (!linked || node == null || node.selection == null)
+			return false;
+		if (getGraphicalViewer().getContents() == null
+				|| getGraphicalViewer().getContents().getModel() != node)
+			return false;
+		return SankeyResult.key(node.selection).equals(
+				SankeyResult.key(selection));
+	}
+
+	private void show(Object selection, double cutoff, TLongHashSet processes) {
+		if (getGraphicalViewer().getControl() == null
+				|| getGraphicalViewer().getControl().isDisposed())
+			return;
+		node = new ProductSystemNode(productSystem, this, selection, cutoff);
+		createdProcesses.clear();
+		createdLinks.clear();
+		linked = false;
+		updateModel(processes);
+		getGraphicalViewer().deselectAll();
+		getGraphicalViewer().setContents(node);
+		node.setRouted(routed);
+	}
+
+	private void applyCutoff(double cutoff, TLongHashSet processes) {
+		if (getGraphicalViewer().getControl() == null
+				|| getGraphicalViewer().getControl().isDisposed())
+			return;
+		getGraphicalViewer().deselectAll();
+		node.cutoff = cutoff;
+
+		// remove the nodes and links below the cutoff
+		for (Object child : new ArrayList<Object>(node.children)) {
+			if (!(child instanceof ProcessNode))
+				continue;
+			ProcessNode pNode = (ProcessNode) child;
+			if (processes.contains(pNode.process.id))
+				continue;
+			for (Link link : new ArrayList<>(pNode.links)) {
+				link.unlink();
+				createdLinks.remove(link.processLink);
+			}
+			createdProcesses.remove(pNode.process.id);
+			node.removeChild(pNode);
+		}
+
+		// add the new nodes and their links
+		List<ProcessNode> added = new ArrayList<>();
+		processes.forEach(id -> {
+			if (createdProcesses.containsKey(id))
+				return true;
+			CategorizedDescriptor process = sankeyResult.getProcess(id);
+			if (process != null) {
+				ProcessNode pNode = createNode(process);
+				node.addChild(pNode);
+				added.add(pNode);
+			}
+			return true;
+		});
+		for (ProcessNode pNode : added) {
+			for (ProcessLink pLink : linkSearchMap.getLinks(pNode.process.id)) {
+				if (createdLinks.containsKey(pLink))
+					continue;
+				ProcessNode source = createdProcesses.get(pLink.providerId);
+				ProcessNode target = createdProcesses.get(pLink.processId);
+				if (source == null || target == null)
+					continue;
+				double ratio = sankeyResult.getLinkContribution(pLink);
+				Link link = new Link(source, target, pLink, ratio);
+				createdLinks.put(pLink, link);
+				link.link();
+			}
+		}
+		node.setRouted(routed);
+
+		// apply the tree layout to the changed diagram
+		GraphicalEditPart part = (GraphicalEditPart) getGraphicalViewer()
+				.getContents();
+		IFigure figure = part.getFigure();
+		if (figure.getLayoutManager() instanceof GraphLayoutManager) {
+			((GraphLayoutManager) figure.getLayoutManager()).layoutTree();
+		}
+		figure.revalidate();
+		figure.repaint();
+	}
+
 	public boolean isRouted() {
 		return routed;
 	}
@@ -1,44 +1,51 @@
 package org.openlca.app.results.analysis.sankey;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
 import java.util.Stack;
 
 import org.openlca.core.matrix.ProcessLinkSearchMap;
 import org.openlca.core.model.ProcessLink;
 
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.set.hash.TLongHashSet;
+
 /**
  * Calculates the processes that are visible in the Sankey diagram.
  */
 class SankeyProcessList {
 
 	private SankeyResult sankeyResult;
+	private SankeyResult.Values values;
 	private long refProcess;
 	private double cutoff;
 	private ProcessLinkSearchMap linkSearchMap;
 
-	private SankeyProcessList(SankeyResult result, long refProcess,
-			double cutoff, ProcessLinkSearchMap linkSearchMap) {
+	private SankeyProcessList(SankeyResult result, SankeyResult.Values values,
+			long refProcess, double cutoff,
+			ProcessLinkSearchMap linkSearchMap) {
 		this.sankeyResult = result;
+		this.values = values;
 		this.refProcess = refProcess;
 		this.cutoff = cutoff;
 		this.linkSearchMap = linkSearchMap;
 	}
 
-	public static Set<Long> calculate(SankeyResult result, long refProcess,
-			double cutoff, ProcessLinkSearchMap linkSearchMap) {
-		return new SankeyProcessList(result, refProcess, cutoff, linkSearchMap)
-				.calculate();
+	/**
+	 * Calculates the processes that are visible with the given values of a
+	 * selection and cutoff.
+	 */
+	public static TLongHashSet calculate(SankeyResult result,
+			SankeyResult.Values values, long refProcess, double cutoff,
+			ProcessLinkSearchMap linkSearchMap) {
+		return new SankeyProcessList(result, values, refProcess, cutoff,
+				linkSearchMap).calculate();
 	}
 
-	private Set<Long> calculate() {
-		List<Long> initial = sankeyResult.getProcesseIdsAboveCutoff(cutoff);
-		Set<Long> processesToDraw = new HashSet<Long>(initial);
+	private TLongHashSet calculate() {
+		long[] initial = sankeyResult.getProcessIdsAboveCutoff(values, cutoff);
+		TLongHashSet processesToDraw = new TLongHashSet(initial);
 		processesToDraw.add(refProcess);
 		fillUp(processesToDraw);
 		return processesToDraw;
@@ -49,29 +56,36 @@ class SankeyProcessList {
 	 * searches a way to the reference or another connected node and adds the
 	 * missing nodes.
 	 */
-	private void fillUp(Set<Long> processIds) {
+	private void fillUp(TLongHashSet processIds) {
 
-		Set<Long> unconnected = new HashSet<>(processIds);
-		Set<Long> connected = new HashSet<>();
-		Queue<Long> queue = new ArrayDeque<>();
+		TLongHashSet connected = new TLongHashSet();
+		TLongArrayList queue = new TLongArrayList();
 		queue.add(refProcess);
-		while (!queue.isEmpty()) {
-			Long recipient = queue.poll();
-			unconnected.remove(recipient);
-			connected.add(recipient);
+		connected.add(refProcess);
+		for (int i = 0; i < queue.size(); i++) {
+			long recipient = queue.get(i);
 			for (ProcessLink link : linkSearchMap.getIncomingLinks(recipient)) {
-				Long provider = link.providerId;
+				long provider = link.providerId;
 				if (!processIds.contains(provider))
 					continue;
-				if (!queue.contains(provider) && !connected.contains(provider))
+				if (connected.add(provider))
 					queue.add(provider);
 			}
 		}
-		for (Long processId : unconnected) {
-			Stack<Long> path = searchPathFor(processId, connected);
-			for (Long id : path) {
-				processIds.add(id);
-				connected.add(id);
+		TLongArrayList unconnected = new TLongArrayList();
+		processIds.forEach(id -> {
+			if (!connected.contains(id))
+				unconnected.add(id);
+			return true;
+		});
+		for (int i = 0; i < unconnected.size(); i++) {
+			long id = unconnected.get(i);
+			if (connected.contains(id))
+				continue; // connected by a previous path
+			Stack<Long> path = searchPathFor(id, connected);
+			for (Long p : path) {
+				processIds.add(p);
+				connected.add(p);
 			}
 		}
 	}
@@ -81,11 +95,11 @@ class SankeyProcessList {
 	 * path with biggest weight and return the list of new processes that
 	 */
 	private Stack<Long> searchPathFor(long processToConnect,
-			Set<Long> connectedGraph) {
+			TLongHashSet connectedGraph) {
 
 		Stack<Long> path = new Stack<>();
 		path.push(processToConnect);
-		HashSet<Long> visited = new HashSet<>();
+		TLongHashSet visited = new TLongHashSet();
 		visited.add(processToConnect);
 
 		Stack<List<Long>> candidateStack = new Stack<>();
@@ -135,7 +149,7 @@ class SankeyProcessList {
 		for (ProcessLink link : linkSearchMap.getOutgoingLinks(processId)) {
 			WeightedProcess wp = new WeightedProcess();
 			wp.id = link.processId;
-			wp.weight = Math.abs(sankeyResult.getLinkContribution(link));
+			wp.weight = Math.abs(sankeyResult.getLinkContribution(values, link));
 			recipients.add(wp);
 		}
 		Collections.sort(recipients);
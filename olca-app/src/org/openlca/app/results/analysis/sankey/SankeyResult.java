@@ -1,15 +1,14 @@
 package org.openlca.app.results.analysis.sankey;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.ToDoubleFunction;
 
 import org.openlca.app.util.CostResultDescriptor;
 import org.openlca.core.matrix.LongIndex;
 import org.openlca.core.model.ProcessLink;
-import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.descriptors.BaseDescriptor;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
@@ -18,39 +17,72 @@ import org.openlca.util.Doubles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import gnu.trove.map.hash.TObjectDoubleHashMap;
+
+/**
+ * The values of the Sankey diagram for a selected flow, impact category, or
+ * cost result. The values of a selection are calculated once and cached
+ * together with the processes sorted by their upstream contributions and the
+ * link weights that were requested for that selection. Thus, changing the
+ * cutoff or switching back to a previous selection does not require a new
+ * calculation.
+ *
+ * The calculation of a selection returns its values, which are not changed
+ * afterwards, so that a background job can pass them to the UI together with
+ * their selection. The values that are shown in the diagram are set with
+ * {@link #select(Values)} in the UI thread; the getters without a values
+ * parameter return the values of that selection.
+ */
 class SankeyResult {
 
+	/** The maximum number of selections for which the values are cached. */
+	private static final int MAX_CACHED = 10;
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 
-	private ProductSystem system;
 	private FullResult results;
 
 	private LongIndex processIndex;
 	private CategorizedDescriptor[] processes;
-	private double[] upstreamResults;
-	private double[] upstreamContributions;
-	private double[] directResults;
-	private double[] directContributions;
 
-	public SankeyResult(ProductSystem system, FullResult results) {
-		this.system = system;
+	/** The link shares do not depend on the selection. */
+	private final TObjectDoubleHashMap<ProcessLink> linkShares = new TObjectDoubleHashMap<>(
+			16, 0.5f, Double.NaN);
+
+	@SuppressWarnings("serial")
+	private final Map<String, Values> cache = new LinkedHashMap<String, Values>(
+			16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Values> e) {
+			return size() > MAX_CACHED;
+		}
+	};
+
+	/** The values of the selection that is shown in the diagram. */
+	private volatile Values values;
+
+	public SankeyResult(FullResult results) {
 		this.results = results;
 	}
 
 	public double getDirectResult(long processId) {
-		return fetchVal(processId, directResults);
+		Values v = values;
+		return fetchVal(processId, v == null ? null : v.directResults);
 	}
 
 	public double getDirectContribution(long processId) {
-		return fetchVal(processId, directContributions);
+		Values v = values;
+		return fetchVal(processId, v == null ? null : v.directContributions);
 	}
 
 	public double getUpstreamResult(long processId) {
-		return fetchVal(processId, upstreamResults);
+		Values v = values;
+		return fetchVal(processId, v == null ? null : v.upstreamResults);
 	}
 
 	public double getUpstreamContribution(long processId) {
-		return fetchVal(processId, upstreamContributions);
+		Values v = values;
+		return fetchVal(processId, v == null ? null : v.upstreamContributions);
 	}
 
 	private double fetchVal(long processId, double[] values) {
@@ -62,70 +94,162 @@ class SankeyResult {
 		return values[idx];
 	}
 
-	public double findCutoff(int maxProcessesCount) {
-		if (upstreamContributions.length == 0
-				|| maxProcessesCount >= upstreamContributions.length)
+	/** Returns the process with the given ID or null if it is not found. */
+	public CategorizedDescriptor getProcess(long processId) {
+		if (processIndex == null)
+			return null;
+		int idx = processIndex.getIndex(processId);
+		if (idx < 0)
+			return null;
+		return processes[idx];
+	}
+
+	/**
+	 * Sets the values that are shown in the diagram. This should be called in
+	 * the UI thread when the diagram is updated with the given values.
+	 */
+	public void select(Values values) {
+		this.values = values;
+	}
+
+	/**
+	 * Returns the cutoff for which the given number of processes with the
+	 * largest absolute upstream contributions are shown.
+	 */
+	public double findCutoff(Values v, int maxProcessesCount) {
+		if (v == null || v.sorted.length == 0
+				|| maxProcessesCount >= v.sorted.length)
 			return 0;
-		int length = upstreamContributions.length;
-		double[] contributions = new double[length];
-		System.arraycopy(upstreamContributions, 0, contributions, 0, length);
-		Arrays.sort(contributions);
-		return Math.abs(contributions[length - maxProcessesCount]);
+		return v.sorted[Math.max(0, maxProcessesCount - 1)];
 	}
 
-	public List<Long> getProcesseIdsAboveCutoff(double cutoff) {
-		List<Long> processes = new ArrayList<>();
-		for (Long process : system.processes) {
-			double contr = getUpstreamContribution(process);
-			if (Math.abs(contr) >= cutoff)
-				processes.add(process);
+	/**
+	 * Returns the IDs of the processes which absolute upstream contributions
+	 * are greater or equal than the given cutoff. As the processes are sorted
+	 * by their contributions, these are the first processes of that order.
+	 */
+	public long[] getProcessIdsAboveCutoff(Values v, double cutoff) {
+		if (v == null)
+			return new long[0];
+		// binary search for the first value below the cutoff; the sorted
+		// values are in descending order
+		int low = 0;
+		int high = v.sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (v.sorted[mid] >= cutoff) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		long[] ids = new long[low];
+		for (int i = 0; i < low; i++) {
+			ids[i] = processes[v.order[i]].id;
 		}
-		return processes;
+		return ids;
 	}
 
 	public double getLinkContribution(ProcessLink link) {
-		if (link == null || results == null)
+		return getLinkContribution(values, link);
+	}
+
+	public double getLinkContribution(Values v, ProcessLink link) {
+		if (link == null || results == null || v == null)
 			return 0;
-		double totalContr = getUpstreamContribution(link.providerId);
-		double linkShare = results.getLinkShare(link);
-		return totalContr * linkShare;
+		synchronized (v.linkWeights) {
+			double weight = v.linkWeights.get(link);
+			if (!Double.isNaN(weight))
+				return weight;
+			double totalContr = fetchVal(
+					link.providerId, v.upstreamContributions);
+			weight = totalContr * getLinkShare(link);
+			v.linkWeights.put(link, weight);
+			return weight;
+		}
 	}
 
-	public void calculate(Object selection) {
+	private double getLinkShare(ProcessLink link) {
+		synchronized (linkShares) {
+			double share = linkShares.get(link);
+			if (Double.isNaN(share)) {
+				share = results.getLinkShare(link);
+				linkShares.put(link, share);
+			}
+			return share;
+		}
+	}
+
+	/**
+	 * Returns the values of the given selection; they are calculated if they
+	 * are not in the cache. This does not change the values that are shown
+	 * in the diagram (see {@link #select(Values)}).
+	 */
+	public Values calculate(Object selection) {
 		log.trace("Calculate Sankey result for selection {}", selection);
-		buildProcessIndex();
+		String key = key(selection);
+		Values cached;
+		synchronized (cache) {
+			if (processIndex == null) {
+				buildProcessIndex();
+			}
+			cached = cache.get(key);
+		}
+		if (cached != null)
+			return cached;
+		Values v = new Values(key);
 		if (selection instanceof FlowDescriptor) {
 			FlowDescriptor f = (FlowDescriptor) selection;
-			upstreamResults = vec(p -> results.getUpstreamFlowResult(p, f));
-			directResults = vec(p -> results.getDirectFlowResult(p, f));
+			v.upstreamResults = vec(p -> results.getUpstreamFlowResult(p, f));
+			v.directResults = vec(p -> results.getDirectFlowResult(p, f));
 		} else if (selection instanceof ImpactCategoryDescriptor) {
 			ImpactCategoryDescriptor i = (ImpactCategoryDescriptor) selection;
-			upstreamResults = vec(p -> results.getUpstreamImpactResult(p, i));
-			directResults = vec(p -> results.getDirectImpactResult(p, i));
+			v.upstreamResults = vec(p -> results.getUpstreamImpactResult(p, i));
+			v.directResults = vec(p -> results.getDirectImpactResult(p, i));
 		} else if (selection instanceof CostResultDescriptor) {
 			CostResultDescriptor c = (CostResultDescriptor) selection;
-			upstreamResults = vec(p -> {
-				double v = results.getUpstreamCostResult(p);
-				return c.forAddedValue && v != 0 ? -v : v;
+			v.upstreamResults = vec(p -> {
+				double val = results.getUpstreamCostResult(p);
+				return c.forAddedValue && val != 0 ? -val : val;
 			});
-			directResults = vec(p -> {
-				double v = results.getDirectCostResult(p);
-				return c.forAddedValue && v != 0 ? -v : v;
+			v.directResults = vec(p -> {
+				double val = results.getDirectCostResult(p);
+				return c.forAddedValue && val != 0 ? -val : val;
 			});
 		} else {
-			directResults = upstreamResults = new double[processIndex.size()];
+			v.directResults = v.upstreamResults = new double[processIndex.size()];
 		}
 
 		// calculate the contributions
 		double refVal = Math.max(
-				Math.abs(Doubles.min(upstreamResults)),
-				Math.abs(Doubles.max(upstreamResults)));
-		upstreamContributions = calcContributions(
-				upstreamResults, refVal);
-		directContributions = calcContributions(
-				directResults, refVal);
-
+				Math.abs(Doubles.min(v.upstreamResults)),
+				Math.abs(Doubles.max(v.upstreamResults)));
+		v.upstreamContributions = calcContributions(
+				v.upstreamResults, refVal);
+		v.directContributions = calcContributions(
+				v.directResults, refVal);
+		v.sort();
+		synchronized (cache) {
+			cache.put(key, v);
+		}
 		log.trace("Calculation done");
+		return v;
+	}
+
+	/**
+	 * The cache key of a selection. Note that the cost result descriptors for
+	 * net costs and added values have the same ID and type.
+	 */
+	static String key(Object selection) {
+		if (selection instanceof CostResultDescriptor) {
+			CostResultDescriptor c = (CostResultDescriptor) selection;
+			return "costs/" + c.forAddedValue;
+		}
+		if (selection instanceof BaseDescriptor) {
+			BaseDescriptor d = (BaseDescriptor) selection;
+			return d.type + "/" + d.id;
+		}
+		return String.valueOf(selection);
 	}
 
 	private double[] calcContributions(double[] values, double ref) {
@@ -152,13 +276,91 @@ class SankeyResult {
 	}
 
 	private void buildProcessIndex() {
-		processIndex = new LongIndex();
+		LongIndex index = new LongIndex();
 		Set<CategorizedDescriptor> processSet = results.getProcesses();
 		processes = new CategorizedDescriptor[processSet.size()];
 		for (CategorizedDescriptor process : processSet) {
-			int i = processIndex.put(process.id);
+			int i = index.put(process.id);
 			processes[i] = process;
 		}
+		processIndex = index;
+	}
+
+	/**
+	 * The values of a selection. The values are not changed after they were
+	 * calculated; only the link weights are added when they are requested.
+	 */
+	static class Values {
+
+		final String key;
+		double[] upstreamResults;
+		double[] upstreamContributions;
+		double[] directResults;
+		double[] directContributions;
+
+		/**
+		 * The process indices sorted by the absolute values of their upstream
+		 * contributions in descending order.
+		 */
+		int[] order;
+
+		/** The absolute upstream contributions in the sorted order. */
+		double[] sorted;
+
+		/** The link weights that were already calculated. */
+		final TObjectDoubleHashMap<ProcessLink> linkWeights = new TObjectDoubleHashMap<>(
+				16, 0.5f, Double.NaN);
+
+		Values(String key) {
+			this.key = key;
+		}
+
+		void sort() {
+			int n = upstreamContributions.length;
+			double[] abs = new double[n];
+			order = new int[n];
+			for (int i = 0; i < n; i++) {
+				abs[i] = Math.abs(upstreamContributions[i]);
+				order[i] = i;
+			}
+			if (n > 1) {
+				sort(order, abs, 0, n - 1);
+			}
+			sorted = new double[n];
+			for (int i = 0; i < n; i++) {
+				sorted[i] = abs[order[i]];
+			}
+		}
+
+		/** Sorts the indices by their keys in descending order. */
+		private static void sort(int[] idx, double[] keys, int lo, int hi) {
+			while (lo < hi) {
+				double pivot = keys[idx[(lo + hi) >>> 1]];
+				int i = lo;
+				int j = hi;
+				while (i <= j) {
+					while (keys[idx[i]] > pivot)
+						i++;
+					while (keys[idx[j]] < pivot)
+						j--;
+					if (i <= j) {
+						int t = idx[i];
+						idx[i] = idx[j];
+						idx[j] = t;
+						i++;
+						j--;
+					}
+				}
+				// recurse into the smaller part to limit the stack depth
+				if (j - lo < hi - i) {
+					sort(idx, keys, lo, j);
+					lo = i;
+				} else {
+					sort(idx, keys, i, hi);
+					hi = j;
+				}
+			}
+		}
 	}
 
 }
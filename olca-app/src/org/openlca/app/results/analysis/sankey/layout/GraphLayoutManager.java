@@ -6,6 +6,7 @@ import org.eclipse.draw2d.AbstractLayout;
 import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Rectangle;
+import org.openlca.app.editors.graphical.layout.LayoutJob;
 import org.openlca.app.results.analysis.sankey.model.ProcessPart;
 import org.openlca.app.results.analysis.sankey.model.ProcessNode;
 import org.openlca.app.results.analysis.sankey.model.ProductSystemPart;
@@ -52,11 +53,16 @@ public class GraphLayoutManager extends AbstractLayout {
 		return result.getSize();
 	}
 
+	/**
+	 * Applies the tree layout to the diagram. For larger diagrams, the layout
+	 * is calculated in a background job; see {@link LayoutJob}.
+	 */
 	public void layoutTree() {
 		log.trace("Apply tree-layout");
 		if (diagram != null && diagram.getModel() != null) {
-			TreeLayout layout = new TreeLayout();
-			layout.layout((ProductSystemNode) diagram.getModel());
+			ProductSystemNode node = (ProductSystemNode) diagram.getModel();
+			TreeLayout layout = new TreeLayout(node);
+			LayoutJob.run(node, layout.size(), layout::run, layout::apply);
 		}
 	}
 
@@ -47,6 +47,12 @@ public class Link {
 			targetNode.add(this);
 	}
 
+	public void unlink() {
+		sourceNode.remove(this);
+		if (sourceNode != targetNode)
+			targetNode.remove(this);
+	}
+
 	void setSelected(int value) {
 		editPart.setSelected(value);
 	}
@@ -23,6 +23,15 @@ abstract class Node implements Comparable<Node> {
 		return b;
 	}
 
+	public boolean removeChild(Node child) {
+		boolean b = children.remove(child);
+		if (b) {
+			child.parent = null;
+			listeners.firePropertyChange(PROPERTY_REMOVE, child, null);
+		}
+		return b;
+	}
+
 	@Override
 	public int compareTo(Node o) {
 		String s1 = getName().toLowerCase();
@@ -30,6 +30,12 @@ public class ProcessNode extends Node {
 		listeners.firePropertyChange(CONNECTION, null, link);
 	}
 
+	public void remove(Link link) {
+		if (links.remove(link)) {
+			listeners.firePropertyChange(CONNECTION, link, null);
+		}
+	}
+
 	@Override
 	public String getName() {
 		return Labels.getDisplayName(process);
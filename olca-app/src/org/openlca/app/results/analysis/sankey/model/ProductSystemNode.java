@@ -10,7 +10,7 @@ import org.openlca.core.model.ProductSystem;
 public class ProductSystemNode extends Node implements PropertyChangeListener {
 
 	public final ProductSystem productSystem;
-	public final double cutoff;
+	public double cutoff;
 	public final SankeyDiagram editor;
 	final Object selection;
 
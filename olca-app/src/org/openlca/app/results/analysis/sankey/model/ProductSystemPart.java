@@ -1,5 +1,7 @@
 package org.openlca.app.results.analysis.sankey.model;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.List;
 
 import org.eclipse.draw2d.IFigure;
@@ -9,7 +11,14 @@ import org.eclipse.swt.graphics.Font;
 import org.openlca.app.results.analysis.sankey.layout.GraphLayoutManager;
 import org.openlca.app.results.analysis.sankey.layout.LayoutPolicy;
 
-public class ProductSystemPart extends AbstractGraphicalEditPart {
+public class ProductSystemPart extends AbstractGraphicalEditPart
+		implements PropertyChangeListener {
+
+	@Override
+	public void activate() {
+		super.activate();
+		((Node) getModel()).listeners.addPropertyChangeListener(this);
+	}
 
 	@Override
 	protected void createEditPolicies() {
@@ -35,6 +44,14 @@ public class ProductSystemPart extends AbstractGraphicalEditPart {
 		return false;
 	}
 
+	@Override
+	public void propertyChange(PropertyChangeEvent evt) {
+		String prop = evt.getPropertyName();
+		if (Node.PROPERTY_ADD.equals(prop) || Node.PROPERTY_REMOVE.equals(prop)) {
+			refreshChildren();
+		}
+	}
+
 	@Override
 	public void deactivate() {
 		IFigure figure = getFigure();
@@ -45,6 +62,7 @@ public class ProductSystemPart extends AbstractGraphicalEditPart {
 				infoFont.dispose();
 		}
 		super.deactivate();
+		((Node) getModel()).listeners.removePropertyChangeListener(this);
 	}
 
 }
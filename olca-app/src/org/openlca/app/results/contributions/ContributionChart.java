@@ -81,11 +81,6 @@ public class ContributionChart {
 
 	public void setData(List<ContributionItem<?>> items, String unit) {
 
-		// delete the old series
-		Arrays.stream(chart.getSeriesSet().getSeries())
-				.map(s -> s.getId())
-				.forEach(id -> chart.getSeriesSet().deleteSeries(id));
-
 		// select the top 6 items; if there are more than 6 items
 		// in the list, select 5 items and calculate a rest.
 		// note that we first rank the items by absolute values to
@@ -104,6 +99,20 @@ public class ContributionChart {
 				rest += items.get(i).amount;
 			}
 		}
+		setData(top, rest, unit);
+	}
+
+	/**
+	 * Shows the given top contributions (at most 6 items) and the rest (the
+	 * sum of all other contributions) which is not shown when it is 0.
+	 */
+	public void setData(List<ContributionItem<?>> top, double rest,
+			String unit) {
+
+		// delete the old series
+		Arrays.stream(chart.getSeriesSet().getSeries())
+				.map(s -> s.getId())
+				.forEach(id -> chart.getSeriesSet().deleteSeries(id));
 
 		// calculate the bar width
 		int n = top.size();
@@ -9,6 +9,7 @@ import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.eclipse.ui.forms.widgets.Section;
 import org.openlca.app.M;
 import org.openlca.app.results.ImageExportAction;
+import org.openlca.app.results.contributions.ContributionQuery.Top;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.Labels;
 import org.openlca.app.util.UI;
@@ -20,7 +21,6 @@ import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
 import org.openlca.core.results.ContributionItem;
 import org.openlca.core.results.ContributionResult;
-import org.openlca.core.results.ContributionSet;
 
 /**
  * Chart section of the first page in the analysis editor. Can contain flow or
@@ -33,6 +33,7 @@ public class ContributionChartSection {
 	private String selectionName = "";
 
 	private ContributionResult provider;
+	private ContributionQuery query;
 	private AbstractViewer<?, TableComboViewer> itemViewer;
 	private ContributionChart chart;
 
@@ -52,6 +53,7 @@ public class ContributionChartSection {
 
 	private ContributionChartSection(ContributionResult provider, boolean forFlows) {
 		this.provider = provider;
+		this.query = ContributionQuery.of(provider);
 		this.forFlows = forFlows;
 	}
 
@@ -99,18 +101,26 @@ public class ContributionChartSection {
 			return;
 		Object selection = itemViewer.getSelected();
 		String unit = null;
-		ContributionSet<CategorizedDescriptor> contributionSet = null;
+		Top<CategorizedDescriptor> top = null;
 		if (selection instanceof FlowDescriptor) {
 			FlowDescriptor flow = (FlowDescriptor) selection;
 			unit = Labels.getRefUnit(flow);
-			contributionSet = provider.getProcessContributions(flow);
+			top = query.processes(flow, 6, 0);
+			if (top.count > 6) {
+				top = query.processes(flow, 5, 0);
+			}
 		} else if (selection instanceof ImpactCategoryDescriptor) {
 			ImpactCategoryDescriptor impact = (ImpactCategoryDescriptor) selection;
 			unit = impact.referenceUnit;
-			contributionSet = provider.getProcessContributions(impact);
+			top = query.processes(impact, 6, 0);
+			if (top.count > 6) {
+				top = query.processes(impact, 5, 0);
+			}
 		}
-		if (contributionSet == null)
+		if (top == null)
 			return;
-		chart.setData(new ArrayList<ContributionItem<?>>(contributionSet.contributions), unit);
+		// the rest is only shown when there are more than 6 contributions
+		double rest = top.count > 6 ? top.rest : 0;
+		chart.setData(new ArrayList<ContributionItem<?>>(top.items), rest, unit);
 	}
 }
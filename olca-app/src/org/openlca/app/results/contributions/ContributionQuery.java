@@ -0,0 +1,222 @@
+package org.openlca.app.results.contributions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openlca.core.matrix.ProcessProduct;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
+import org.openlca.core.results.ContributionItem;
+import org.openlca.core.results.ContributionResult;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Selects the top contributions of the processes to a flow or impact result
+ * directly from the rows of the result matrices. Instead of creating a
+ * contribution item for every process and sorting the complete list, only the
+ * values above the cutoff are collected and the top k of them are selected
+ * (with a partial quickselect) before they are sorted. Thus, the costs of a
+ * query mainly depend on the number of returned items and not on the size of
+ * the product system.
+ */
+public class ContributionQuery {
+
+	private final ContributionResult result;
+
+	/** The processes of the result; a process may have multiple products. */
+	private CategorizedDescriptor[] processes;
+
+	/** Maps the columns of the technology index to the process array. */
+	private int[] processOf;
+
+	private ContributionQuery(ContributionResult result) {
+		this.result = result;
+	}
+
+	public static ContributionQuery of(ContributionResult result) {
+		return new ContributionQuery(result);
+	}
+
+	/**
+	 * Returns the top k process contributions to the given flow result with an
+	 * absolute value that is at least the given share (cutoff) of the total
+	 * result. If k is negative, all contributions above the cutoff are
+	 * returned.
+	 */
+	public Top<CategorizedDescriptor> processes(FlowDescriptor flow, int k,
+			double cutoff) {
+		int row = result.flowIndex.of(flow);
+		if (row < 0)
+			return Top.empty();
+		double[] values = aggregate(result.directFlowResults.getRow(row));
+		if (result.isInput(flow)) {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = -values[i];
+			}
+		}
+		return top(processes, values, k, cutoff);
+	}
+
+	/**
+	 * Returns the top k process contributions to the given impact category
+	 * result; see {@link #processes(FlowDescriptor, int, double)}.
+	 */
+	public Top<CategorizedDescriptor> processes(
+			ImpactCategoryDescriptor impact, int k, double cutoff) {
+		if (!result.hasImpactResults())
+			return Top.empty();
+		int row = result.impactIndex.of(impact);
+		if (row < 0)
+			return Top.empty();
+		double[] values = aggregate(result.directImpactResults.getRow(row));
+		return top(processes, values, k, cutoff);
+	}
+
+	/**
+	 * Sums up the values of the columns of a result matrix row by process.
+	 */
+	private double[] aggregate(double[] row) {
+		initProcesses();
+		double[] values = new double[processes.length];
+		for (int col = 0; col < row.length; col++) {
+			values[processOf[col]] += row[col];
+		}
+		return values;
+	}
+
+	private synchronized void initProcesses() {
+		if (processes != null)
+			return;
+		int n = result.techIndex.size();
+		int[] map = new int[n];
+		List<CategorizedDescriptor> list = new ArrayList<>();
+		TObjectIntHashMap<CategorizedDescriptor> positions = new TObjectIntHashMap<>(
+				n, 0.5f, -1);
+		for (int i = 0; i < n; i++) {
+			ProcessProduct product = result.techIndex.getProviderAt(i);
+			int pos = positions.get(product.process);
+			if (pos < 0) {
+				pos = list.size();
+				list.add(product.process);
+				positions.put(product.process, pos);
+			}
+			map[i] = pos;
+		}
+		processOf = map;
+		processes = list.toArray(new CategorizedDescriptor[list.size()]);
+	}
+
+	/**
+	 * Selects the top k items by the absolute value of their contributions.
+	 * The total result is the sum of all values; values that are 0 or that
+	 * have an absolute value below the given share (cutoff) of the total
+	 * result are not selected. The returned items are sorted by their amount
+	 * in descending order. If k is negative, all items above the cutoff are
+	 * returned.
+	 */
+	public static <T> Top<T> top(T[] items, double[] values, int k,
+			double cutoff) {
+		double total = 0;
+		for (double v : values) {
+			total += v;
+		}
+		double min = Math.abs(total * cutoff);
+		int[] candidates = new int[values.length];
+		int count = 0;
+		for (int i = 0; i < values.length; i++) {
+			double v = values[i];
+			if (v == 0 || Math.abs(v) < min)
+				continue;
+			candidates[count++] = i;
+		}
+		int n = k < 0 ? count : Math.min(k, count);
+		if (n < count) {
+			select(candidates, count, values, n);
+		}
+		Top<T> top = new Top<>();
+		top.total = total;
+		top.count = count;
+		double sum = 0;
+		double absTotal = Math.abs(total);
+		for (int i = 0; i < n; i++) {
+			int idx = candidates[i];
+			ContributionItem<T> item = new ContributionItem<>();
+			item.item = items[idx];
+			item.amount = values[idx];
+			item.share = absTotal == 0 ? 0 : item.amount / absTotal;
+			sum += item.amount;
+			top.items.add(item);
+		}
+		top.items.sort((i1, i2) -> Double.compare(i2.amount, i1.amount));
+		top.rest = total - sum;
+		return top;
+	}
+
+	/**
+	 * Partially sorts the first count indices so that the first k of them
+	 * point to the largest absolute values (in no specific order).
+	 */
+	private static void select(int[] idx, int count, double[] values, int k) {
+		int left = 0;
+		int right = count - 1;
+		while (left < right) {
+			int pivot = partition(idx, left, right, values,
+					left + (right - left) / 2);
+			if (pivot == k)
+				return;
+			if (pivot < k) {
+				left = pivot + 1;
+			} else {
+				right = pivot - 1;
+			}
+		}
+	}
+
+	/**
+	 * Moves the indices with larger absolute values than the pivot to the left
+	 * and returns the new position of the pivot.
+	 */
+	private static int partition(int[] idx, int left, int right,
+			double[] values, int pivotPos) {
+		double pivot = Math.abs(values[idx[pivotPos]]);
+		swap(idx, pivotPos, right);
+		int store = left;
+		for (int i = left; i < right; i++) {
+			if (Math.abs(values[idx[i]]) > pivot) {
+				swap(idx, i, store);
+				store++;
+			}
+		}
+		swap(idx, store, right);
+		return store;
+	}
+
+	private static void swap(int[] idx, int i, int j) {
+		int t = idx[i];
+		idx[i] = idx[j];
+		idx[j] = t;
+	}
+
+	/** The result of a top-k query. */
+	public static class Top<T> {
+
+		/** The selected items sorted by their amount in descending order. */
+		public final List<ContributionItem<T>> items = new ArrayList<>();
+
+		/** The total result; the sum of all contributions. */
+		public double total;
+
+		/** The sum of all contributions that are not in the selected items. */
+		public double rest;
+
+		/** The number of non-zero contributions above the cutoff. */
+		public int count;
+
+		static <T> Top<T> empty() {
+			return new Top<>();
+		}
+	}
+
+}
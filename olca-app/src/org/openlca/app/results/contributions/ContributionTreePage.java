@@ -1,6 +1,7 @@
 package org.openlca.app.results.contributions;
 
 import java.util.Iterator;
+import java.util.function.Supplier;
 
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.viewers.BaseLabelProvider;
@@ -22,6 +23,7 @@ import org.openlca.app.components.ContributionImage;
 import org.openlca.app.components.ResultTypeSelection;
 import org.openlca.app.components.ResultTypeSelection.EventHandler;
 import org.openlca.app.rcp.images.Images;
+import org.openlca.app.results.ResultPages;
 import org.openlca.app.util.Actions;
 import org.openlca.app.util.CostResultDescriptor;
 import org.openlca.app.util.Labels;
@@ -39,6 +41,7 @@ import org.openlca.core.results.UpstreamTree;
 public class ContributionTreePage extends FormPage {
 
 	private FullResult result;
+	private ScrolledForm form;
 	private TreeViewer tree;
 	private Object selection;
 	private CalculationSetup setup;
@@ -58,7 +61,7 @@ public class ContributionTreePage extends FormPage {
 	@Override
 	protected void createFormContent(IManagedForm mform) {
 		FormToolkit tk = mform.getToolkit();
-		ScrolledForm form = UI.formHeader(mform,
+		form = UI.formHeader(mform,
 				Labels.getDisplayName(setup.productSystem),
 				Images.get(result));
 		Composite body = UI.formBody(form, tk);
@@ -97,30 +100,38 @@ public class ContributionTreePage extends FormPage {
 				0.20, 0.50, 0.20, 0.10);
 	}
 
+	/**
+	 * Sets the upstream tree of the given selection as input of the tree
+	 * viewer. The root of the upstream tree is calculated in a background
+	 * job. The selection, which is also used for the labels of the tree, is
+	 * only updated when the tree arrives; the trees of earlier selections
+	 * are dropped (see {@link ResultPages#fillLater}).
+	 */
+	private void setTree(Object selection, Supplier<UpstreamTree> fn) {
+		ResultPages.fillLater(form, M.ContributionTree, fn, model -> {
+			this.selection = selection;
+			tree.setInput(model);
+		});
+	}
+
 	private class SelectionHandler implements EventHandler {
 
 		@Override
 		public void flowSelected(FlowDescriptor flow) {
-			selection = flow;
-			UpstreamTree model = result.getTree(flow);
-			tree.setInput(model);
+			setTree(flow, () -> result.getTree(flow));
 		}
 
 		@Override
 		public void impactCategorySelected(
 				ImpactCategoryDescriptor impact) {
-			selection = impact;
-			UpstreamTree model = result.getTree(impact);
-			tree.setInput(model);
+			setTree(impact, () -> result.getTree(impact));
 		}
 
 		@Override
 		public void costResultSelected(CostResultDescriptor cost) {
-			selection = cost;
-			UpstreamTree model = cost.forAddedValue
+			setTree(cost, () -> cost.forAddedValue
 					? result.getAddedValueTree()
-					: result.getCostTree();
-			tree.setInput(model);
+					: result.getCostTree());
 		}
 	}
 
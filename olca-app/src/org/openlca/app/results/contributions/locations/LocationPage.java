@@ -29,6 +29,7 @@ import org.openlca.core.results.ContributionResult;
 public class LocationPage extends FormPage {
 
 	ContributionResult result;
+	ScrolledForm form;
 
 	private ResultTypeSelection combos;
 	private LocationTree tree;
@@ -52,7 +53,7 @@ public class LocationPage extends FormPage {
 
 	@Override
 	protected void createFormContent(IManagedForm mform) {
-		ScrolledForm form = UI.formHeader(mform,
+		form = UI.formHeader(mform,
 				Labels.getDisplayName(setup.productSystem),
 				Images.get(result));
 		FormToolkit tk = mform.getToolkit();
@@ -2,10 +2,13 @@ package org.openlca.app.results.contributions.locations;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
+import org.openlca.app.M;
 import org.openlca.app.components.ResultTypeSelection.EventHandler;
 import org.openlca.app.db.Cache;
 import org.openlca.app.db.Database;
+import org.openlca.app.results.ResultPages;
 import org.openlca.app.util.CostResultDescriptor;
 import org.openlca.app.util.Labels;
 import org.openlca.core.database.CurrencyDao;
@@ -33,48 +36,64 @@ class SelectionHandler implements EventHandler {
 	SelectionHandler(LocationPage page) {
 		this.page = page;
 		this.result = page.result;
-		this.inputBuilder = new TreeContentBuilder(page);
-		calculator = new LocationContribution(
-				result, Cache.getEntityCache());
 	}
 
 	@Override
 	public void flowSelected(FlowDescriptor flow) {
-		if (calculator == null || flow == null)
+		if (flow == null)
 			return;
 		String unit = Labels.getRefUnit(flow);
-		ContributionSet<Location> set = calculator.calculate(flow);
 		double total = result.getTotalFlowResult(flow);
-		setData(set, flow, total, unit);
+		update(flow, total, unit, c -> c.calculate(flow));
 	}
 
 	@Override
 	public void impactCategorySelected(ImpactCategoryDescriptor impact) {
-		if (calculator == null || impact == null)
+		if (impact == null)
 			return;
 		String unit = impact.referenceUnit;
-		ContributionSet<Location> set = calculator.calculate(impact);
 		double total = result.getTotalImpactResult(impact);
-		setData(set, impact, total, unit);
+		update(impact, total, unit, c -> c.calculate(impact));
 	}
 
 	@Override
 	public void costResultSelected(CostResultDescriptor cost) {
-		if (calculator == null || cost == null)
+		if (cost == null)
 			return;
 		String unit = getCurrency();
 		if (cost.forAddedValue) {
-			ContributionSet<Location> set = calculator.addedValues();
 			double total = result.totalCosts;
 			total = total == 0 ? 0 : -total;
-			setData(set, cost, total, unit);
+			update(cost, total, unit, c -> c.addedValues());
 		} else {
-			ContributionSet<Location> set = calculator.netCosts();
 			double total = result.totalCosts;
-			setData(set, cost, total, unit);
+			update(cost, total, unit, c -> c.netCosts());
 		}
 	}
 
+	/**
+	 * Calculates the location contributions in a background job and sets
+	 * them as input of the page; results of outdated selections are dropped
+	 * (see {@link ResultPages#fillLater}).
+	 */
+	private void update(BaseDescriptor selection, double total, String unit,
+			Function<LocationContribution, ContributionSet<Location>> fn) {
+		ResultPages.fillLater(page.form, M.Locations, () -> {
+			init();
+			ContributionSet<Location> set = fn.apply(calculator);
+			return items(set, selection, total);
+		}, items -> page.setInput(items, unit));
+	}
+
+	/** Creates the calculator and tree builder on the first selection. */
+	private synchronized void init() {
+		if (calculator != null)
+			return;
+		inputBuilder = new TreeContentBuilder(page);
+		calculator = new LocationContribution(
+				result, Cache.getEntityCache());
+	}
+
 	private String getCurrency() {
 		try {
 			CurrencyDao dao = new CurrencyDao(Database.get());
@@ -90,8 +109,9 @@ class SelectionHandler implements EventHandler {
 		}
 	}
 
-	private void setData(ContributionSet<Location> set,
-			BaseDescriptor selection, double total, String unit) {
+	private synchronized List<LocationItem> items(
+			ContributionSet<Location> set, BaseDescriptor selection,
+			double total) {
 		List<LocationItem> items = inputBuilder.build(set, selection, total);
 		Collections.sort(items, (item1, item2) -> {
 			if (item1.contribution == null || item2.contribution == null)
@@ -105,6 +125,6 @@ class SelectionHandler implements EventHandler {
 						Labels.getDisplayName(c1.item),
 						Labels.getDisplayName(c2.item));
 		});
-		page.setInput(items, unit);
+		return items;
 	}
 }
\ No newline at end of file
@@ -3,12 +3,14 @@ package org.openlca.app.results.quick;
 import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.ui.part.EditorActionBarContributor;
 import org.openlca.app.results.ExcelExportAction;
+import org.openlca.app.results.snapshots.SaveResultAction;
 
 public class QuickResultActions extends EditorActionBarContributor {
 
 	@Override
 	public void contributeToToolBar(IToolBarManager toolBarManager) {
 		toolBarManager.add(new ExcelExportAction());
+		toolBarManager.add(new SaveResultAction());
 	}
 
 }
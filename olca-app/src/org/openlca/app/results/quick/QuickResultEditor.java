@@ -16,6 +16,7 @@ import org.openlca.app.results.SaveProcessDialog;
 import org.openlca.app.results.TotalImpactResultPage;
 import org.openlca.app.results.contributions.locations.LocationPage;
 import org.openlca.app.results.grouping.GroupPage;
+import org.openlca.app.results.snapshots.ResultSnapshot;
 import org.openlca.core.math.CalculationSetup;
 import org.openlca.core.math.data_quality.DQResult;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
@@ -33,6 +34,7 @@ public class QuickResultEditor extends FormEditor implements IResultEditor<Contr
 	private CalculationSetup setup;
 	private ContributionResult result;
 	private DQResult dqResult;
+	private ResultSnapshot snapshot;
 
 	@Override
 	public void init(IEditorSite site, IEditorInput iInput)
@@ -47,12 +49,23 @@ public class QuickResultEditor extends FormEditor implements IResultEditor<Contr
 			String dqResultKey = input.dqResultKey;
 			if (dqResultKey != null)
 				dqResult = Cache.getAppCache().remove(dqResultKey, DQResult.class);
+			if (input.snapshotKey != null)
+				snapshot = Cache.getAppCache().remove(
+						input.snapshotKey, ResultSnapshot.class);
 		} catch (Exception e) {
 			log.error("failed to load inventory result", e);
 			throw new PartInitException("failed to load inventory result", e);
 		}
 	}
 
+	@Override
+	public void dispose() {
+		if (snapshot != null) {
+			snapshot.dispose();
+		}
+		super.dispose();
+	}
+
 	@Override
 	public CalculationSetup getSetup() {
 		return setup;
@@ -115,6 +115,14 @@ public class RegionalizedResultEditor extends FormEditor implements IResultEdito
 
 	}
 
+	@Override
+	protected void pageChange(int newPageIndex) {
+		super.pageChange(newPageIndex);
+		if (newPageIndex == diagramIndex && diagram != null) {
+			diagram.initContent();
+		}
+	}
+
 	@Override
 	public void doSave(IProgressMonitor monitor) {
 	}
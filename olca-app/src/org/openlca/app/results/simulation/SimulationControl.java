@@ -22,7 +22,7 @@ class SimulationControl {
 			SimulationPage page) {
 		this.page = page;
 		this.editor = editor;
-		monitor = new SimulationMonitor();
+		monitor = editor.monitor;
 		Controls.onSelect(button, (e) -> {
 			if (!monitor.isRunning()) {
 				button.setText(M.Cancel);
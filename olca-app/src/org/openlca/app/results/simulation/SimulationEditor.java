@@ -26,6 +26,16 @@ public class SimulationEditor extends SimpleFormEditor {
 	CalculationSetup setup;
 	Simulator simulator;
 
+	/**
+	 * Stores the results of the simulation runs on disk. This is null when
+	 * the store could not be created; the results are then kept in the
+	 * result of the simulator.
+	 */
+	SimulationStore store;
+
+	/** The monitor of the simulation progress of this editor. */
+	final SimulationMonitor monitor = new SimulationMonitor();
+
 	/**
 	 * Initializes the Monte Carlo simulation of a product system and opens the
 	 * editor.
@@ -54,6 +64,23 @@ public class SimulationEditor extends SimpleFormEditor {
 		setPartName(Strings.cut(setup.productSystem.name, 75));
 		simulator = Cache.getAppCache()
 				.remove(input.solverKey, Simulator.class);
+		try {
+			store = new SimulationStore();
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("failed to create simulation store", e);
+		}
+	}
+
+	@Override
+	public void dispose() {
+		// the workers of a running simulation may still append results
+		// to the store, so we stop them before the store is closed
+		monitor.cancelAndWait();
+		if (store != null) {
+			store.close();
+		}
+		super.dispose();
 	}
 
 	@Override
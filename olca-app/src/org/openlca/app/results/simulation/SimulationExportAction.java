@@ -1,7 +1,15 @@
 package org.openlca.app.results.simulation;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
 
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.eclipse.jface.action.Action;
 import org.openlca.app.App;
 import org.openlca.app.M;
@@ -9,25 +17,42 @@ import org.openlca.app.components.FileChooser;
 import org.openlca.app.db.Cache;
 import org.openlca.app.rcp.images.Images;
 import org.openlca.app.util.FileType;
+import org.openlca.app.util.Labels;
 import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
 import org.openlca.core.results.SimulationResult;
+import org.openlca.core.results.Statistics;
 import org.openlca.io.xls.results.SimulationResultExport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Exports the results of a simulation to Excel. If the runs were written to
+ * the simulation store, the results are streamed into the workbook: the
+ * values of a flow or impact category are read from the store, written into
+ * one row, and then released, so that only one column of the store is in
+ * memory at a time. Otherwise, the Excel export of the in-memory result is
+ * used.
+ */
 class SimulationExportAction extends Action {
 
+	/** The number of columns before the values of the simulation runs. */
+	private static final int VALUE_OFFSET = 11;
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private SimulationResult result;
 	private CalculationSetup setup;
+	private SimulationStore store;
 
 	public SimulationExportAction(SimulationResult result,
-			CalculationSetup setup) {
+			CalculationSetup setup, SimulationStore store) {
 		setId("SimulationResultExport");
 		setToolTipText(M.ExportResultsToExcel);
 		setImageDescriptor(Images.descriptor(FileType.EXCEL));
 		this.result = result;
 		this.setup = setup;
+		this.store = store;
 	}
 
 	@Override
@@ -37,6 +62,10 @@ class SimulationExportAction extends Action {
 			return;
 		App.run(M.ExportResultsToExcel, () -> {
 			try {
+				if (store != null && store.size() > 0) {
+					writeStored(file);
+					return;
+				}
 				SimulationResultExport export = new SimulationResultExport(
 						setup, result, Cache.getEntityCache());
 				export.run(file);
@@ -45,4 +74,103 @@ class SimulationExportAction extends Action {
 			}
 		});
 	}
+
+	private void writeStored(File file) throws Exception {
+		// keep only a few rows in memory; the rows can be very wide
+		SXSSFWorkbook wb = new SXSSFWorkbook(10);
+		try (OutputStream out = new FileOutputStream(file)) {
+			CellStyle header = headerStyle(wb);
+			Sheet flowSheet = wb.createSheet(M.InventoryResults);
+			int row = 0;
+			header(flowSheet, header);
+			for (FlowDescriptor flow : result.getFlows()) {
+				double[] values = concat(result.getAll(flow),
+						store.getFlowResults(result.flowIndex.of(flow)));
+				Row r = flowSheet.createRow(++row);
+				r.createCell(0).setCellValue(flow.name);
+				r.createCell(1).setCellValue(
+						result.flowIndex.isInput(flow) ? M.Input : M.Output);
+				r.createCell(2).setCellValue(Labels.getShortCategory(flow));
+				r.createCell(3).setCellValue(Labels.getRefUnit(flow));
+				values(r, values);
+			}
+			if (result.hasImpactResults()) {
+				Sheet impactSheet = wb.createSheet(M.ImpactCategories);
+				row = 0;
+				header(impactSheet, header);
+				for (ImpactCategoryDescriptor impact : result.getImpacts()) {
+					double[] values = concat(result.getAll(impact),
+							store.getImpactResults(
+									result.impactIndex.of(impact)));
+					Row r = impactSheet.createRow(++row);
+					r.createCell(0).setCellValue(impact.name);
+					r.createCell(3).setCellValue(impact.referenceUnit);
+					values(r, values);
+				}
+			}
+			wb.write(out);
+		} finally {
+			// deletes the temporary files of the streamed sheets
+			wb.dispose();
+		}
+	}
+
+	private CellStyle headerStyle(SXSSFWorkbook wb) {
+		CellStyle style = wb.createCellStyle();
+		Font font = wb.createFont();
+		font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+		style.setFont(font);
+		return style;
+	}
+
+	private void header(Sheet sheet, CellStyle style) {
+		Row row = sheet.createRow(0);
+		String[] names = { M.Name, M.Direction, M.Category, M.Unit, M.Mean,
+				M.StandardDeviation, M.Minimum, M.Maximum, M.Median,
+				M.Percentile5, M.Percentile95 };
+		for (int col = 0; col < names.length; col++) {
+			row.createCell(col).setCellValue(names[col]);
+			row.getCell(col).setCellStyle(style);
+		}
+		int runs = Math.min(store.size() + result.getNumberOfRuns(),
+				maxValues());
+		for (int run = 0; run < runs; run++) {
+			row.createCell(VALUE_OFFSET + run).setCellValue(run + 1);
+			row.getCell(VALUE_OFFSET + run).setCellStyle(style);
+		}
+	}
+
+	/**
+	 * Writes the statistics and the values into the given row. The statistics
+	 * are calculated from all values but only as many values as fit into the
+	 * row of an Excel sheet are written.
+	 */
+	private void values(Row row, double[] values) {
+		if (values == null || values.length == 0)
+			return;
+		Statistics stats = Statistics.of(values);
+		double[] s = { stats.mean, stats.standardDeviation, stats.min,
+				stats.max, stats.median, stats.getPercentileValue(5),
+				stats.getPercentileValue(95) };
+		for (int i = 0; i < s.length; i++) {
+			row.createCell(4 + i).setCellValue(s[i]);
+		}
+		int n = Math.min(values.length, maxValues());
+		for (int i = 0; i < n; i++) {
+			row.createCell(VALUE_OFFSET + i).setCellValue(values[i]);
+		}
+	}
+
+	private int maxValues() {
+		return SpreadsheetVersion.EXCEL2007.getMaxColumns() - VALUE_OFFSET;
+	}
+
+	private double[] concat(double[] a, double[] b) {
+		if (a == null)
+			return b;
+		double[] c = new double[a.length + b.length];
+		System.arraycopy(a, 0, c, 0, a.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
 }
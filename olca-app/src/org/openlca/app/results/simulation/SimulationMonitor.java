@@ -5,17 +5,31 @@ import org.eclipse.core.runtime.IProgressMonitor;
 /** The monitor of the simulation. */
 class SimulationMonitor implements IProgressMonitor {
 
-	private boolean canceled = false;
-	private boolean running = false;
+	private volatile boolean canceled = false;
+	private volatile boolean running = false;
+
+	/**
+	 * True while the simulation progress is executed. Other than
+	 * {@link #running}, this is only reset when the progress finished (and not
+	 * already when it was canceled).
+	 */
+	private boolean active = false;
 
 	@Override
 	public void beginTask(String name, int totalWork) {
 		running = true;
+		synchronized (this) {
+			active = true;
+		}
 	}
 
 	@Override
 	public void done() {
 		running = false;
+		synchronized (this) {
+			active = false;
+			notifyAll();
+		}
 	}
 
 	@Override
@@ -50,4 +64,19 @@ class SimulationMonitor implements IProgressMonitor {
 		return running;
 	}
 
+	/**
+	 * Cancels the simulation and waits until the simulation progress is
+	 * finished, i.e. until no more results are appended.
+	 */
+	public synchronized void cancelAndWait() {
+		setCanceled(true);
+		try {
+			while (active) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 }
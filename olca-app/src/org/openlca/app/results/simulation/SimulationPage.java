@@ -1,6 +1,7 @@
 package org.openlca.app.results.simulation;
 
 import java.util.Set;
+import java.util.function.IntFunction;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionEvent;
@@ -56,6 +57,12 @@ class SimulationPage extends FormPage {
 	/** A pinned product which results should be displayed. */
 	private ProcessProduct resultPin;
 
+	/**
+	 * The number of runs of the simulation store that were already added to
+	 * the statistics of the current selection.
+	 */
+	private int storedRuns;
+
 	public SimulationPage(SimulationEditor editor) {
 		super(editor, "SimulationPage", M.MonteCarloSimulation);
 		this.editor = editor;
@@ -137,7 +144,7 @@ class SimulationPage extends FormPage {
 			return;
 		Section section = UI.section(body, tk, M.Results);
 		SimulationExportAction exportAction = new SimulationExportAction(
-				result, editor.setup);
+				result, editor.setup, editor.store);
 		Actions.bind(section, exportAction);
 		Composite comp = UI.sectionClient(section, tk);
 		initFlowCheckViewer(tk, comp);
@@ -175,35 +182,75 @@ class SimulationPage extends FormPage {
 	}
 
 	private void updateSelection() {
+		if (statisticsCanvas == null)
+			return;
+		statisticsCanvas.reset();
+		storedRuns = 0;
+		updateValues();
+	}
+
+	private void updateValues() {
 		if (result == null || statisticsCanvas == null)
 			return;
 		if (resultType == FLOW) {
 			FlowDescriptor flow = flowViewer.getSelected();
 			if (flow == null)
 				return;
-			double[] vals = resultPin != null
-					? result.getAllUpstream(resultPin, flow)
-					: result.getAll(flow);
-			statisticsCanvas.setValues(vals);
+			if (resultPin != null) {
+				statisticsCanvas.setValues(
+						result.getAllUpstream(resultPin, flow));
+			} else {
+				int idx = result.flowIndex.of(flow);
+				setValues(result.getAll(flow),
+						from -> editor.store.getFlowResults(idx, from));
+			}
 		} else {
 			ImpactCategoryDescriptor cat = impactViewer.getSelected();
 			if (cat == null)
 				return;
-			double[] vals = resultPin != null
-					? result.getAllUpstream(resultPin, cat)
-					: result.getAll(cat);
-			statisticsCanvas.setValues(vals);
+			if (resultPin != null) {
+				statisticsCanvas.setValues(
+						result.getAllUpstream(resultPin, cat));
+			} else {
+				int idx = result.impactIndex.of(cat);
+				setValues(result.getAll(cat),
+						from -> editor.store.getImpactResults(idx, from));
+			}
 		}
 	}
 
-	void updateProgress() {
-		if (result == null)
+	/**
+	 * Sets the results of the runs in memory (at least the initial run) and
+	 * adds the results of the runs in the store that were appended since the
+	 * last update. The function reads the stored results starting with the
+	 * given run.
+	 */
+	private void setValues(double[] inMemory, IntFunction<double[]> stored) {
+		statisticsCanvas.setValues(inMemory);
+		SimulationStore store = editor.store;
+		if (store == null || store.size() <= storedRuns)
 			return;
-		updateSelection();
-		progressBar.setSelection(progressBar.getSelection() + 1);
+		double[] next = stored.apply(storedRuns);
+		storedRuns += next.length;
+		statisticsCanvas.addValues(next);
+	}
+
+	/**
+	 * Updates the result view and the progress bar with the given number of
+	 * finished simulation runs.
+	 */
+	void updateProgress(int runs) {
+		if (result == null || form == null || form.isDisposed())
+			return;
+		updateValues();
+		if (progressBar != null && !progressBar.isDisposed()) {
+			progressBar.setSelection(runs);
+		}
 	}
 
 	void progressDone(int numberOfIteration) {
+		if (form == null || form.isDisposed())
+			return;
 		progressSection.dispose();
 		form.reflow(true);
 	}
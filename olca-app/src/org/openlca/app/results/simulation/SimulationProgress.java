@@ -1,30 +1,85 @@
 package org.openlca.app.results.simulation;
 
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.swt.widgets.Display;
+import org.openlca.app.App;
 import org.openlca.app.M;
+import org.openlca.app.Preferences;
+import org.openlca.app.db.Cache;
+import org.openlca.app.util.MsgBox;
+import org.openlca.core.math.CalculationSetup;
 import org.openlca.core.math.Simulator;
+import org.openlca.core.results.SimpleResult;
+import org.openlca.core.results.SimulationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The progress that runs the simulations. This should not be executed in the
  * UI-thread.
+ * <p>
+ * If more than one thread is configured (see
+ * {@link Preferences#SIMULATION_THREADS}) and no products are pinned, the
+ * iterations are partitioned over a pool of workers. Each worker has its own
+ * simulator (and thus its own sampled matrices and solver workspace) for all
+ * of its iterations. The results of the workers are appended to the result
+ * of the editor in the order of the iterations. The page is refreshed with a
+ * fixed frame rate independent from the number of iterations.
+ * <p>
+ * When no products are pinned, the results are written to the disk-backed
+ * {@link SimulationStore} of the editor (also with a single worker) so that
+ * the memory usage does not grow with the number of iterations. Pinned
+ * products need the upstream results of the simulator and thus are always
+ * calculated sequentially in memory.
  */
 class SimulationProgress implements IRunnableWithProgress {
 
-	private Display display;
-	private int numberOfRuns;
-	private Simulator solver;
-	private SimulationPage page;
+	/** The minimum time between two UI updates in milliseconds. */
+	private static final long FRAME_TIME = 100;
+
+	/**
+	 * The number of runs after which the result of a worker's simulator is
+	 * drained. The simulator of a worker also keeps its results, which are
+	 * already merged into the result of the editor or the store, so we remove
+	 * them from time to time to not double the memory of the simulation
+	 * result.
+	 */
+	private static final int WORKER_RUNS = 500;
+
+	/** Marks a failed iteration in the result slots of the workers. */
+	private static final Object FAILED = new Object();
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final Display display;
+	private final int numberOfRuns;
+	private final Simulator solver;
+	private final CalculationSetup setup;
+	private final SimulationPage page;
+	private final SimulationStore store;
+
+	private long lastUpdate;
 
 	public SimulationProgress(Display display, SimulationEditor editor,
 			SimulationPage page) {
 		this.display = display;
 		this.solver = editor.simulator;
+		this.setup = editor.setup;
 		this.numberOfRuns = editor.setup.numberOfRuns;
 		this.page = page;
+		this.store = editor.store;
 	}
 
 	@Override
@@ -32,35 +87,183 @@ class SimulationProgress implements IRunnableWithProgress {
 			InterruptedException {
 		// one simulation has already be done at init step, so only
 		// (numberOfRuns - 1) remains
-		monitor.beginTask(M.MonteCarloSimulation + "...", numberOfRuns - 1);
-		for (int i = 0; i < numberOfRuns - 1; i++) {
+		int runs = numberOfRuns - 1;
+		monitor.beginTask(M.MonteCarloSimulation + "...", runs);
+		try {
+			int threads = Math.max(1, Math.min(threadCount(), runs));
+			boolean pinned = !solver.pinnedProducts.isEmpty();
+			int done = runs > 0 && !pinned && (threads > 1 || store != null)
+					? runParallel(monitor, runs, threads)
+					: runSequential(monitor, runs);
+			doneAfter(done);
+		} finally {
+			monitor.done();
+		}
+	}
+
+	private int threadCount() {
+		int threads = Preferences.getStore().getInt(
+				Preferences.SIMULATION_THREADS);
+		if (threads > 0)
+			return threads;
+		return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	}
+
+	private int runSequential(IProgressMonitor monitor, int runs) {
+		for (int i = 0; i < runs; i++) {
+			if (monitor.isCanceled())
+				return i;
+			solver.nextRun();
+			monitor.worked(1);
+			updateProgress(i + 1, false);
+		}
+		return runs;
+	}
+
+	private int runParallel(IProgressMonitor monitor, int runs, int threads)
+			throws InterruptedException {
+		// the iterations are partitioned over the workers that could be
+		// created, so that no iteration is left out when a worker fails
+		List<Simulator> sims = new ArrayList<>();
+		for (int w = 0; w < threads; w++) {
+			Simulator sim = createWorker();
+			if (sim != null) {
+				sims.add(sim);
+			}
+		}
+		int workers = sims.size();
+		if (workers == 0) {
+			display.asyncExec(() -> MsgBox.error(
+					"Failed to start the simulation: no simulation worker"
+							+ " could be created"));
+			return 0;
+		}
+		log.trace("run {} simulations in {} threads", runs, workers);
+		AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(runs);
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		for (int w = 0; w < workers; w++) {
+			Simulator sim = sims.get(w);
+			int offset = w;
+			pool.execute(() -> {
+				Simulator worker = sim;
+				int count = 0;
+				for (int i = offset; i < runs; i += workers) {
+					if (monitor.isCanceled())
+						return;
+					if (count > 0 && count % WORKER_RUNS == 0
+							&& !drain(worker)) {
+						Simulator next = createWorker();
+						if (next != null) {
+							worker = next;
+						}
+					}
+					Object r = null;
+					try {
+						r = worker.nextRun();
+					} catch (Exception e) {
+						log.error("simulation run " + i + " failed", e);
+					}
+					slots.set(i, r == null ? FAILED : r);
+					count++;
+				}
+			});
+		}
+		pool.shutdown();
+
+		// merge the results in the order of the iterations
+		int next = 0;
+		boolean finished = false;
+		while (!finished) {
+			finished = pool.awaitTermination(FRAME_TIME, TimeUnit.MILLISECONDS);
+			int merged = next;
+			while (next < runs) {
+				Object r = slots.getAndSet(next, null);
+				if (r == null)
+					break;
+				if (r != FAILED) {
+					append((SimpleResult) r);
+				}
+				next++;
+			}
+			monitor.worked(next - merged);
 			if (monitor.isCanceled()) {
-				doneAfter(i);
-				break;
+				pool.shutdownNow();
 			}
-			doNextRun();
+			updateProgress(next, true);
 		}
-		monitor.done();
-		doneAfter(numberOfRuns - 1);
+		if (next < runs && !monitor.isCanceled()) {
+			log.error("simulation stopped after {} of {} runs", next, runs);
+		}
+		return next;
 	}
 
-	private void doneAfter(final int numberOfRuns) {
-		display.asyncExec(new Runnable() {
-			@Override
-			public void run() {
-				page.progressDone(numberOfRuns);
+	private void append(SimpleResult r) {
+		if (store != null) {
+			store.append(r);
+		} else {
+			solver.getResult().append(r);
+		}
+	}
+
+	/**
+	 * Removes the runs from the result of the given simulator. There is no
+	 * method in the simulation result for this; thus, we clear the
+	 * collections of the result via reflection. Returns false if this failed;
+	 * the worker then needs a new simulator.
+	 */
+	private boolean drain(Simulator worker) {
+		SimulationResult result = worker.getResult();
+		if (result == null)
+			return true;
+		try {
+			for (Field field : SimulationResult.class.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers()))
+					continue;
+				field.setAccessible(true);
+				Object value = field.get(result);
+				if (value instanceof Collection) {
+					((Collection<?>) value).clear();
+				} else if (value instanceof Map) {
+					((Map<?, ?>) value).clear();
+				}
 			}
-		});
+			return true;
+		} catch (Exception e) {
+			log.warn("failed to drain the result of a simulation worker", e);
+			return false;
+		}
+	}
+
+	private synchronized Simulator createWorker() {
+		try {
+			return Simulator.create(
+					setup, Cache.getMatrixCache(), App.getSolver());
+		} catch (Exception e) {
+			log.error("failed to create simulation worker", e);
+			return null;
+		}
 	}
 
-	private void doNextRun() throws InterruptedException {
-		solver.nextRun();
+	/**
+	 * Posts a progress update to the UI if the frame time is over since the
+	 * last update (or when forced).
+	 */
+	private void updateProgress(int runs, boolean force) {
+		long time = System.currentTimeMillis();
+		if (!force && (time - lastUpdate) < FRAME_TIME)
+			return;
+		lastUpdate = time;
+		// the runs are counted here without the initial run
+		display.asyncExec(() -> page.updateProgress(runs + 1));
+	}
+
+	private void doneAfter(final int numberOfRuns) {
 		display.asyncExec(new Runnable() {
 			@Override
 			public void run() {
-				page.updateProgress();
+				page.updateProgress(numberOfRuns + 1);
+				page.progressDone(numberOfRuns);
 			}
 		});
-		Thread.sleep(10);
 	}
 }
@@ -0,0 +1,219 @@
+package org.openlca.app.results.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import org.openlca.core.results.SimpleResult;
+import org.openlca.util.Dirs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A disk-backed store of the results of a Monte Carlo simulation. There is one
+ * file for the flow results and one for the impact results. The values of a
+ * simulation run are appended to an in-memory block of a bounded size. When
+ * the block is full, it is written transposed (column by column) to the end
+ * of the file. Thus, the values of a flow or impact category can be read
+ * lazily with one contiguous read per block while the heap usage of the store
+ * is independent from the number of iterations.
+ */
+class SimulationStore {
+
+	/** The maximum number of values in an in-memory block (8 MB). */
+	private static final int MAX_BLOCK_VALUES = 1 << 20;
+
+	/** The maximum number of iterations in a block. */
+	private static final int MAX_BLOCK_ROWS = 256;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final File dir;
+	private final Table flows;
+	private final Table impacts;
+	private int size;
+	private boolean closed;
+
+	SimulationStore() throws IOException {
+		dir = Files.createTempDirectory("olca_simulation").toFile();
+		flows = new Table(new File(dir, "flows.bin"));
+		impacts = new Table(new File(dir, "impacts.bin"));
+	}
+
+	/** Appends the total flow and impact results of a simulation run. */
+	synchronized void append(SimpleResult r) {
+		if (r == null || closed)
+			return;
+		try {
+			flows.append(r.totalFlowResults);
+			impacts.append(r.totalImpactResults);
+			size++;
+		} catch (IOException e) {
+			log.error("failed to write simulation result", e);
+		}
+	}
+
+	/** Returns the number of simulation runs in the store. */
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the results of the flow with the given index (of the flow index
+	 * of the simulation result) of all runs in the store.
+	 */
+	synchronized double[] getFlowResults(int flowIdx) {
+		return read(flows, flowIdx, 0);
+	}
+
+	/**
+	 * Returns the results of the flow with the given index of the runs in the
+	 * store, starting with the given run. Thus, the results of new runs can
+	 * be read without reading the previous runs again.
+	 */
+	synchronized double[] getFlowResults(int flowIdx, int fromRun) {
+		return read(flows, flowIdx, fromRun);
+	}
+
+	/**
+	 * Returns the results of the impact category with the given index (of the
+	 * impact index of the simulation result) of all runs in the store.
+	 */
+	synchronized double[] getImpactResults(int impactIdx) {
+		return read(impacts, impactIdx, 0);
+	}
+
+	/**
+	 * Returns the results of the impact category with the given index of the
+	 * runs in the store, starting with the given run.
+	 */
+	synchronized double[] getImpactResults(int impactIdx, int fromRun) {
+		return read(impacts, impactIdx, fromRun);
+	}
+
+	private double[] read(Table table, int idx, int fromRun) {
+		if (closed)
+			return new double[0];
+		try {
+			return table.column(idx, fromRun);
+		} catch (IOException e) {
+			log.error("failed to read simulation result", e);
+			return new double[0];
+		}
+	}
+
+	/** Closes the files and deletes the store from the disk. */
+	synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		flows.close();
+		impacts.close();
+		Dirs.delete(dir.getPath());
+	}
+
+	private static class Table {
+
+		private final RandomAccessFile file;
+		private final FileChannel channel;
+
+		/** The number of columns; set with the first appended row. */
+		private int width = -1;
+
+		/** The number of iterations of a full block. */
+		private int blockRows;
+
+		/** The current block in row-major order. */
+		private double[] block;
+		private int rows;
+		private int flushedBlocks;
+
+		Table(File file) throws IOException {
+			this.file = new RandomAccessFile(file, "rw");
+			this.channel = this.file.getChannel();
+		}
+
+		void append(double[] row) throws IOException {
+			if (row == null || (width >= 0 && row.length != width))
+				return;
+			if (width < 0) {
+				width = row.length;
+				blockRows = width == 0 ? MAX_BLOCK_ROWS
+						: Math.max(1, Math.min(MAX_BLOCK_ROWS,
+								MAX_BLOCK_VALUES / width));
+				block = new double[blockRows * width];
+			}
+			System.arraycopy(row, 0, block, rows * width, width);
+			rows++;
+			if (rows == blockRows) {
+				flush();
+			}
+		}
+
+		/** Writes the current block transposed to the end of the file. */
+		private void flush() throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(blockRows * 8);
+			DoubleBuffer doubles = buffer.asDoubleBuffer();
+			long pos = (long) flushedBlocks * blockRows * width * 8;
+			for (int col = 0; col < width; col++) {
+				doubles.clear();
+				for (int row = 0; row < blockRows; row++) {
+					doubles.put(block[row * width + col]);
+				}
+				buffer.clear();
+				while (buffer.hasRemaining()) {
+					pos += channel.write(buffer, pos);
+				}
+			}
+			flushedBlocks++;
+			rows = 0;
+		}
+
+		/**
+		 * Reads the values of the given column, starting with the given row.
+		 * Only the blocks that contain these rows are read.
+		 */
+		double[] column(int col, int from) throws IOException {
+			if (width < 0 || col < 0 || col >= width)
+				return new double[0];
+			int flushed = flushedBlocks * blockRows;
+			int start = Math.max(0, from);
+			if (start >= flushed + rows)
+				return new double[0];
+			double[] values = new double[flushed + rows - start];
+			ByteBuffer buffer = ByteBuffer.allocate(blockRows * 8);
+			for (int b = start / blockRows; b < flushedBlocks; b++) {
+				int first = Math.max(start - b * blockRows, 0);
+				int n = blockRows - first;
+				long pos = (((long) b * width + col) * blockRows + first) * 8;
+				buffer.clear();
+				buffer.limit(n * 8);
+				while (buffer.hasRemaining()) {
+					int r = channel.read(buffer, pos + buffer.position());
+					if (r < 0)
+						break;
+				}
+				buffer.flip();
+				buffer.asDoubleBuffer().get(
+						values, b * blockRows + first - start, n);
+			}
+			for (int row = Math.max(0, start - flushed); row < rows; row++) {
+				values[flushed + row - start] = block[row * width + col];
+			}
+			return values;
+		}
+
+		void close() {
+			try {
+				channel.close();
+				file.close();
+			} catch (IOException e) {
+				Logger log = LoggerFactory.getLogger(getClass());
+				log.error("failed to close simulation store", e);
+			}
+		}
+	}
+}
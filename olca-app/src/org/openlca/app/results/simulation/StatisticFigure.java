@@ -8,16 +8,18 @@ import org.eclipse.draw2d.Label;
 import org.eclipse.draw2d.LineBorder;
 import org.eclipse.draw2d.geometry.Point;
 import org.openlca.app.util.Numbers;
-import org.openlca.core.results.Statistics;
-import org.openlca.core.results.Statistics.Histogram;
 
 /**
- * Draws a chart with a frequency distribution and statistic parameters.
+ * Draws a chart with a frequency distribution and statistic parameters. The
+ * statistics are updated incrementally: only the values that were added since
+ * the last update are processed.
  */
 public class StatisticFigure extends Figure {
 
-	private Histogram hist = Statistics.hist(
-			new double[0], 100);
+	private StreamingStatistics hist = new StreamingStatistics(100);
+
+	/** The number of values of the current result that were processed. */
+	private int consumed;
 
 	private int marginLeft = 35;
 	private int marginBottom = 35;
@@ -57,8 +59,36 @@ public class StatisticFigure extends Figure {
 		return valueLabel;
 	}
 
+	/**
+	 * Adds the new values of the given array to the statistics. The values
+	 * that were passed in a previous call are assumed to be already processed.
+	 * If the array is smaller than in the previous call, the statistics are
+	 * reset.
+	 */
 	void setData(double[] values) {
-		hist = Statistics.hist(values, 100);
+		if (values == null || values.length < consumed) {
+			hist = new StreamingStatistics(100);
+			consumed = 0;
+		}
+		if (values != null) {
+			hist.addAll(values, consumed);
+			consumed = values.length;
+		}
+		repaint();
+	}
+
+	/** Adds all values of the given array to the statistics. */
+	void addData(double[] values) {
+		if (values == null || values.length == 0)
+			return;
+		hist.addAll(values, 0);
+		repaint();
+	}
+
+	/** Clears the statistics, e.g. when another result is selected. */
+	void reset() {
+		hist = new StreamingStatistics(100);
+		consumed = 0;
 		repaint();
 	}
 
@@ -82,8 +112,9 @@ public class StatisticFigure extends Figure {
 			for (int block = 1; block <= frequency; block++) {
 				int x = marginLeft + interval * boxSize.x;
 				int y = height - block * boxSize.y;
-				if (y >= marginTop)
-					drawBox(graphics, boxSize, new Point(x, y));
+				if (y < marginTop)
+					break;
+				drawBox(graphics, boxSize, new Point(x, y));
 			}
 		}
 		graphics.setBackgroundColor(ColorConstants.white);
@@ -96,12 +127,12 @@ public class StatisticFigure extends Figure {
 	}
 
 	private void paintParameterLabels() {
-		numberLabel.setText(Integer.toString(hist.statistics.count));
-		setLabelValue(perc5Label, hist.statistics.getPercentileValue(5));
-		setLabelValue(perc95Label, hist.statistics.getPercentileValue(95));
-		setLabelValue(medianLabel, hist.statistics.median);
-		setLabelValue(meanLabel, hist.statistics.mean);
-		setLabelValue(standardDevLabel, hist.statistics.standardDeviation);
+		numberLabel.setText(Integer.toString(hist.count));
+		setLabelValue(perc5Label, hist.getPercentile5());
+		setLabelValue(perc95Label, hist.getPercentile95());
+		setLabelValue(medianLabel, hist.getMedian());
+		setLabelValue(meanLabel, hist.getMean());
+		setLabelValue(standardDevLabel, hist.getStandardDeviation());
 	}
 
 	private void paintChartFrame(Graphics graphics) {
@@ -109,9 +140,9 @@ public class StatisticFigure extends Figure {
 				getSize().width - marginRight, getSize().height - marginBottom);
 		graphics.drawLine(marginLeft, marginTop, marginLeft, getSize().height
 				- marginBottom);
-		graphics.drawText(Numbers.format(hist.statistics.min, 3),
+		graphics.drawText(Numbers.format(hist.getHistogramStart(), 3),
 				marginLeft, getSize().height - marginBottom + 10);
-		graphics.drawText(Numbers.format(hist.statistics.max, 3),
+		graphics.drawText(Numbers.format(hist.getHistogramEnd(), 3),
 				getSize().width - marginRight - 40, getSize().height
 						- marginBottom + 10);
 		graphics.drawText(
@@ -147,10 +178,10 @@ public class StatisticFigure extends Figure {
 
 	private void paintLines(Graphics g, Point box) {
 		g.setForegroundColor(ColorConstants.red);
-		drawLine(g, hist.statistics.getPercentileValue(5), box);
-		drawLine(g, hist.statistics.median, box);
-		drawLine(g, hist.statistics.getPercentileValue(95), box);
-		drawLine(g, hist.statistics.mean, box);
+		drawLine(g, hist.getPercentile5(), box);
+		drawLine(g, hist.getMedian(), box);
+		drawLine(g, hist.getPercentile95(), box);
+		drawLine(g, hist.getMean(), box);
 		g.setForegroundColor(ColorConstants.black);
 	}
 
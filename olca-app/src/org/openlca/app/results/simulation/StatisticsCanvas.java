@@ -16,7 +16,24 @@ public class StatisticsCanvas extends FigureCanvas {
 		setContents(plot);
 	}
 
+	/**
+	 * Updates the statistics with the given values. Only the values that were
+	 * added since the last call are processed; call {@link #reset()} before
+	 * values of another result are set.
+	 */
 	public void setValues(double[] values) {
 		plot.setData(values);
 	}
+
+	/**
+	 * Adds the given values to the statistics, independent from the values
+	 * that were set with {@link #setValues(double[])}.
+	 */
+	public void addValues(double[] values) {
+		plot.addData(values);
+	}
+
+	public void reset() {
+		plot.reset();
+	}
 }
@@ -0,0 +1,279 @@
+package org.openlca.app.results.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of a simulation result that are updated incrementally with each
+ * new value, in constant time and memory per value:
+ * <ul>
+ * <li>mean and variance via Welford's algorithm,</li>
+ * <li>the 5%, 50%, and 95% percentiles via the P² quantile estimator of Jain
+ * and Chlamtac (exact for the first 5 values),</li>
+ * <li>a histogram with a fixed number of bins. When a value is outside of the
+ * current range of the histogram, the range is doubled and adjacent bins are
+ * merged (rebinning), so the bin counts never need to be recomputed from the
+ * raw values.</li>
+ * </ul>
+ */
+class StreamingStatistics {
+
+	final int binCount;
+
+	int count;
+	double min;
+	double max;
+	private double mean;
+	private double m2;
+
+	private final int[] bins;
+	private double binStart;
+	private double binWidth;
+
+	/** The values until the histogram range can be initialized. */
+	private final double[] head = new double[5];
+
+	private final Quantile p5 = new Quantile(0.05);
+	private final Quantile p50 = new Quantile(0.5);
+	private final Quantile p95 = new Quantile(0.95);
+
+	/**
+	 * Creates the statistics with the given number of histogram bins. The
+	 * number of bins must be even (odd numbers are rounded up) so that the
+	 * bins can be merged pairwise when the range is doubled.
+	 */
+	StreamingStatistics(int binCount) {
+		this.binCount = binCount % 2 == 0 ? binCount : binCount + 1;
+		this.bins = new int[this.binCount];
+	}
+
+	void add(double value) {
+		if (Double.isNaN(value))
+			return;
+		count++;
+		if (count == 1) {
+			min = value;
+			max = value;
+		} else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+
+		// Welford
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+
+		p5.add(value);
+		p50.add(value);
+		p95.add(value);
+		addToHistogram(value);
+	}
+
+	void addAll(double[] values, int from) {
+		if (values == null)
+			return;
+		for (int i = from; i < values.length; i++) {
+			add(values[i]);
+		}
+	}
+
+	double getMean() {
+		return mean;
+	}
+
+	double getStandardDeviation() {
+		if (count < 2)
+			return 0;
+		return Math.sqrt(m2 / (count - 1));
+	}
+
+	double getMedian() {
+		return p50.get();
+	}
+
+	double getPercentile5() {
+		return p5.get();
+	}
+
+	double getPercentile95() {
+		return p95.get();
+	}
+
+	int getAbsoluteFrequency(int bin) {
+		if (bin < 0 || bin >= binCount)
+			return 0;
+		return bins[bin];
+	}
+
+	int getMaxAbsoluteFrequency() {
+		int max = 0;
+		for (int f : bins) {
+			max = Math.max(max, f);
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the lower bound of the histogram range. This can be smaller than
+	 * the minimum value when the range was extended.
+	 */
+	double getHistogramStart() {
+		return binWidth <= 0 ? min : binStart;
+	}
+
+	/**
+	 * Returns the upper bound of the histogram range. This can be larger than
+	 * the maximum value when the range was extended.
+	 */
+	double getHistogramEnd() {
+		return binWidth <= 0 ? max : binStart + binWidth * binCount;
+	}
+
+	/** Returns the histogram bin of the given value. */
+	int getInterval(double value) {
+		if (binWidth <= 0)
+			return 0;
+		int bin = (int) ((value - binStart) / binWidth);
+		return Math.max(0, Math.min(binCount - 1, bin));
+	}
+
+	private void addToHistogram(double value) {
+		if (count <= head.length) {
+			head[count - 1] = value;
+			if (count < head.length)
+				return;
+			// initialize the range with the first values
+			binStart = min;
+			binWidth = (max - min) / binCount;
+			if (binWidth <= 0) {
+				binWidth = Math.max(Math.abs(min), 1) * 1e-6;
+				binStart = min - binWidth * binCount / 2;
+			}
+			for (double v : head) {
+				bins[getInterval(v)]++;
+			}
+			return;
+		}
+		while (value < binStart) {
+			growLeft();
+		}
+		while (value > binStart + binWidth * binCount) {
+			growRight();
+		}
+		bins[getInterval(value)]++;
+	}
+
+	/** Doubles the range to the right; bins 2i and 2i+1 are merged to i. */
+	private void growRight() {
+		int half = binCount / 2;
+		for (int i = 0; i < half; i++) {
+			bins[i] = bins[2 * i] + bins[2 * i + 1];
+		}
+		Arrays.fill(bins, half, binCount, 0);
+		binWidth *= 2;
+	}
+
+	/** Doubles the range to the left; the merged bins move to the end. */
+	private void growLeft() {
+		int half = binCount / 2;
+		for (int i = half - 1; i >= 0; i--) {
+			bins[half + i] = bins[2 * i] + bins[2 * i + 1];
+		}
+		Arrays.fill(bins, 0, half, 0);
+		binStart -= binWidth * binCount;
+		binWidth *= 2;
+	}
+
+	/** The P² estimator for a single quantile p. */
+	private static class Quantile {
+
+		private final double p;
+		private final double[] q = new double[5];
+		private final int[] n = new int[5];
+		private final double[] np = new double[5];
+		private final double[] dn = new double[5];
+		private int count;
+
+		Quantile(double p) {
+			this.p = p;
+			dn[0] = 0;
+			dn[1] = p / 2;
+			dn[2] = p;
+			dn[3] = (1 + p) / 2;
+			dn[4] = 1;
+		}
+
+		void add(double x) {
+			if (count < 5) {
+				q[count] = x;
+				count++;
+				if (count == 5) {
+					Arrays.sort(q);
+					for (int i = 0; i < 5; i++) {
+						n[i] = i;
+					}
+					np[0] = 0;
+					np[1] = 2 * p;
+					np[2] = 4 * p;
+					np[3] = 2 + 2 * p;
+					np[4] = 4;
+				}
+				return;
+			}
+			count++;
+			int k;
+			if (x < q[0]) {
+				q[0] = x;
+				k = 0;
+			} else if (x >= q[4]) {
+				q[4] = x;
+				k = 3;
+			} else {
+				k = 0;
+				while (k < 3 && x >= q[k + 1]) {
+					k++;
+				}
+			}
+			for (int i = k + 1; i < 5; i++) {
+				n[i]++;
+			}
+			for (int i = 0; i < 5; i++) {
+				np[i] += dn[i];
+			}
+			for (int i = 1; i < 4; i++) {
+				double d = np[i] - n[i];
+				if ((d >= 1 && n[i + 1] - n[i] > 1)
+						|| (d <= -1 && n[i - 1] - n[i] < -1)) {
+					int s = d >= 0 ? 1 : -1;
+					double qs = parabolic(i, s);
+					if (q[i - 1] < qs && qs < q[i + 1]) {
+						q[i] = qs;
+					} else {
+						q[i] = q[i] + s * (q[i + s] - q[i]) / (n[i + s] - n[i]);
+					}
+					n[i] += s;
+				}
+			}
+		}
+
+		private double parabolic(int i, int s) {
+			return q[i] + s / (double) (n[i + 1] - n[i - 1])
+					* ((n[i] - n[i - 1] + s) * (q[i + 1] - q[i])
+							/ (n[i + 1] - n[i])
+							+ (n[i + 1] - n[i] - s) * (q[i] - q[i - 1])
+									/ (n[i] - n[i - 1]));
+		}
+
+		double get() {
+			if (count == 0)
+				return 0;
+			if (count >= 5)
+				return q[2];
+			// exact percentile of the first values
+			double[] sorted = Arrays.copyOf(q, count);
+			Arrays.sort(sorted);
+			int idx = (int) Math.round(p * (count - 1));
+			return sorted[idx];
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package org.openlca.app.results.snapshots;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.openlca.core.matrix.format.DenseMatrix;
+import org.openlca.core.matrix.format.IMatrix;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-only matrix which values are stored in row-major order in a
+ * memory-mapped region of a result snapshot file. The rows of the result
+ * matrices are the flows and impact categories; thus, a row contains the
+ * contributions of all processes to a flow or impact category and is read
+ * from a contiguous region of the file. As a mapped buffer can hold at most 2
+ * GB, the matrix is mapped in chunks of whole rows. The values are paged in
+ * by the operating system on access and are not held on the Java heap.
+ *
+ * The buffers are unmapped when the matrix is closed so that the file can be
+ * replaced or deleted (on Windows, this is not possible as long as a region
+ * of the file is mapped). The matrix must not be used after it was closed.
+ */
+class MappedMatrix implements IMatrix {
+
+	/** The maximum size of a mapped chunk in bytes (1 GB). */
+	private static final long MAX_CHUNK = 1L << 30;
+
+	private final int rows;
+	private final int columns;
+	private final int chunkRows;
+	private final MappedByteBuffer[] buffers;
+	private final DoubleBuffer[] chunks;
+	private volatile boolean closed;
+
+	private MappedMatrix(int rows, int columns, MappedByteBuffer[] buffers,
+			int chunkRows) {
+		this.rows = rows;
+		this.columns = columns;
+		this.buffers = buffers;
+		this.chunkRows = chunkRows;
+		this.chunks = new DoubleBuffer[buffers.length];
+		for (int i = 0; i < buffers.length; i++) {
+			chunks[i] = buffers[i].asDoubleBuffer();
+		}
+	}
+
+	/**
+	 * Maps the matrix with the given dimensions that starts at the given
+	 * position of the file.
+	 */
+	static MappedMatrix map(FileChannel channel, long offset, int rows,
+			int columns) throws IOException {
+		long rowBytes = Math.max(8L, (long) columns * 8);
+		int chunkRows = (int) Math.max(1, MAX_CHUNK / rowBytes);
+		int chunkCount = rows == 0 ? 0
+				: (rows + chunkRows - 1) / chunkRows;
+		MappedByteBuffer[] buffers = new MappedByteBuffer[chunkCount];
+		for (int i = 0; i < chunkCount; i++) {
+			int first = i * chunkRows;
+			int n = Math.min(chunkRows, rows - first);
+			long pos = offset + (long) first * columns * 8;
+			buffers[i] = channel.map(
+					MapMode.READ_ONLY, pos, (long) n * columns * 8);
+		}
+		return new MappedMatrix(rows, columns, buffers, chunkRows);
+	}
+
+	@Override
+	public int rows() {
+		return rows;
+	}
+
+	@Override
+	public int columns() {
+		return columns;
+	}
+
+	@Override
+	public double get(int row, int col) {
+		checkOpen();
+		DoubleBuffer chunk = chunks[row / chunkRows];
+		return chunk.get((row % chunkRows) * columns + col);
+	}
+
+	@Override
+	public void set(int row, int col, double val) {
+		throw new UnsupportedOperationException(
+				"a result snapshot is read-only");
+	}
+
+	@Override
+	public double[] getRow(int row) {
+		checkOpen();
+		double[] values = new double[columns];
+		DoubleBuffer chunk = chunks[row / chunkRows].duplicate();
+		chunk.position((row % chunkRows) * columns);
+		chunk.get(values);
+		return values;
+	}
+
+	@Override
+	public double[] getColumn(int col) {
+		double[] values = new double[rows];
+		for (int row = 0; row < rows; row++) {
+			values[row] = get(row, col);
+		}
+		return values;
+	}
+
+	/** Returns a mutable copy of this matrix on the heap. */
+	@Override
+	public IMatrix copy() {
+		DenseMatrix copy = new DenseMatrix(rows, columns);
+		for (int row = 0; row < rows; row++) {
+			double[] values = getRow(row);
+			for (int col = 0; col < columns; col++) {
+				copy.set(row, col, values[col]);
+			}
+		}
+		return copy;
+	}
+
+	/** Unmaps the buffers of this matrix. */
+	void close() {
+		if (closed)
+			return;
+		closed = true;
+		for (int i = 0; i < buffers.length; i++) {
+			chunks[i] = null;
+			unmap(buffers[i]);
+		}
+	}
+
+	private void checkOpen() {
+		if (closed)
+			throw new IllegalStateException("the result snapshot is closed");
+	}
+
+	/**
+	 * There is no public API for unmapping a buffer before it is garbage
+	 * collected. Thus, we call the cleaner of the buffer via reflection: with
+	 * `Unsafe.invokeCleaner` on Java 9+ and the internal `cleaner()` method
+	 * of the buffer on Java 8.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		if (buffer == null)
+			return;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = null;
+			try {
+				invokeCleaner = unsafeClass.getMethod(
+						"invokeCleaner", ByteBuffer.class);
+			} catch (NoSuchMethodException e) {
+				// Java 8
+			}
+			if (invokeCleaner != null) {
+				Field field = unsafeClass.getDeclaredField("theUnsafe");
+				field.setAccessible(true);
+				invokeCleaner.invoke(field.get(null), buffer);
+				return;
+			}
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(MappedMatrix.class);
+			log.warn("failed to unmap buffer; it is released when it is"
+					+ " garbage collected", e);
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package org.openlca.app.results.snapshots;
+
+import java.io.File;
+
+import org.eclipse.jface.action.Action;
+import org.openlca.app.App;
+import org.openlca.app.M;
+import org.openlca.app.components.FileChooser;
+import org.openlca.app.db.Database;
+import org.openlca.app.editors.Editors;
+import org.openlca.app.rcp.images.Icon;
+import org.openlca.app.results.ResultEditorInput;
+import org.openlca.app.results.analysis.AnalyzeEditor;
+import org.openlca.app.results.quick.QuickResultEditor;
+import org.openlca.app.util.MsgBox;
+import org.openlca.core.math.CalculationType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens a result that was saved with the {@link SaveResultAction}. The matrices
+ * of the result are memory-mapped from the file so that the result editor is
+ * opened without a new calculation.
+ */
+public class OpenResultAction extends Action {
+
+	public OpenResultAction() {
+		setImageDescriptor(Icon.FOLDER_OPEN.descriptor());
+		setText(M.OpenResult);
+		setToolTipText(M.OpenResult);
+	}
+
+	@Override
+	public void run() {
+		if (Database.get() == null) {
+			MsgBox.error(M.NoDatabaseOpened, M.OpenTheDatabaseOfTheResult);
+			return;
+		}
+		File file = FileChooser.open("*." + ResultSnapshot.EXTENSION);
+		if (file == null)
+			return;
+		String[] error = new String[1];
+		ResultSnapshot snapshot = App.exec(M.OpenResult, () -> {
+			try {
+				return ResultSnapshot.open(file);
+			} catch (Exception e) {
+				Logger log = LoggerFactory.getLogger(getClass());
+				log.error("failed to open result " + file, e);
+				error[0] = e.getMessage();
+				return null;
+			}
+		});
+		if (snapshot == null) {
+			MsgBox.error(M.FailedToOpenResult,
+					error[0] != null ? error[0] : file.getName());
+			return;
+		}
+		ResultEditorInput input = ResultEditorInput
+				.create(snapshot.setup, snapshot.result)
+				.with(snapshot);
+		String editor = snapshot.setup.type == CalculationType.UPSTREAM_ANALYSIS
+				? AnalyzeEditor.ID
+				: QuickResultEditor.ID;
+		Editors.open(input, editor);
+	}
+
+}
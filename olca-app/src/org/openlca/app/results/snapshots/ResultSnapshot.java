@@ -0,0 +1,569 @@
+package org.openlca.app.results.snapshots;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openlca.app.db.Cache;
+import org.openlca.app.db.Database;
+import org.openlca.core.database.EntityCache;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ProductSystemDao;
+import org.openlca.core.math.CalculationSetup;
+import org.openlca.core.math.CalculationType;
+import org.openlca.core.matrix.DIndex;
+import org.openlca.core.matrix.FlowIndex;
+import org.openlca.core.matrix.ProcessProduct;
+import org.openlca.core.matrix.TechIndex;
+import org.openlca.core.matrix.format.HashPointMatrix;
+import org.openlca.core.matrix.format.IMatrix;
+import org.openlca.core.model.AllocationMethod;
+import org.openlca.core.model.FlowPropertyFactor;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.Unit;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
+import org.openlca.core.model.descriptors.ImpactMethodDescriptor;
+import org.openlca.core.model.descriptors.NwSetDescriptor;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
+import org.openlca.core.model.descriptors.ProductSystemDescriptor;
+import org.openlca.core.results.ContributionResult;
+import org.openlca.core.results.FullResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A result snapshot stores a contribution or full result of a product system
+ * in a binary file. The file starts with a header that contains the
+ * calculation setup, the matrix indices (as database IDs), the result
+ * vectors, and the technology matrix in a sparse format. The other matrix
+ * blocks of the result follow in row-major order and are memory-mapped when
+ * a snapshot is opened (see {@link MappedMatrix}), so that the heap usage of
+ * an opened result is only the size of its indices, vectors, and the non-zero
+ * values of the technology matrix.
+ *
+ * A snapshot is only written when the user saves a result; it can then be
+ * opened again later (also after a restart) in the same database. The
+ * matrices are unmapped when the snapshot is disposed.
+ */
+public final class ResultSnapshot {
+
+	public static final String EXTENSION = "olcr";
+
+	private static final int MAGIC = 0x4F4C4352;
+	private static final int VERSION = 2;
+
+	private static final byte DIRECT_FLOWS = 1;
+	private static final byte DIRECT_IMPACTS = 2;
+	private static final byte IMPACT_FACTORS = 3;
+	private static final byte UPSTREAM_FLOWS = 5;
+	private static final byte UPSTREAM_IMPACTS = 6;
+
+	public final File file;
+	public final CalculationSetup setup;
+	public final ContributionResult result;
+
+	/** The mapped matrices of the result. */
+	private final List<MappedMatrix> matrices;
+
+	private ResultSnapshot(File file, CalculationSetup setup,
+			ContributionResult result, List<MappedMatrix> matrices) {
+		this.file = file;
+		this.setup = setup;
+		this.result = result;
+		this.matrices = matrices;
+	}
+
+	/**
+	 * Opens a saved snapshot. The product system and the other entities of
+	 * the result are loaded from the currently active database.
+	 */
+	public static ResultSnapshot open(File file) throws IOException {
+		return read(file);
+	}
+
+	/**
+	 * Unmaps the matrices of the snapshot. The result of the snapshot cannot
+	 * be used anymore after this.
+	 */
+	public void dispose() {
+		for (MappedMatrix m : matrices) {
+			m.close();
+		}
+	}
+
+	/**
+	 * Deletes the temporary snapshot files of earlier versions that were not
+	 * deleted when the application was closed (e.g. because a file was still
+	 * mapped on Windows). This should be called at startup before any result
+	 * is opened.
+	 */
+	public static void deleteStaleFiles() {
+		File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(
+				tmpDir.toPath(), "olca_result*." + EXTENSION)) {
+			for (Path file : files) {
+				Files.deleteIfExists(file);
+			}
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(ResultSnapshot.class);
+			log.warn("failed to delete stale result snapshots", e);
+		}
+	}
+
+	/**
+	 * Writes the given setup and result into the given file. The data are
+	 * first written into a temporary file in the same folder which then
+	 * replaces the given file. Thus, an existing file is never truncated
+	 * while it is memory-mapped by an open snapshot (e.g. when the result of
+	 * an opened snapshot is saved into the same file again).
+	 */
+	public static void write(File file, CalculationSetup setup,
+			ContributionResult result) throws IOException {
+		File dir = file.getAbsoluteFile().getParentFile();
+		File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			writeTo(tmp, setup, result);
+			try {
+				Files.move(tmp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp.toPath());
+		}
+	}
+
+	private static void writeTo(File file, CalculationSetup setup,
+			ContributionResult result) throws IOException {
+		List<Byte> ids = new ArrayList<>();
+		List<IMatrix> matrices = new ArrayList<>();
+		addMatrix(ids, matrices, DIRECT_FLOWS, result.directFlowResults);
+		addMatrix(ids, matrices, DIRECT_IMPACTS, result.directImpactResults);
+		addMatrix(ids, matrices, IMPACT_FACTORS, result.impactFactors);
+		if (result instanceof FullResult) {
+			FullResult full = (FullResult) result;
+			addMatrix(ids, matrices, UPSTREAM_FLOWS, full.upstreamFlowResults);
+			addMatrix(ids, matrices, UPSTREAM_IMPACTS, full.upstreamImpactResults);
+		}
+
+		// the header with the matrix table; the matrix blocks are aligned
+		// to 8 bytes so that they can be mapped as double buffers
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeHeader(out, setup, result);
+		int tableSize = 4 + matrices.size() * (1 + 4 + 4 + 8);
+		long offset = align(out.size() + tableSize);
+		out.writeInt(matrices.size());
+		for (int i = 0; i < matrices.size(); i++) {
+			IMatrix m = matrices.get(i);
+			out.writeByte(ids.get(i));
+			out.writeInt(m.rows());
+			out.writeInt(m.columns());
+			out.writeLong(offset);
+			offset = align(offset + (long) m.rows() * m.columns() * 8);
+		}
+		out.flush();
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				FileChannel channel = raf.getChannel()) {
+			channel.truncate(0);
+			long pos = 0;
+			ByteBuffer header = ByteBuffer.wrap(bytes.toByteArray());
+			while (header.hasRemaining()) {
+				pos += channel.write(header, pos);
+			}
+			pos = align(pos);
+			for (IMatrix m : matrices) {
+				ByteBuffer row = ByteBuffer.allocate(m.columns() * 8);
+				for (int i = 0; i < m.rows(); i++) {
+					row.clear();
+					row.asDoubleBuffer().put(m.getRow(i));
+					while (row.hasRemaining()) {
+						pos += channel.write(row, pos);
+					}
+				}
+				pos = align(pos);
+			}
+		}
+	}
+
+	private static void addMatrix(List<Byte> ids, List<IMatrix> matrices,
+			byte id, IMatrix matrix) {
+		if (matrix == null)
+			return;
+		ids.add(id);
+		matrices.add(matrix);
+	}
+
+	private static long align(long pos) {
+		return (pos + 7) & ~7L;
+	}
+
+	private static void writeHeader(DataOutputStream out,
+			CalculationSetup setup, ContributionResult result)
+			throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		IDatabase db = Database.get();
+		out.writeUTF(db == null ? "" : db.getName());
+
+		// calculation setup
+		out.writeLong(setup.productSystem.id);
+		out.writeUTF(setup.type == null ? "" : setup.type.name());
+		out.writeLong(setup.impactMethod == null ? 0 : setup.impactMethod.id);
+		out.writeLong(setup.nwSet == null ? 0 : setup.nwSet.id);
+		out.writeUTF(setup.allocationMethod == null
+				? "" : setup.allocationMethod.name());
+		out.writeBoolean(setup.withCosts);
+		out.writeDouble(setup.getAmount());
+		out.writeLong(setup.getUnit() == null ? 0 : setup.getUnit().id);
+		FlowPropertyFactor factor = setup.getFlowPropertyFactor();
+		out.writeLong(factor == null ? 0 : factor.id);
+
+		// indices
+		TechIndex techIndex = result.techIndex;
+		out.writeInt(techIndex.size());
+		out.writeDouble(techIndex.getDemand());
+		for (int i = 0; i < techIndex.size(); i++) {
+			ProcessProduct p = techIndex.getProviderAt(i);
+			out.writeLong(p.process.id);
+			out.writeBoolean(p.process.type == ModelType.PRODUCT_SYSTEM);
+			out.writeLong(p.flow.id);
+		}
+		FlowIndex flowIndex = result.flowIndex;
+		if (flowIndex == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(flowIndex.size());
+			for (int i = 0; i < flowIndex.size(); i++) {
+				FlowDescriptor flow = flowIndex.at(i);
+				out.writeLong(flow.id);
+				out.writeBoolean(flowIndex.isInput(flow));
+			}
+		}
+		DIndex<ImpactCategoryDescriptor> impactIndex = result.impactIndex;
+		if (impactIndex == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(impactIndex.size());
+			for (int i = 0; i < impactIndex.size(); i++) {
+				out.writeLong(impactIndex.at(i).id);
+			}
+		}
+
+		// vectors
+		writeVector(out, result.scalingVector);
+		writeVector(out, result.totalRequirements);
+		writeVector(out, result.totalFlowResults);
+		writeVector(out, result.totalImpactResults);
+		writeVector(out, result.directCostResults);
+		writeVector(out, result instanceof FullResult
+				? ((FullResult) result).upstreamCostResults
+				: null);
+		out.writeDouble(result.totalCosts);
+
+		// the technology matrix is very sparse; it is stored with its
+		// non-zero values per column and is loaded on the heap
+		writeSparse(out, result instanceof FullResult
+				? ((FullResult) result).techMatrix
+				: null);
+	}
+
+	private static void writeSparse(DataOutputStream out, IMatrix m)
+			throws IOException {
+		if (m == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(m.rows());
+		out.writeInt(m.columns());
+		for (int col = 0; col < m.columns(); col++) {
+			double[] values = m.getColumn(col);
+			int count = 0;
+			for (double v : values) {
+				if (v != 0) {
+					count++;
+				}
+			}
+			out.writeInt(count);
+			for (int row = 0; row < values.length; row++) {
+				if (values[row] == 0)
+					continue;
+				out.writeInt(row);
+				out.writeDouble(values[row]);
+			}
+		}
+	}
+
+	private static void writeVector(DataOutputStream out, double[] v)
+			throws IOException {
+		if (v == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(v.length);
+		for (double d : v) {
+			out.writeDouble(d);
+		}
+	}
+
+	private static ResultSnapshot read(File file) throws IOException {
+		IDatabase db = Database.get();
+		EntityCache cache = Cache.getEntityCache();
+		if (db == null || cache == null)
+			throw new IOException("no database is activated");
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+				RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " is not a result snapshot");
+			if (in.readInt() != VERSION)
+				throw new IOException("unsupported snapshot version");
+			String dbName = in.readUTF();
+			if (!dbName.equals(db.getName()))
+				throw new IOException("the result was calculated in database "
+						+ dbName + " but the active database is " + db.getName());
+
+			CalculationSetup setup = readSetup(in, db, cache);
+			ContributionResult result = setup.type == CalculationType.UPSTREAM_ANALYSIS
+					? new FullResult()
+					: new ContributionResult();
+			readIndices(in, cache, result);
+
+			result.scalingVector = readVector(in);
+			result.totalRequirements = readVector(in);
+			result.totalFlowResults = readVector(in);
+			result.totalImpactResults = readVector(in);
+			result.directCostResults = readVector(in);
+			double[] upstreamCosts = readVector(in);
+			result.totalCosts = in.readDouble();
+			IMatrix techMatrix = readSparse(in);
+
+			List<MappedMatrix> matrices = new ArrayList<>();
+			try {
+				int matrixCount = in.readInt();
+				for (int i = 0; i < matrixCount; i++) {
+					byte id = in.readByte();
+					int rows = in.readInt();
+					int columns = in.readInt();
+					long offset = in.readLong();
+					MappedMatrix m = MappedMatrix.map(
+							channel, offset, rows, columns);
+					matrices.add(m);
+					setMatrix(result, id, m);
+				}
+			} catch (IOException e) {
+				for (MappedMatrix m : matrices) {
+					m.close();
+				}
+				throw e;
+			}
+			if (result instanceof FullResult) {
+				FullResult full = (FullResult) result;
+				full.upstreamCostResults = upstreamCosts;
+				full.techMatrix = techMatrix;
+			}
+			return new ResultSnapshot(file, setup, result, matrices);
+		}
+	}
+
+	private static IMatrix readSparse(DataInputStream in) throws IOException {
+		int rows = in.readInt();
+		if (rows < 0)
+			return null;
+		int columns = in.readInt();
+		HashPointMatrix m = new HashPointMatrix(rows, columns);
+		for (int col = 0; col < columns; col++) {
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				int row = in.readInt();
+				m.set(row, col, in.readDouble());
+			}
+		}
+		return m;
+	}
+
+	private static CalculationSetup readSetup(DataInputStream in,
+			IDatabase db, EntityCache cache) throws IOException {
+		long systemId = in.readLong();
+		ProductSystem system = new ProductSystemDao(db).getForId(systemId);
+		if (system == null)
+			throw new IOException("the product system of the result "
+					+ "does not exist in the database");
+		String type = in.readUTF();
+		CalculationSetup setup = new CalculationSetup(type.isEmpty()
+				? CalculationType.CONTRIBUTION_ANALYSIS
+				: CalculationType.valueOf(type), system);
+		long methodId = in.readLong();
+		if (methodId != 0) {
+			setup.impactMethod = cache.get(
+					ImpactMethodDescriptor.class, methodId);
+		}
+		long nwSetId = in.readLong();
+		if (nwSetId != 0) {
+			setup.nwSet = cache.get(NwSetDescriptor.class, nwSetId);
+		}
+		String allocation = in.readUTF();
+		if (!allocation.isEmpty()) {
+			setup.allocationMethod = AllocationMethod.valueOf(allocation);
+		}
+		setup.withCosts = in.readBoolean();
+		setup.parameterRedefs.addAll(system.parameterRedefs);
+
+		// reference amount; the unit and flow property factor are searched in
+		// the reference flow of the product system
+		double amount = in.readDouble();
+		long unitId = in.readLong();
+		long factorId = in.readLong();
+		if (system.referenceExchange != null
+				&& system.referenceExchange.flow != null) {
+			for (FlowPropertyFactor f : system.referenceExchange.flow.flowPropertyFactors) {
+				if (f.id != factorId)
+					continue;
+				setup.setFlowPropertyFactor(f);
+				if (f.flowProperty == null || f.flowProperty.unitGroup == null)
+					break;
+				for (Unit unit : f.flowProperty.unitGroup.units) {
+					if (unit.id == unitId) {
+						setup.setUnit(unit);
+						break;
+					}
+				}
+				break;
+			}
+		}
+		setup.setAmount(amount);
+		return setup;
+	}
+
+	private static void readIndices(DataInputStream in, EntityCache cache,
+			ContributionResult result) throws IOException {
+		int techSize = in.readInt();
+		double demand = in.readDouble();
+		TechIndex techIndex = null;
+		for (int i = 0; i < techSize; i++) {
+			long processId = in.readLong();
+			boolean isSystem = in.readBoolean();
+			long flowId = in.readLong();
+			ProcessProduct p = new ProcessProduct();
+			p.process = isSystem
+					? cache.get(ProductSystemDescriptor.class, processId)
+					: cache.get(ProcessDescriptor.class, processId);
+			p.flow = cache.get(FlowDescriptor.class, flowId);
+			check(p.process, p.flow);
+			if (techIndex == null) {
+				techIndex = new TechIndex(p);
+			} else {
+				techIndex.put(p);
+			}
+		}
+		if (techIndex == null)
+			throw new IOException("the result has no reference product");
+		techIndex.setDemand(demand);
+		result.techIndex = techIndex;
+
+		int flowSize = in.readInt();
+		if (flowSize >= 0) {
+			FlowIndex flowIndex = new FlowIndex();
+			for (int i = 0; i < flowSize; i++) {
+				FlowDescriptor flow = cache.get(FlowDescriptor.class, in.readLong());
+				boolean isInput = in.readBoolean();
+				check(flow);
+				if (isInput) {
+					flowIndex.putInput(flow);
+				} else {
+					flowIndex.putOutput(flow);
+				}
+			}
+			result.flowIndex = flowIndex;
+		}
+
+		int impactSize = in.readInt();
+		if (impactSize >= 0) {
+			DIndex<ImpactCategoryDescriptor> impactIndex = new DIndex<>();
+			for (int i = 0; i < impactSize; i++) {
+				ImpactCategoryDescriptor impact = cache.get(
+						ImpactCategoryDescriptor.class, in.readLong());
+				check(impact);
+				impactIndex.put(impact);
+			}
+			result.impactIndex = impactIndex;
+		}
+	}
+
+	/**
+	 * Checks that the entities of the result still exist in the database; the
+	 * indices of the result would not match the matrices otherwise.
+	 */
+	private static void check(CategorizedDescriptor... descriptors)
+			throws IOException {
+		for (CategorizedDescriptor d : descriptors) {
+			if (d == null)
+				throw new IOException("the result contains entities that "
+						+ "do not exist in the database anymore");
+		}
+	}
+
+	private static double[] readVector(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+		double[] v = new double[length];
+		for (int i = 0; i < length; i++) {
+			v[i] = in.readDouble();
+		}
+		return v;
+	}
+
+	private static void setMatrix(ContributionResult result, byte id,
+			IMatrix m) {
+		switch (id) {
+		case DIRECT_FLOWS:
+			result.directFlowResults = m;
+			return;
+		case DIRECT_IMPACTS:
+			result.directImpactResults = m;
+			return;
+		case IMPACT_FACTORS:
+			result.impactFactors = m;
+			return;
+		default:
+			break;
+		}
+		if (!(result instanceof FullResult))
+			return;
+		FullResult full = (FullResult) result;
+		switch (id) {
+		case UPSTREAM_FLOWS:
+			full.upstreamFlowResults = m;
+			break;
+		case UPSTREAM_IMPACTS:
+			full.upstreamImpactResults = m;
+			break;
+		default:
+			break;
+		}
+	}
+
+}
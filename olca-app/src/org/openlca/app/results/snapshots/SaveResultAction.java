@@ -0,0 +1,64 @@
+package org.openlca.app.results.snapshots;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jface.action.Action;
+import org.openlca.app.App;
+import org.openlca.app.M;
+import org.openlca.app.components.FileChooser;
+import org.openlca.app.editors.Editors;
+import org.openlca.app.rcp.images.Icon;
+import org.openlca.app.results.IResultEditor;
+import org.openlca.app.util.MsgBox;
+import org.openlca.app.util.Popup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Saves the result of the active result editor as snapshot file which can be
+ * opened again with the {@link OpenResultAction}.
+ */
+public class SaveResultAction extends Action {
+
+	private Logger log = LoggerFactory.getLogger(getClass());
+
+	public SaveResultAction() {
+		setImageDescriptor(Icon.SAVE.descriptor());
+		setText(M.SaveResult);
+		setToolTipText(M.SaveResult);
+	}
+
+	@Override
+	public void run() {
+		IResultEditor<?> editor = Editors.getActive();
+		if (editor == null) {
+			log.error("unexpected error: the result editor is not active");
+			return;
+		}
+		String fileName = editor.getSetup().productSystem.name;
+		fileName = fileName.replaceAll("[^A-Za-z0-9]", "_")
+				+ "." + ResultSnapshot.EXTENSION;
+		File file = FileChooser.forExport(
+				"*." + ResultSnapshot.EXTENSION, fileName);
+		if (file == null)
+			return;
+		AtomicBoolean success = new AtomicBoolean(false);
+		App.run(M.SaveResult, () -> {
+			try {
+				ResultSnapshot.write(
+						file, editor.getSetup(), editor.getResult());
+				success.set(true);
+			} catch (Exception e) {
+				log.error("failed to save result in " + file, e);
+			}
+		}, () -> {
+			if (success.get()) {
+				Popup.info(M.ResultSaved);
+			} else {
+				MsgBox.error(M.FailedToSaveResultIn + " " + file.getName());
+			}
+		});
+	}
+
+}
@@ -3,8 +3,13 @@ package org.openlca.app.search;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.openlca.app.db.Database;
 import org.openlca.app.navigation.ModelTypeComparison;
 import org.openlca.app.util.Labels;
 import org.openlca.core.database.Daos;
@@ -43,6 +48,12 @@ class Search implements Runnable {
 		if (rawTerm.isEmpty())
 			return;
 		log.trace("run search with term {}", rawTerm);
+		SearchIndex index = Database.getSearchIndex();
+		if (index != null && index.isReady()) {
+			fetchIndexResults(index);
+			log.trace("{} results fetched from search index", result.size());
+			return;
+		}
 		ModelType[] types = typeFilter == null ? getSearchTypes()
 				: new ModelType[] { typeFilter };
 		for (ModelType type : types) {
@@ -63,6 +74,36 @@ class Search implements Runnable {
 		return Daos.root(database, type).getDescriptors();
 	}
 
+	/**
+	 * Loads the descriptors of the index hits in one query per model type and
+	 * adds them in the ranking order of the index to the result.
+	 */
+	private void fetchIndexResults(SearchIndex index) {
+		List<SearchIndex.Hit> hits = index.find(rawTerm, typeFilter);
+		if (hits.isEmpty())
+			return;
+		Map<ModelType, Set<Long>> ids = new HashMap<>();
+		for (SearchIndex.Hit hit : hits) {
+			ids.computeIfAbsent(hit.type, t -> new HashSet<>()).add(hit.id);
+		}
+		Map<String, BaseDescriptor> descriptors = new HashMap<>();
+		for (Map.Entry<ModelType, Set<Long>> e : ids.entrySet()) {
+			for (Object obj : Daos.root(database, e.getKey())
+					.getDescriptors(e.getValue())) {
+				if (!(obj instanceof BaseDescriptor))
+					continue;
+				BaseDescriptor d = (BaseDescriptor) obj;
+				descriptors.put(e.getKey().name() + d.id, d);
+			}
+		}
+		for (SearchIndex.Hit hit : hits) {
+			BaseDescriptor d = descriptors.get(hit.type.name() + hit.id);
+			if (d != null) {
+				result.add(d);
+			}
+		}
+	}
+
 	private void fetchResults(List<?> descriptors) {
 		for (Object obj : descriptors) {
 			if (!(obj instanceof BaseDescriptor))
@@ -0,0 +1,708 @@
+package org.openlca.app.search;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.openlca.app.navigation.ModelTypeComparison;
+import org.openlca.core.database.CategoryDao;
+import org.openlca.core.database.Daos;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.database.ParameterDao;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.openlca.core.model.descriptors.CategoryDescriptor;
+import org.openlca.core.model.descriptors.FlowDescriptor;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
+import org.openlca.util.Dirs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent full-text index of the models in a database. The index is
+ * stored in the folder <code>search</code> of the file storage location of the
+ * database and contains the tokens of the names, synonyms, CAS numbers,
+ * formulas, categories, locations, and reference IDs of the models. It is
+ * built once in the background and then updated incrementally via the
+ * database listener. Changes that occur while the index is (re-)built are
+ * queued and applied when the index is ready. As the index is just a cache,
+ * an index file that cannot be opened is deleted and built again.
+ */
+public class SearchIndex {
+
+	private static final int VERSION = 1;
+	private static final char SEP = '\u0000';
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase database;
+	private final File file;
+	private DB db;
+
+	/** Maps the keys of the indexed models to their entries. */
+	private Map<String, Entry> entries;
+
+	/** The categories of the database: ID -> [name, parent ID]. */
+	private Map<Long, Object[]> categories;
+
+	/** Postings in the format: token SEP field key. */
+	private NavigableSet<String> postings;
+
+	/** The vocabulary of the index; used for fuzzy matching. */
+	private NavigableSet<String> tokens;
+
+	private volatile boolean ready;
+
+	/** Set when the index is closed; this also cancels a running rebuild. */
+	private volatile boolean closed;
+
+	/** The changes that are not yet applied to the index. */
+	private final ConcurrentLinkedQueue<Change> pending
+			= new ConcurrentLinkedQueue<>();
+
+	private SearchIndex(IDatabase database, File file) {
+		this.database = database;
+		this.file = file;
+		open();
+	}
+
+	public static SearchIndex getFor(IDatabase database) {
+		File dir = new File(database.getFileStorageLocation(), "search");
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		return new SearchIndex(database, new File(dir, "index"));
+	}
+
+	/**
+	 * Opens the index file. If this fails (e.g. because the file is
+	 * corrupt), the index files are deleted and a new, empty index is
+	 * created which is then not ready until it is rebuilt.
+	 */
+	private void open() {
+		try {
+			openFile();
+		} catch (Exception e) {
+			log.warn("failed to open search index " + file
+					+ "; the index is deleted and rebuilt", e);
+			delete();
+			try {
+				openFile();
+			} catch (Exception ex) {
+				log.error("failed to create search index " + file, ex);
+				db = null;
+				ready = false;
+			}
+		}
+	}
+
+	private void openFile() {
+		db = DBMaker.fileDB(file).closeOnJvmShutdown().make();
+		entries = db.hashMap("entries");
+		categories = db.hashMap("categories");
+		postings = db.treeSet("postings");
+		tokens = db.treeSet("tokens");
+		ready = db.atomicInteger("version").get() == VERSION;
+	}
+
+	/** Closes the index file (if it is open) and deletes the index folder. */
+	private void delete() {
+		ready = false;
+		if (db != null && !db.isClosed()) {
+			try {
+				db.close();
+			} catch (Exception e) {
+				log.warn("failed to close search index " + file, e);
+			}
+		}
+		db = null;
+		Dirs.delete(file.getParentFile().toPath());
+		file.getParentFile().mkdirs();
+	}
+
+	/**
+	 * Returns true if the index was completely built and can be used for
+	 * searching.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Closes the index. A running rebuild is canceled; the index is then not
+	 * ready and is built again when the database is activated the next time.
+	 */
+	public void close() {
+		closed = true;
+		ready = false;
+		pending.clear();
+		// the rebuild checks the closed flag regularly and releases the
+		// lock when it is canceled
+		synchronized (this) {
+			if (db == null || db.isClosed())
+				return;
+			db.commit();
+			db.close();
+		}
+	}
+
+	/**
+	 * Deletes the index and builds it from scratch. This can take some time
+	 * for large databases and should be called in a background job. The
+	 * rebuild is canceled when the index is closed. Changes that occur during
+	 * the rebuild are applied when it is finished.
+	 */
+	public synchronized void rebuild() {
+		if (closed)
+			return;
+		log.trace("rebuild search index for database {}", database.getName());
+		long start = System.currentTimeMillis();
+		delete();
+		open();
+		if (db == null)
+			return;
+
+		for (CategoryDescriptor c : new CategoryDao(database).getDescriptors()) {
+			categories.put(c.id, new Object[] { c.name, c.category });
+		}
+		Map<Long, String[]> flowInfos = flowInfos(null);
+		Map<Long, String> locations = locationCodes(null);
+		int count = 0;
+		for (ModelType type : ModelTypeComparison.getOrderedTypes()) {
+			if (closed) {
+				log.trace("rebuild of search index canceled");
+				return;
+			}
+			List<?> descriptors = type == ModelType.PARAMETER
+					? new ParameterDao(database).getGlobalDescriptors()
+					: Daos.root(database, type).getDescriptors();
+			for (Object obj : descriptors) {
+				if (closed) {
+					log.trace("rebuild of search index canceled");
+					return;
+				}
+				if (!(obj instanceof BaseDescriptor))
+					continue;
+				BaseDescriptor d = (BaseDescriptor) obj;
+				Entry e = entryOf(d, flowInfos.get(d.id),
+						locations.get(locationOf(d)));
+				index(key(d), e);
+				count++;
+				if (count % 5000 == 0) {
+					db.commit();
+				}
+			}
+		}
+		db.atomicInteger("version").set(VERSION);
+		db.commit();
+		ready = true;
+		log.trace("indexed {} models in {} ms", entries.size(),
+				System.currentTimeMillis() - start);
+		applyPending();
+	}
+
+	/**
+	 * Adds or updates the given model in the index.
+	 */
+	public void put(BaseDescriptor d) {
+		update(Collections.singletonList(d), Collections.emptyList());
+	}
+
+	/**
+	 * Removes the given model from the index.
+	 */
+	public void remove(BaseDescriptor d) {
+		update(Collections.emptyList(), Collections.singletonList(d));
+	}
+
+	/**
+	 * Adds or updates the models in the first list and removes the models in
+	 * the second list from the index with a single commit. If the index is
+	 * not ready (e.g. while it is rebuilt), the changes are queued and
+	 * applied when it is ready.
+	 */
+	public void update(List<BaseDescriptor> put,
+			List<BaseDescriptor> removed) {
+		if (closed)
+			return;
+		pending.add(new Change(put, removed));
+		// the ready flag is checked after the changes were queued so that
+		// they are applied by this call or at the end of a running rebuild
+		if (ready) {
+			applyPending();
+		}
+	}
+
+	private synchronized void applyPending() {
+		if (!ready || db == null || db.isClosed())
+			return;
+		boolean changed = false;
+		Change next;
+		while ((next = pending.poll()) != null) {
+			for (BaseDescriptor d : next.put) {
+				putEntry(d);
+			}
+			for (BaseDescriptor d : next.removed) {
+				removeEntry(d);
+			}
+			changed = true;
+		}
+		if (changed) {
+			db.commit();
+		}
+	}
+
+	private void putEntry(BaseDescriptor d) {
+		if (d == null || d.type == null)
+			return;
+		if (d instanceof CategoryDescriptor) {
+			putCategory((CategoryDescriptor) d);
+		}
+		String[] flowInfo = null;
+		if (d instanceof FlowDescriptor) {
+			flowInfo = flowInfos(d.id).get(d.id);
+		}
+		Long locationId = locationOf(d);
+		String location = null;
+		if (locationId != null) {
+			location = locationCodes(locationId).get(locationId);
+		}
+		String key = key(d);
+		unindex(key);
+		index(key, entryOf(d, flowInfo, location));
+	}
+
+	private void removeEntry(BaseDescriptor d) {
+		if (d == null || d.type == null)
+			return;
+		unindex(key(d));
+		if (d.type == ModelType.CATEGORY) {
+			categories.remove(d.id);
+		}
+	}
+
+	/**
+	 * Updates the category tree of the index. If the name or parent of the
+	 * category changed, the models in that category (and its sub-categories)
+	 * are re-indexed with the new category path.
+	 */
+	private void putCategory(CategoryDescriptor c) {
+		Object[] old = categories.get(c.id);
+		categories.put(c.id, new Object[] { c.name, c.category });
+		if (old == null
+				|| (Objects.equals(old[0], c.name)
+						&& Objects.equals(old[1], c.category)))
+			return;
+		List<String> affected = new ArrayList<>();
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			long[] path = e.getValue().categoryPath;
+			if (path == null)
+				continue;
+			for (long id : path) {
+				if (id == c.id) {
+					affected.add(e.getKey());
+					break;
+				}
+			}
+		}
+		for (String key : affected) {
+			Entry e = entries.get(key);
+			unindex(key);
+			e.categoryPath = categoryPath(e.category);
+			index(key, e);
+		}
+	}
+
+	private void index(String key, Entry e) {
+		Set<String> ps = new HashSet<>();
+		addPostings(ps, Field.NAME, key, e.name);
+		addPostings(ps, Field.SYNONYM, key, e.synonyms);
+		addPostings(ps, Field.LOCATION, key, e.location);
+		if (e.categoryPath != null) {
+			for (long catId : e.categoryPath) {
+				Object[] cat = categories.get(catId);
+				if (cat != null) {
+					addPostings(ps, Field.CATEGORY, key, (String) cat[0]);
+				}
+			}
+		}
+		addPostings(ps, Field.CODE, key, e.formula);
+		addCode(ps, key, e.cas);
+		addCode(ps, key, e.refId);
+		e.postings = ps.toArray(new String[ps.size()]);
+		postings.addAll(ps);
+		entries.put(key, e);
+	}
+
+	private void unindex(String key) {
+		Entry old = entries.remove(key);
+		if (old == null || old.postings == null)
+			return;
+		for (String p : old.postings) {
+			postings.remove(p);
+		}
+		// remove the tokens from the vocabulary that are not used anymore
+		for (String p : old.postings) {
+			int sep = p.indexOf(SEP);
+			if (sep < 0)
+				continue;
+			String token = p.substring(0, sep + 1);
+			if (postings.subSet(token, true, token + '\uffff', false)
+					.isEmpty()) {
+				tokens.remove(p.substring(0, sep));
+			}
+		}
+	}
+
+	private void addPostings(Set<String> ps, Field field, String key,
+			String text) {
+		for (String token : tokenize(text)) {
+			ps.add(token + SEP + field.code + key);
+			tokens.add(token);
+		}
+	}
+
+	/** Codes like CAS numbers and UUIDs are also indexed as a whole. */
+	private void addCode(Set<String> ps, String key, String code) {
+		if (code == null)
+			return;
+		String c = code.trim().toLowerCase();
+		if (c.isEmpty())
+			return;
+		ps.add(c + SEP + Field.CODE.code + key);
+		addPostings(ps, Field.CODE, key, c);
+	}
+
+	/**
+	 * Searches the index for the given query. All terms of the query must
+	 * match a token of a model (as exact, prefix, or fuzzy match). The
+	 * returned hits are ranked by their score in descending order.
+	 */
+	public synchronized List<Hit> find(String query, ModelType typeFilter) {
+		List<Hit> hits = new ArrayList<>();
+		if (!ready || query == null)
+			return hits;
+		String raw = query.trim().toLowerCase();
+		List<String> terms = tokenize(raw);
+		if (terms.isEmpty())
+			return hits;
+
+		// first, a direct match of a complete code (UUID, CAS number)
+		Map<String, Double> scores = new HashMap<>();
+		if (!raw.contains(" ") && terms.size() > 1) {
+			Map<String, Double> codeScores = new HashMap<>();
+			collect(raw, codeScores, true);
+			scores.putAll(codeScores);
+		}
+
+		Map<String, Double> termScores = null;
+		for (String term : terms) {
+			Map<String, Double> next = new HashMap<>();
+			collect(term, next, false);
+			if (next.isEmpty() && term.length() > 3) {
+				collectFuzzy(term, next);
+			}
+			if (termScores == null) {
+				termScores = next;
+				continue;
+			}
+			Map<String, Double> intersection = new HashMap<>();
+			for (Map.Entry<String, Double> e : next.entrySet()) {
+				Double score = termScores.get(e.getKey());
+				if (score != null) {
+					intersection.put(e.getKey(), score + e.getValue());
+				}
+			}
+			termScores = intersection;
+			if (termScores.isEmpty())
+				break;
+		}
+		if (termScores != null) {
+			for (Map.Entry<String, Double> e : termScores.entrySet()) {
+				scores.merge(e.getKey(), e.getValue(), Math::max);
+			}
+		}
+
+		for (Map.Entry<String, Double> e : scores.entrySet()) {
+			Entry entry = entries.get(e.getKey());
+			if (entry == null)
+				continue;
+			if (typeFilter != null && entry.type != typeFilter)
+				continue;
+			hits.add(new Hit(entry.type, entry.id, entry.name, e.getValue()));
+		}
+		hits.sort((h1, h2) -> {
+			int c = Double.compare(h2.score, h1.score);
+			if (c != 0)
+				return c;
+			return String.CASE_INSENSITIVE_ORDER.compare(
+					h1.name == null ? "" : h1.name,
+					h2.name == null ? "" : h2.name);
+		});
+		return hits;
+	}
+
+	/**
+	 * Collects the models with a token that starts with the given term (or
+	 * that is equal to the term when exact is true). The score of a model is
+	 * the best score of its matching postings.
+	 */
+	private void collect(String term, Map<String, Double> scores,
+			boolean exact) {
+		String from = exact ? term + SEP : term;
+		String to = from + '\uffff';
+		for (String p : postings.subSet(from, true, to, false)) {
+			int sep = p.indexOf(SEP);
+			if (sep < 0)
+				continue;
+			String token = p.substring(0, sep);
+			Field field = Field.of(p.charAt(sep + 1));
+			String key = p.substring(sep + 2);
+			double s = field.weight;
+			if (token.length() > term.length()) {
+				s *= 0.6 * term.length() / token.length();
+			}
+			scores.merge(key, s, Math::max);
+		}
+	}
+
+	/**
+	 * Collects the models with a token that has an edit distance of at most 1
+	 * (2 for longer terms) to the given term. Only tokens that start with the
+	 * same character are considered.
+	 */
+	private void collectFuzzy(String term, Map<String, Double> scores) {
+		int maxDist = term.length() > 7 ? 2 : 1;
+		String first = term.substring(0, 1);
+		for (String token : tokens.subSet(first, true, first + '\uffff',
+				false)) {
+			if (Math.abs(token.length() - term.length()) > maxDist)
+				continue;
+			if (distance(term, token, maxDist) > maxDist)
+				continue;
+			Map<String, Double> tokenScores = new HashMap<>();
+			collect(token, tokenScores, true);
+			for (Map.Entry<String, Double> e : tokenScores.entrySet()) {
+				scores.merge(e.getKey(), 0.4 * e.getValue(), Math::max);
+			}
+		}
+	}
+
+	/** Levenshtein distance with early exit when max is exceeded. */
+	private static int distance(String a, String b, int max) {
+		int[] prev = new int[b.length() + 1];
+		int[] next = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++)
+			prev[j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			next[0] = i;
+			int rowMin = next[0];
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				next[j] = Math.min(Math.min(next[j - 1] + 1, prev[j] + 1),
+						prev[j - 1] + cost);
+				rowMin = Math.min(rowMin, next[j]);
+			}
+			if (rowMin > max)
+				return rowMin;
+			int[] tmp = prev;
+			prev = next;
+			next = tmp;
+		}
+		return prev[b.length()];
+	}
+
+	static List<String> tokenize(String text) {
+		List<String> list = new ArrayList<>();
+		if (text == null)
+			return list;
+		StringBuilder b = new StringBuilder();
+		for (char c : text.toLowerCase().toCharArray()) {
+			if (Character.isLetterOrDigit(c)) {
+				b.append(c);
+				continue;
+			}
+			if (b.length() > 0) {
+				list.add(b.toString());
+				b.setLength(0);
+			}
+		}
+		if (b.length() > 0) {
+			list.add(b.toString());
+		}
+		return list;
+	}
+
+	private Entry entryOf(BaseDescriptor d, String[] flowInfo,
+			String location) {
+		Entry e = new Entry();
+		e.type = d.type;
+		e.id = d.id;
+		e.name = d.name;
+		e.refId = d.refId;
+		e.location = location;
+		if (flowInfo != null) {
+			e.cas = flowInfo[0];
+			e.synonyms = flowInfo[1];
+			e.formula = flowInfo[2];
+		}
+		if (d instanceof CategorizedDescriptor) {
+			e.category = ((CategorizedDescriptor) d).category;
+			e.categoryPath = categoryPath(e.category);
+		}
+		return e;
+	}
+
+	private long[] categoryPath(Long categoryId) {
+		List<Long> path = new ArrayList<>();
+		Long next = categoryId;
+		while (next != null && !path.contains(next)) {
+			Object[] cat = categories.get(next);
+			if (cat == null)
+				break;
+			path.add(next);
+			next = (Long) cat[1];
+		}
+		long[] ids = new long[path.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = path.get(i);
+		}
+		return ids;
+	}
+
+	private Long locationOf(BaseDescriptor d) {
+		if (d instanceof ProcessDescriptor)
+			return ((ProcessDescriptor) d).location;
+		if (d instanceof FlowDescriptor)
+			return ((FlowDescriptor) d).location;
+		return null;
+	}
+
+	/**
+	 * Loads the CAS numbers, synonyms, and formulas of all flows or of the
+	 * flow with the given ID: flow ID -> [CAS, synonyms, formula].
+	 */
+	private Map<Long, String[]> flowInfos(Long flowId) {
+		Map<Long, String[]> infos = new HashMap<>();
+		String sql = "select id, cas_number, synonyms, formula from tbl_flows";
+		if (flowId != null) {
+			sql += " where id = " + flowId;
+		}
+		try {
+			NativeSql.on(database).query(sql, r -> {
+				infos.put(r.getLong(1), new String[] {
+						r.getString(2), r.getString(3), r.getString(4) });
+				return true;
+			});
+		} catch (Exception e) {
+			log.error("failed to load flow information for search index", e);
+		}
+		return infos;
+	}
+
+	private Map<Long, String> locationCodes(Long locationId) {
+		Map<Long, String> codes = new HashMap<>();
+		String sql = "select id, code from tbl_locations";
+		if (locationId != null) {
+			sql += " where id = " + locationId;
+		}
+		try {
+			NativeSql.on(database).query(sql, r -> {
+				codes.put(r.getLong(1), r.getString(2));
+				return true;
+			});
+		} catch (Exception e) {
+			log.error("failed to load location codes for search index", e);
+		}
+		return codes;
+	}
+
+	private static String key(BaseDescriptor d) {
+		return d.type.name() + "/" + d.id;
+	}
+
+	/** A search result: the model type and ID with the score of the hit. */
+	public static class Hit {
+
+		public final ModelType type;
+		public final long id;
+		public final String name;
+		public final double score;
+
+		Hit(ModelType type, long id, String name, double score) {
+			this.type = type;
+			this.id = id;
+			this.name = name;
+			this.score = score;
+		}
+	}
+
+	private enum Field {
+
+		NAME('n', 1.0),
+
+		SYNONYM('s', 0.8),
+
+		CODE('c', 0.9),
+
+		LOCATION('l', 0.5),
+
+		CATEGORY('k', 0.4);
+
+		final char code;
+		final double weight;
+
+		Field(char code, double weight) {
+			this.code = code;
+			this.weight = weight;
+		}
+
+		static Field of(char code) {
+			for (Field f : values()) {
+				if (f.code == code)
+					return f;
+			}
+			return NAME;
+		}
+	}
+
+	private static class Change {
+
+		final List<BaseDescriptor> put;
+		final List<BaseDescriptor> removed;
+
+		Change(List<BaseDescriptor> put, List<BaseDescriptor> removed) {
+			this.put = put;
+			this.removed = removed;
+		}
+	}
+
+	private static class Entry implements Serializable {
+
+		private static final long serialVersionUID = -3164624453154394498L;
+
+		ModelType type;
+		long id;
+		String name;
+		String refId;
+		String synonyms;
+		String cas;
+		String formula;
+		String location;
+		Long category;
+		long[] categoryPath;
+		String[] postings;
+	}
+}
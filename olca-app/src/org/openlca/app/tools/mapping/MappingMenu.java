@@ -5,6 +5,7 @@ import java.util.Optional;
 
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.MenuManager;
+import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.part.EditorActionBarContributor;
 import org.openlca.app.App;
 import org.openlca.app.M;
@@ -119,9 +120,15 @@ public class MappingMenu extends EditorActionBarContributor {
 		if (!opt.isPresent())
 			return;
 		Replacer replacer = new Replacer(opt.get());
-		App.runWithProgress("Replace flows ...", replacer, () -> {
-			tool.refresh();
-			Navigator.refresh();
-		});
+		try {
+			// the replacer reports its progress and can be cancelled
+			PlatformUI.getWorkbench().getProgressService()
+					.run(true, true, replacer);
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(MappingMenu.class);
+			log.error("failed to replace flows", e);
+		}
+		tool.refresh();
+		Navigator.refresh();
 	}
 }
@@ -8,9 +8,11 @@ import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.ui.forms.FormDialog;
 import org.eclipse.ui.forms.IManagedForm;
 import org.eclipse.ui.forms.widgets.FormToolkit;
+import org.openlca.app.M;
 import org.openlca.app.components.ModelCheckBoxTree;
 import org.openlca.app.tools.mapping.model.IProvider;
 import org.openlca.app.tools.mapping.replacer.ReplacerConfig;
@@ -75,6 +77,17 @@ class ReplacerDialog extends FormDialog {
 		Controls.onSelect(delete, _e -> {
 			conf.deleteMapped = delete.getSelection();
 		});
+
+		Composite threadComp = tk.createComposite(comp);
+		UI.gridLayout(threadComp, 2, 10, 0);
+		UI.formLabel(threadComp, tk, M.NumberOfThreads);
+		Spinner threads = new Spinner(threadComp, SWT.BORDER);
+		int processors = Runtime.getRuntime().availableProcessors();
+		threads.setValues(processors, 1, 4 * processors, 0, 1, 1);
+		conf.threads = processors;
+		Controls.onSelect(threads, _e -> {
+			conf.threads = threads.getSelection();
+		});
 	}
 
 	@Override
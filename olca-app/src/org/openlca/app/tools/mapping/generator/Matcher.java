@@ -1,30 +1,57 @@
 package org.openlca.app.tools.mapping.generator;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.PriorityQueue;
 import java.util.stream.Collectors;
 
 import org.apache.commons.math3.util.Pair;
 import org.openlca.app.tools.mapping.model.DBProvider;
 import org.openlca.app.tools.mapping.model.IProvider;
 import org.openlca.app.util.Labels;
-import org.openlca.core.database.FlowDao;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.LocationDao;
-import org.openlca.core.database.ProcessDao;
+import org.openlca.core.matrix.ProcessProduct;
+import org.openlca.core.matrix.cache.ProcessTable;
 import org.openlca.core.model.FlowType;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
 import org.openlca.io.maps.FlowRef;
 import org.openlca.util.CategoryPathBuilder;
 
+import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Finds the best matching target flow for a source flow. The target flows are
+ * indexed by the key words of their names (see {@link WordMatcher#keys}). For
+ * a source flow, the target flows that share key words with it are ranked by
+ * the inverse document frequencies of the shared words and only the best
+ * {@link #CANDIDATES} of them are scored with {@link Score#compute}. If no
+ * target flow shares a key word with the source flow, all target flows are
+ * scored.
+ * <p>
+ * When the target system is a database, the possible providers of the
+ * product and waste flows are loaded once with a {@link ProcessTable} (in a
+ * single pass over the exchanges table) and reused for all flows.
+ */
 class Matcher {
 
+	/** The maximum number of candidates that are scored for a flow. */
+	private static final int CANDIDATES = 100;
+
 	private final IDatabase db;
 	private final Map<String, FlowRef> targetFlows;
 	private final WordMatcher words;
 
+	// the inverted index: key word ID -> positions in the target list
+	private final List<FlowRef> targets;
+	private final TIntObjectHashMap<TIntArrayList> index;
+
 	// helper structures for collecting provider information
+	private final ProcessTable providers;
 	private CategoryPathBuilder categories;
 	private Map<Long, String> locations;
 
@@ -36,6 +63,26 @@ class Matcher {
 				.filter(f -> f.flow != null && f.flow.refId != null)
 				.collect(Collectors.toMap(f -> f.flow.refId, f -> f));
 		this.words = new WordMatcher();
+		this.providers = db != null
+				? ProcessTable.create(db)
+				: null;
+		this.targets = new ArrayList<>(targetFlows.values());
+		this.index = new TIntObjectHashMap<>();
+		for (int i = 0; i < targets.size(); i++) {
+			FlowRef tflow = targets.get(i);
+			for (int key : words.keys(tflow.flow.name)) {
+				TIntArrayList postings = index.get(key);
+				if (postings == null) {
+					postings = new TIntArrayList();
+					index.put(key, postings);
+				}
+				// the same word can occur multiple times in a name
+				if (postings.isEmpty()
+						|| postings.get(postings.size() - 1) != i) {
+					postings.add(i);
+				}
+			}
+		}
 	}
 
 	FlowRef find(FlowRef sflow) {
@@ -53,7 +100,11 @@ class Matcher {
 
 		// find the best matching flow by computing and
 		// comparing matching scores
-		tflow = targetFlows.values()
+		List<FlowRef> candidates = candidates(sflow);
+		if (candidates.isEmpty()) {
+			candidates = targets;
+		}
+		tflow = candidates
 				.parallelStream()
 				.map(tf -> new Pair<>(tf, Score.compute(sflow, tf, words)))
 				.reduce((pair1, pair2) -> {
@@ -69,12 +120,52 @@ class Matcher {
 		return tflow;
 	}
 
+	/**
+	 * Returns the target flows that share key words with the given flow,
+	 * ranked by the sum of the inverse document frequencies of the shared
+	 * words. At most {@link #CANDIDATES} flows are returned.
+	 */
+	private List<FlowRef> candidates(FlowRef sflow) {
+		TIntDoubleHashMap ranks = new TIntDoubleHashMap();
+		double n = targets.size();
+		for (int key : words.keys(sflow.flow.name)) {
+			TIntArrayList postings = index.get(key);
+			if (postings == null)
+				continue;
+			double idf = Math.log(1 + n / postings.size());
+			for (int i = 0; i < postings.size(); i++) {
+				ranks.adjustOrPutValue(postings.get(i), idf, idf);
+			}
+		}
+		if (ranks.isEmpty())
+			return new ArrayList<>();
+
+		// select the top candidates with a min-heap
+		PriorityQueue<double[]> heap = new PriorityQueue<>(
+				CANDIDATES + 1, (r1, r2) -> Double.compare(r1[1], r2[1]));
+		TIntDoubleIterator it = ranks.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			if (heap.size() < CANDIDATES) {
+				heap.add(new double[] { it.key(), it.value() });
+			} else if (it.value() > heap.peek()[1]) {
+				heap.poll();
+				heap.add(new double[] { it.key(), it.value() });
+			}
+		}
+		List<FlowRef> candidates = new ArrayList<>(heap.size());
+		for (double[] r : heap) {
+			candidates.add(targets.get((int) r[0]));
+		}
+		return candidates;
+	}
+
 	private void checkAddProvider(FlowRef sourceFlow, FlowRef targetFlow) {
-		if (db == null || targetFlow == null || targetFlow.flow == null)
+		if (providers == null || targetFlow == null || targetFlow.flow == null)
 			return;
 		if (targetFlow.flow.flowType == FlowType.ELEMENTARY_FLOW)
 			return;
-		ProcessDescriptor prov = findProvider(sourceFlow, targetFlow, db);
+		ProcessDescriptor prov = findProvider(sourceFlow, targetFlow);
 		if (prov == null)
 			return;
 		targetFlow.provider = prov;
@@ -91,20 +182,21 @@ class Matcher {
 	}
 
 	private ProcessDescriptor findProvider(FlowRef sourceFlow,
-			FlowRef targetFlow, IDatabase db) {
-
-		Set<Long> processIDs = null;
-		long tid = targetFlow.flow.id;
-		if (targetFlow.flow.flowType == FlowType.WASTE_FLOW) {
-			processIDs = new FlowDao(db).getWhereInput(tid);
-		} else {
-			processIDs = new FlowDao(db).getWhereOutput(tid);
-		}
-		if (processIDs == null || processIDs.isEmpty())
+			FlowRef targetFlow) {
+
+		// the process table contains the processes with the flow as
+		// product output or waste input
+		List<ProcessProduct> products = providers.getProviders(
+				targetFlow.flow.id);
+		if (products == null || products.isEmpty())
 			return null;
 
-		List<ProcessDescriptor> candidates = new ProcessDao(db)
-				.getDescriptors(processIDs);
+		List<ProcessDescriptor> candidates = new ArrayList<>();
+		for (ProcessProduct product : products) {
+			if (product.process instanceof ProcessDescriptor) {
+				candidates.add((ProcessDescriptor) product.process);
+			}
+		}
 		if (candidates.isEmpty())
 			return null;
 		if (candidates.size() == 1)
@@ -4,21 +4,48 @@ import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.openlca.util.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Matches the words of two strings. The strings are split into words only
+ * once: the words are interned to integer IDs and the token arrays of a
+ * string are cached, so that matching the same strings again (e.g. the names
+ * of the target flows for each source flow) compares only the cached arrays
+ * and does not allocate new objects.
+ */
 final class WordMatcher {
 
+	// the closer the words are in both sequences,
+	// the higher the score. we express this with
+	// a distance factor
+	private static final double DISTANCE_MATCH = 1.0;
+
+	// exact matches are ranked higher than part
+	// of word matches
+	private static final double EXACT_MATCH = 10;
+
 	private final Set<String> stopwords = new HashSet<>();
 
+	// word -> ID
+	private final ConcurrentHashMap<String, Integer> ids;
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	// string -> tokens with and without stopwords
+	private final ConcurrentHashMap<String, Tokens> allTokens;
+	private final ConcurrentHashMap<String, Tokens> keyTokens;
+
 	public WordMatcher() {
+		ids = new ConcurrentHashMap<>();
+		allTokens = new ConcurrentHashMap<>();
+		keyTokens = new ConcurrentHashMap<>();
 		try (InputStream is = getClass().getResourceAsStream("stopwords.txt");
 				InputStreamReader reader = new InputStreamReader(is, "utf-8");
 				BufferedReader buf = new BufferedReader(reader)) {
@@ -42,7 +69,9 @@ final class WordMatcher {
 	 * word separators.
 	 */
 	double matchAll(String a, String b) {
-		return match(a, b, false);
+		if (a == null || b == null)
+			return 0.0;
+		return match(tokens(a, false), tokens(b, false));
 	}
 
 	/**
@@ -50,46 +79,56 @@ final class WordMatcher {
 	 * score.
 	 */
 	double matchKeys(String a, String b) {
-		return match(a, b, true);
-	}
-
-	private double match(String a, String b, boolean withoutStopwords) {
 		if (a == null || b == null)
 			return 0.0;
+		return match(tokens(a, true), tokens(b, true));
+	}
 
-		// extract the words and store the shorter list in wordsA
-		List<String> wordsA = words(a, withoutStopwords);
-		List<String> wordsB = words(b, withoutStopwords);
-		if (wordsA.size() == 0 || wordsB.size() == 0)
+	/**
+	 * Returns the IDs of the key words of the given string: the stemmed words
+	 * without stopwords. These are the words that are compared in `matchKeys`.
+	 */
+	int[] keys(String s) {
+		if (s == null)
+			return new int[0];
+		return tokens(s, true).ids;
+	}
+
+	private Tokens tokens(String s, boolean withoutStopwords) {
+		ConcurrentHashMap<String, Tokens> cache = withoutStopwords
+				? keyTokens
+				: allTokens;
+		Tokens tokens = cache.get(s);
+		if (tokens != null)
+			return tokens;
+		tokens = new Tokens(words(s, withoutStopwords));
+		Tokens other = cache.putIfAbsent(s, tokens);
+		return other != null ? other : tokens;
+	}
+
+	private double match(Tokens a, Tokens b) {
+
+		// store the shorter list in a
+		if (a.size() == 0 || b.size() == 0)
 			return 0;
-		if (wordsA.size() > wordsB.size()) {
-			List<String> temp = wordsA;
-			wordsA = wordsB;
-			wordsB = temp;
+		if (a.size() > b.size()) {
+			Tokens temp = a;
+			a = b;
+			b = temp;
 		}
 
-		// the closer the words are in both sequences,
-		// the higher the score. we express this with
-		// a distance factor
-		final double DISTANCE_MATCH = 1.0;
-		// exact matches are ranked higher than part
-		// of word matches
-		final double EXACT_MATCH = 10;
-
-		// calculate the maximum score
-		double max = 0;
-		for (String word : wordsB) {
-			max += EXACT_MATCH * DISTANCE_MATCH * word.length();
-		}
+		// the maximum score
+		double max = b.weight;
 		if (max == 0)
 			return 0;
 
 		double matched = 0;
-		for (int i = 0; i < wordsA.size(); i++) {
-			String wordA = wordsA.get(i);
+		for (int i = 0; i < a.size(); i++) {
+			int idA = a.ids[i];
+			String wordA = a.words[i];
 			double matchedPart = 0;
 
-			for (int j = 0; j < wordsB.size(); j++) {
+			for (int j = 0; j < b.size(); j++) {
 
 				// the distance factor describes the
 				double distFactor = DISTANCE_MATCH - (Math.abs(i - j) / 5);
@@ -97,9 +136,9 @@ final class WordMatcher {
 					distFactor = 0.01;
 				}
 
-				String wordB = wordsB.get(j);
+				String wordB = b.words[j];
 
-				if (Objects.equals(wordA, wordB)) {
+				if (idA == b.ids[j]) {
 					double m = EXACT_MATCH * distFactor * wordB.length();
 					if (m > matchedPart) {
 						matchedPart = m;
@@ -134,37 +173,73 @@ final class WordMatcher {
 	 * Extracts the single words (in lower case) from the given string.
 	 */
 	private List<String> words(String s, boolean withoutStopwords) {
+		List<String> words = new ArrayList<>();
 		if (Strings.nullOrEmpty(s))
-			return Collections.emptyList();
+			return words;
 
 		StringBuilder buf = new StringBuilder();
-		List<String> words = new ArrayList<>();
 		for (char c : s.toLowerCase().toCharArray()) {
 			if (Character.isLetterOrDigit(c)) {
 				buf.append(c);
 			} else if (buf.length() > 0) {
-				String word = buf.toString();
-				buf = new StringBuilder();
-				if (!withoutStopwords) {
-					words.add(word);
-					continue;
-				}
-				if (stopwords.contains(word))
-					continue;
-				words.add(Stemmer.stem(word));
+				addWord(buf.toString(), words, withoutStopwords);
+				buf.setLength(0);
 			}
 		}
 		if (buf.length() > 0) {
-			String word = buf.toString();
-			if (!withoutStopwords) {
-				words.add(word);
-			} else {
-				if (!stopwords.contains(word)) {
-					words.add(Stemmer.stem(word));
-				}
-			}
+			addWord(buf.toString(), words, withoutStopwords);
 		}
 		return words;
 	}
 
+	private void addWord(String word, List<String> words,
+			boolean withoutStopwords) {
+		if (!withoutStopwords) {
+			words.add(word);
+			return;
+		}
+		if (!stopwords.contains(word)) {
+			words.add(Stemmer.stem(word));
+		}
+	}
+
+	private int id(String word) {
+		Integer id = ids.get(word);
+		if (id != null)
+			return id;
+		Integer newId = nextId.getAndIncrement();
+		id = ids.putIfAbsent(word, newId);
+		return id != null ? id : newId;
+	}
+
+	/**
+	 * The interned words of a string. The words are also kept as (canonical)
+	 * strings for the part-of-word matches.
+	 */
+	private class Tokens {
+
+		final int[] ids;
+		final String[] words;
+
+		/** The score of a complete match with this token list. */
+		final double weight;
+
+		Tokens(List<String> list) {
+			ids = new int[list.size()];
+			words = new String[list.size()];
+			double w = 0;
+			for (int i = 0; i < ids.length; i++) {
+				String word = list.get(i);
+				ids[i] = id(word);
+				words[i] = word;
+				w += EXACT_MATCH * DISTANCE_MATCH * word.length();
+			}
+			weight = w;
+		}
+
+		int size() {
+			return ids.length;
+		}
+	}
+
 }
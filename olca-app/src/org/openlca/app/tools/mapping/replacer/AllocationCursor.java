@@ -34,19 +34,24 @@ class AllocationCursor extends UpdatableCursor {
 			update.setLong(1, entry.targetFlow.flow.id);
 
 			update.executeUpdate();
-			stats.inc(flowID, Stats.REPLACEMENT);
-			updatedModels.add(processID);
+			replaced(flowID, processID);
 		} catch (Exception e) {
-			stats.inc(flowID, Stats.FAILURE);
+			failed(flowID);
 		}
 	}
 
+	@Override
+	String table() {
+		return "tbl_allocation_factors";
+	}
+
 	@Override
 	String querySQL() {
 		return "SELECT "
 				+ " f_process,"
 				+ " f_product"
 				+ " FROM tbl_allocation_factors"
+				+ where()
 				+ " FOR UPDATE OF f_product";
 	}
 
@@ -100,26 +100,30 @@ class AmountCursor extends UpdatableCursor {
 			}
 
 			update.executeUpdate();
-			stats.inc(flowID, Stats.REPLACEMENT);
-			updatedModels.add(ownerID);
+			replaced(flowID, ownerID);
 		} catch (Exception e) {
-			stats.inc(flowID, Stats.FAILURE);
+			failed(flowID);
 		}
 	}
 
+	@Override
+	String table() {
+		return type == ModelType.PROCESS
+				? "tbl_exchanges"
+				: "tbl_impact_factors";
+	}
+
 	@Override
 	String querySQL() {
-		String table;
+		String table = table();
 		String owner;
 		String value;
 		String formula;
 		if (type == ModelType.PROCESS) {
-			table = "tbl_exchanges";
 			owner = "f_owner";
 			value = "resulting_amount_value";
 			formula = "resulting_amount_formula";
 		} else {
-			table = "tbl_impact_factors";
 			owner = "f_impact_category";
 			value = "value";
 			formula = "formula";
@@ -141,7 +145,7 @@ class AmountCursor extends UpdatableCursor {
 			query += ", f_default_provider ";
 		}
 
-		query += "FROM " + table + " "
+		query += "FROM " + table + where()
 				+ "FOR UPDATE OF "
 				+ "f_flow, "
 				+ "f_unit, "
@@ -162,15 +166,13 @@ class AmountCursor extends UpdatableCursor {
 
 	@Override
 	String updateSQL() {
-		String table;
+		String table = table();
 		String value;
 		String formula;
 		if (type == ModelType.PROCESS) {
-			table = "tbl_exchanges";
 			value = "resulting_amount_value";
 			formula = "resulting_amount_formula";
 		} else {
-			table = "tbl_impact_factors";
 			value = "value";
 			formula = "formula";
 		}
@@ -44,13 +44,26 @@ class ProcessLinkCursor extends UpdatableCursor {
 			long systemID = cursor.getLong("f_product_system");
 
 			update.executeUpdate();
-			stats.inc(flowID, Stats.REPLACEMENT);
-			updatedModels.add(systemID);
+			replaced(flowID, systemID);
 		} catch (Exception e) {
-			stats.inc(flowID, Stats.FAILURE);
+			failed(flowID);
 		}
 	}
 
+	@Override
+	String table() {
+		return "tbl_process_links";
+	}
+
+	/**
+	 * The process links have no ID column; thus, we split the table by the
+	 * product systems.
+	 */
+	@Override
+	String rangeColumn() {
+		return "f_product_system";
+	}
+
 	@Override
 	String querySQL() {
 		return "SELECT "
@@ -59,6 +72,7 @@ class ProcessLinkCursor extends UpdatableCursor {
 				+ " f_flow,"
 				+ " f_process"
 				+ " FROM tbl_process_links"
+				+ where()
 				+ " FOR UPDATE OF "
 				+ " f_provider, "
 				+ " f_flow";
@@ -3,19 +3,27 @@ package org.openlca.app.tools.mapping.replacer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.openlca.app.db.Database;
 import org.openlca.app.tools.mapping.model.DBProvider;
 import org.openlca.app.util.Labels;
 import org.openlca.core.database.FlowDao;
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.ImpactMethodDao;
+import org.openlca.core.database.NativeSql;
 import org.openlca.core.model.Flow;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
@@ -25,10 +33,25 @@ import org.openlca.io.maps.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class Replacer implements Runnable {
+/**
+ * Replaces the flows of a mapping in the database. The tables are updated
+ * with updatable cursors. Each table is split into ranges that are updated by
+ * separate cursors in a pool of threads (see {@link ReplacerConfig#threads}).
+ * The progress (rows per second) of the cursors is reported to the progress
+ * monitor and the replacement can be cancelled there; the not committed
+ * batches of the cursors are then rolled back.
+ */
+public class Replacer implements Runnable, IRunnableWithProgress {
+
+	/** The number of ranges per thread into which a table is split. */
+	private static final int RANGES_PER_THREAD = 4;
+
+	/** The time between two progress updates in milliseconds. */
+	private static final long UPDATE_TIME = 500;
 
 	private final ReplacerConfig conf;
 	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final AtomicBoolean canceled = new AtomicBoolean(false);
 
 	final IDatabase db;
 	// the valid entries that could be applied: source flow ID -> mapping.
@@ -50,6 +73,20 @@ public class Replacer implements Runnable {
 
 	@Override
 	public void run() {
+		run(new NullProgressMonitor());
+	}
+
+	@Override
+	public void run(IProgressMonitor monitor) {
+		monitor.beginTask("Replace flows", IProgressMonitor.UNKNOWN);
+		try {
+			replace(monitor);
+		} finally {
+			monitor.done();
+		}
+	}
+
+	private void replace(IProgressMonitor monitor) {
 		if (conf == null || (conf.models.isEmpty())) {
 			log.info("no configuration; nothing to replace");
 			return;
@@ -80,18 +117,30 @@ public class Replacer implements Runnable {
 
 			// start and wait for the cursors to finish
 			log.info("start updatable cursors");
-			List<UpdatableCursor> cursors = createCursors();
-			ExecutorService pool = Executors.newFixedThreadPool(4);
+			int threads = conf.threads > 0
+					? conf.threads
+					: Runtime.getRuntime().availableProcessors();
+			List<UpdatableCursor> cursors = createCursors(threads);
+			log.info("run {} cursors in {} threads", cursors.size(), threads);
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
 			for (UpdatableCursor c : cursors) {
-				pool.execute(c);
+				pool.execute(() -> {
+					try {
+						c.run();
+					} catch (Exception e) {
+						log.error("cursor on " + c.table() + " failed", e);
+					}
+				});
 			}
 			pool.shutdown();
-			int i = 0;
-			while (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
-				i++;
-				log.info("waiting for cursors to finish; {} seconds", i * 10);
+			long start = System.currentTimeMillis();
+			while (!pool.awaitTermination(UPDATE_TIME, TimeUnit.MILLISECONDS)) {
+				if (monitor.isCanceled()) {
+					canceled.set(true);
+				}
+				monitor.subTask(progress(cursors, start));
 			}
-			log.info("cursors finished");
+			log.info("cursors finished: {}", progress(cursors, start));
 			db.getEntityFactory().getCache().evictAll();
 
 			// TODO when products were replaced we also need to check
@@ -109,6 +158,34 @@ public class Replacer implements Runnable {
 				c.stats.log(c.getClass().getName(), flows);
 			}
 
+			// when a cursor failed, its committed batches are kept but
+			// the rest of its range was not updated; as we do not know
+			// which flows are in that range, all entries get an error
+			// and no flows are deleted
+			List<UpdatableCursor> failed = cursors.stream()
+					.filter(c -> c.error != null)
+					.collect(Collectors.toList());
+			if (!failed.isEmpty()) {
+				log.error("{} of {} cursors failed; flows were only partly"
+						+ " replaced and no flows are deleted",
+						failed.size(), cursors.size());
+				for (FlowMapEntry e : entries.values()) {
+					e.sourceFlow.status = Status.error(
+							"Replacement error: not all rows were updated");
+				}
+				return;
+			}
+
+			// the committed batches of a cancelled replacement are
+			// kept; but we do not delete any flows then
+			if (canceled.get()) {
+				log.warn("flow replacement cancelled");
+				for (FlowMapEntry e : entries.values()) {
+					e.sourceFlow.status = Status.warn("Replacement cancelled");
+				}
+				return;
+			}
+
 			// TODO: update the version and last-update fields
 			// of the changed models; also call the indexer
 			// when the database is a connected repository
@@ -148,22 +225,99 @@ public class Replacer implements Runnable {
 			}
 		} catch (Exception e) {
 			log.error("Flow replacement failed", e);
+			for (FlowMapEntry entry : entries.values()) {
+				entry.sourceFlow.status = Status.error("Replacement error");
+			}
 		}
 	}
 
-	private List<UpdatableCursor> createCursors() {
+	private List<UpdatableCursor> createCursors(int threads) {
 		List<UpdatableCursor> cursors = new ArrayList<>();
 		if (!processes.isEmpty()) {
-			cursors.add(new AmountCursor(ModelType.PROCESS, this));
-			cursors.add(new ProcessLinkCursor(this));
-			cursors.add(new AllocationCursor(this));
+			split(() -> new AmountCursor(ModelType.PROCESS, this),
+					threads, cursors);
+			split(() -> new ProcessLinkCursor(this), threads, cursors);
+			split(() -> new AllocationCursor(this), threads, cursors);
 		}
 		if (!impacts.isEmpty()) {
-			cursors.add(new AmountCursor(ModelType.IMPACT_CATEGORY, this));
+			split(() -> new AmountCursor(ModelType.IMPACT_CATEGORY, this),
+					threads, cursors);
 		}
 		return cursors;
 	}
 
+	/**
+	 * Splits the value range of the range column of the cursor's table into
+	 * intervals and creates a cursor for each interval.
+	 */
+	private void split(Supplier<UpdatableCursor> fn, int threads,
+			List<UpdatableCursor> cursors) {
+		UpdatableCursor first = fn.get();
+		long[] range = new long[2];
+		boolean[] empty = { true };
+		String col = first.rangeColumn();
+		String sql = "select min(" + col + "), max(" + col + ") from "
+				+ first.table();
+		try {
+			NativeSql.on(db).query(sql, r -> {
+				range[0] = r.getLong(1);
+				range[1] = r.getLong(2);
+				empty[0] = r.wasNull();
+				return false;
+			});
+		} catch (Exception e) {
+			log.error("failed to get range of " + first.table(), e);
+			init(first);
+			cursors.add(first);
+			return;
+		}
+		if (empty[0])
+			return;
+
+		long size = range[1] - range[0] + 1;
+		long n = Math.min(size, (long) threads * RANGES_PER_THREAD);
+		long step = (size + n - 1) / n;
+		UpdatableCursor c = first;
+		for (long start = range[0]; start <= range[1]; start += step) {
+			if (c == null) {
+				c = fn.get();
+			}
+			c.range(start, Math.min(range[1], start + step - 1));
+			init(c);
+			cursors.add(c);
+			c = null;
+		}
+	}
+
+	private void init(UpdatableCursor c) {
+		c.batchSize(conf.batchSize);
+		c.cancelFlag(canceled);
+	}
+
+	/**
+	 * Returns the number of visited rows and rows per second for the tables
+	 * of the given cursors as progress message.
+	 */
+	private String progress(List<UpdatableCursor> cursors, long start) {
+		Map<String, Long> rows = new LinkedHashMap<>();
+		for (UpdatableCursor c : cursors) {
+			rows.merge(c.table(), c.rows.get(), Long::sum);
+		}
+		double seconds = Math.max(
+				1, System.currentTimeMillis() - start) / 1000.0;
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, Long> e : rows.entrySet()) {
+			if (text.length() > 0) {
+				text.append("; ");
+			}
+			long count = e.getValue();
+			text.append(e.getKey()).append(": ")
+					.append(count).append(" rows (")
+					.append((long) (count / seconds)).append(" rows/s)");
+		}
+		return text.toString();
+	}
+
 	private void buildIndices() {
 
 		// first persist all target flows in the database that
@@ -18,6 +18,18 @@ public class ReplacerConfig {
 	public final List<CategorizedDescriptor> models = new ArrayList<>();
 	public boolean deleteMapped;
 
+	/**
+	 * The number of threads that run the updatable cursors. If this is 0, the
+	 * number of available processors is used.
+	 */
+	public int threads;
+
+	/**
+	 * The maximum number of replaced rows per transaction of an updatable
+	 * cursor.
+	 */
+	public int batchSize = 1000;
+
 	public ReplacerConfig(FlowMap mapping, IProvider provider) {
 		this.mapping = mapping;
 		this.provider = provider;
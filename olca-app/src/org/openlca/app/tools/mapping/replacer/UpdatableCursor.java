@@ -6,15 +6,24 @@ import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.model.ModelType;
 
 /**
  * A method template for implementing updatable cursors.
- * 
+ *
  * see: https://db.apache.org/derby/docs/10.0/manuals/develop/develop66.html
+ *
+ * A cursor can be restricted to a range of the values in its range column
+ * (see {@link #range(long, long)}) so that the rows of a table can be updated
+ * by multiple cursors in parallel. The updates are committed in batches of
+ * the configured size so that the number of locked rows per transaction is
+ * bounded. When the cursor is cancelled or fails, the current batch is rolled
+ * back; a failure is recorded in {@link #error}.
  */
 abstract class UpdatableCursor implements Runnable {
 
@@ -31,12 +40,38 @@ abstract class UpdatableCursor implements Runnable {
 	/** The type of the updated models. */
 	final ModelType type;
 
+	/** The number of rows this cursor has visited so far. */
+	final AtomicLong rows = new AtomicLong();
+
+	/**
+	 * The error that stopped this cursor, or null. The cursor then rolled back
+	 * its current batch and did not visit the rest of its range; the batches
+	 * committed before stay in the database.
+	 */
+	volatile Exception error;
+
+	private AtomicBoolean canceled = new AtomicBoolean(false);
+	private int batchSize = 1000;
+	private boolean ranged;
+	private long rangeStart;
+	private long rangeEnd;
+
+	// the statistics and models of the current, not committed, batch
+	private Stats batch = new Stats();
+	private Set<Long> batchModels = new HashSet<>();
+
 	UpdatableCursor(IDatabase db, ModelType type) {
 		this.db = db;
 		this.type = type;
 	}
 
-	/** The SQL query for selecting the records. */
+	/** The table that is updated by this cursor. */
+	abstract String table();
+
+	/**
+	 * The SQL query for selecting the records. The query should include the
+	 * range filter (see {@link #where()}) before the `FOR UPDATE` clause.
+	 */
 	abstract String querySQL();
 
 	/** The SQL statement for updating a record. */
@@ -45,18 +80,74 @@ abstract class UpdatableCursor implements Runnable {
 	/**
 	 * This method is called when the cursor moved to the next row. The update
 	 * needs to be called within this method and possible errors should also be
-	 * handled and logged there.
+	 * handled and logged there (see {@link #replaced(long, long)} and
+	 * {@link #failed(long)}).
 	 */
 	abstract void next(ResultSet cursor, PreparedStatement update);
 
+	/**
+	 * The column that is used to split the table into ranges. This is the ID
+	 * column by default.
+	 */
+	String rangeColumn() {
+		return "id";
+	}
+
+	/**
+	 * Restricts the cursor to the rows with a value of the range column in the
+	 * given interval [start, end].
+	 */
+	void range(long start, long end) {
+		this.ranged = true;
+		this.rangeStart = start;
+		this.rangeEnd = end;
+	}
+
+	void batchSize(int batchSize) {
+		if (batchSize > 0) {
+			this.batchSize = batchSize;
+		}
+	}
+
+	/** Sets the flag that is checked for cancellation before each row. */
+	void cancelFlag(AtomicBoolean canceled) {
+		if (canceled != null) {
+			this.canceled = canceled;
+		}
+	}
+
+	/** Returns the range filter of the query, or an empty string. */
+	String where() {
+		if (!ranged)
+			return " ";
+		return " WHERE " + rangeColumn() + " >= " + rangeStart
+				+ " AND " + rangeColumn() + " <= " + rangeEnd + " ";
+	}
+
+	/** Records a successful replacement in the current batch. */
+	void replaced(long flowID, long modelID) {
+		batch.inc(flowID, Stats.REPLACEMENT);
+		batchModels.add(modelID);
+	}
+
+	/** Records a failed replacement in the current batch. */
+	void failed(long flowID) {
+		batch.inc(flowID, Stats.FAILURE);
+	}
+
 	@Override
 	public final void run() {
+		Connection con = null;
 		try {
-			Connection con = db.createConnection();
+			con = db.createConnection();
 			con.setAutoCommit(false);
 
-			// prepare the query and cursor
-			Statement query = con.createStatement();
+			// prepare the query and cursor; the cursor needs to be
+			// kept open when a batch is committed
+			Statement query = con.createStatement(
+					ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_UPDATABLE,
+					ResultSet.HOLD_CURSORS_OVER_COMMIT);
 			String name = "UPDATE_CURSOR_" + seq.incrementAndGet();
 			query.setCursorName(name);
 			ResultSet cursor = query.executeQuery(querySQL());
@@ -67,18 +158,56 @@ abstract class UpdatableCursor implements Runnable {
 
 			// run through the table
 			while (cursor.next()) {
+				if (canceled.get()) {
+					con.rollback();
+					clearBatch();
+					break;
+				}
 				next(cursor, update);
+				rows.incrementAndGet();
+				if (batch.replacements + batch.failures >= batchSize) {
+					con.commit();
+					commitBatch();
+				}
 			}
 
 			// free and commit
 			cursor.close();
 			query.close();
 			update.close();
-			con.commit();
+			if (!canceled.get()) {
+				con.commit();
+				commitBatch();
+			}
 			con.close();
 		} catch (Exception e) {
+			error = e;
+			rollback(con);
 			throw new RuntimeException(e);
 		}
 	}
 
+	private void commitBatch() {
+		stats.add(batch);
+		updatedModels.addAll(batchModels);
+		clearBatch();
+	}
+
+	private void clearBatch() {
+		batch = new Stats();
+		batchModels = new HashSet<>();
+	}
+
+	private void rollback(Connection con) {
+		clearBatch();
+		if (con == null)
+			return;
+		try {
+			con.rollback();
+			con.close();
+		} catch (Exception e) {
+			// the original error is more important
+		}
+	}
+
 }
@@ -7,6 +7,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.openlca.app.M;
@@ -23,10 +26,19 @@ import org.openlca.core.model.AbstractEntity;
 import org.openlca.core.model.ModelType;
 import org.openlca.core.model.descriptors.CategorizedDescriptor;
 
+/**
+ * Validates the references of the given models. The model types are
+ * validated in parallel with a bounded number of threads; the broken
+ * references are grouped by their owners in a single pass. The results are
+ * only written to the cache when the validation of all types succeeded;
+ * otherwise an exception is thrown and the models stay dirty in the cache.
+ */
 public class DatabaseValidation {
 
 	private IProgressMonitor monitor;
 	private FlowChainValidation flowChainValidation;
+	private ValidationCache cache;
+	private long generation;
 
 	public static DatabaseValidation with(IProgressMonitor monitor) {
 		DatabaseValidation e = new DatabaseValidation();
@@ -34,64 +46,130 @@ public class DatabaseValidation {
 		return e;
 	}
 
+	/**
+	 * Writes the results of the validation into the given cache. The
+	 * generation is the value of {@link ValidationCache#generation()} before
+	 * the models to be validated were read.
+	 */
+	DatabaseValidation cache(ValidationCache cache, long generation) {
+		this.cache = cache;
+		this.generation = generation;
+		return this;
+	}
+
 	public List<ModelStatus> evaluate(Collection<CategorizedDescriptor> descriptors) {
-		Map<ModelType, Set<Long>> byType = new HashMap<>();
+		Map<ModelType, Map<Long, CategorizedDescriptor>> byType = new HashMap<>();
 		for (CategorizedDescriptor descriptor : descriptors) {
-			Set<Long> forType = byType.get(descriptor.type);
+			Map<Long, CategorizedDescriptor> forType = byType.get(descriptor.type);
 			if (forType == null) {
-				byType.put(descriptor.type, forType = new HashSet<>());
+				byType.put(descriptor.type, forType = new HashMap<>());
 			}
-			forType.add(descriptor.id);
+			forType.put(descriptor.id, descriptor);
 		}
-		List<ModelStatus> result = new ArrayList<>();
 		if (monitor != null && !monitor.isCanceled())
 			monitor.beginTask(M.ValidatingDatabase, byType.size() * 3);
+		int threads = Math.max(1, Math.min(byType.size(),
+				Runtime.getRuntime().availableProcessors()));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<TypeResult>> futures = new ArrayList<>();
 		for (ModelType type : byType.keySet()) {
-			if (monitor != null && monitor.isCanceled())
-				continue;
+			Map<Long, CategorizedDescriptor> forType = byType.get(type);
+			futures.add(pool.submit(() -> evaluate(type, forType)));
+		}
+		pool.shutdown();
+		List<TypeResult> typeResults = new ArrayList<>();
+		try {
+			for (Future<TypeResult> future : futures) {
+				typeResults.add(future.get());
+			}
+		} catch (Exception e) {
+			pool.shutdownNow();
 			if (monitor != null)
-				monitor.subTask(Labels.modelType(type));
-			result.addAll(evaluate(type, byType.get(type)));
+				monitor.done();
+			throw new RuntimeException("Database validation failed", e);
+		}
+		List<ModelStatus> result = new ArrayList<>();
+		for (TypeResult r : typeResults) {
+			result.addAll(r.statuses);
+			if (cache == null)
+				continue;
+			for (ModelStatus status : r.statuses) {
+				cache.put(r.descriptors.get(status.id), status,
+						r.references.get(status.id), generation);
+			}
 		}
+		if (cache != null)
+			cache.commit();
 		if (monitor != null)
 			monitor.done();
 		return result;
 	}
 
-	private List<ModelStatus> evaluate(ModelType type, Set<Long> ids) {
+	private TypeResult evaluate(ModelType type,
+			Map<Long, CategorizedDescriptor> descriptors) {
+		TypeResult result = new TypeResult(descriptors);
+		Set<Long> ids = descriptors.keySet();
 		if (monitor != null && monitor.isCanceled())
-			return new ArrayList<>();
+			return result;
+		subTask(Labels.modelType(type));
 		List<Reference> references = findReferences(type, ids);
 		if (monitor != null && monitor.isCanceled())
-			return new ArrayList<>();
-		if (monitor != null)
-			monitor.worked(2);
+			return result;
+		worked(2);
 		Set<Reference> notExisting = checkExistence(references);
 		if (monitor != null && monitor.isCanceled())
-			return new ArrayList<>();
+			return result;
 		if (type == ModelType.PROCESS || type == ModelType.IMPACT_METHOD) {
-			if (flowChainValidation == null) {
-				flowChainValidation = new FlowChainValidation(Database.get());
-			}
-			notExisting.addAll(flowChainValidation.run(type.getModelClass(), references));
+			notExisting.addAll(flowChainValidation()
+					.run(type.getModelClass(), references));
 		}
 		Map<Long, Boolean> referenceSet = checkReferenceSet(type, ids);
 		if (monitor != null && monitor.isCanceled())
-			return new ArrayList<>();
-		List<ModelStatus> result = new ArrayList<>();
+			return result;
+		Map<Long, List<Reference>> byOwner = groupByOwner(notExisting);
 		for (Long id : ids) {
 			if (monitor != null && monitor.isCanceled())
 				continue;
-			boolean validReferenceSet = referenceSet == null || referenceSet.get(id);
-			List<Reference> missing = filter(notExisting, id);
-			ModelStatus status = new ModelStatus(type, id, new ArrayList<>(missing), validReferenceSet);
-			result.add(status);
+			Boolean hasRefSet = referenceSet == null ? null : referenceSet.get(id);
+			boolean validReferenceSet = hasRefSet == null || hasRefSet;
+			List<Reference> missing = byOwner.get(id);
+			if (missing == null) {
+				missing = new ArrayList<>();
+			}
+			ModelStatus status = new ModelStatus(type, id, missing, validReferenceSet);
+			result.statuses.add(status);
+		}
+		if (cache != null) {
+			result.references = groupByOwner(references);
 		}
 		if (monitor != null && !monitor.isCanceled())
-			monitor.worked(1);
+			worked(1);
 		return result;
 	}
 
+	private synchronized FlowChainValidation flowChainValidation() {
+		if (flowChainValidation == null) {
+			flowChainValidation = new FlowChainValidation(Database.get());
+		}
+		return flowChainValidation;
+	}
+
+	private void subTask(String name) {
+		if (monitor == null)
+			return;
+		synchronized (monitor) {
+			monitor.subTask(name);
+		}
+	}
+
+	private void worked(int work) {
+		if (monitor == null)
+			return;
+		synchronized (monitor) {
+			monitor.worked(work);
+		}
+	}
+
 	private Map<Long, Boolean> checkReferenceSet(ModelType type, Set<Long> ids) {
 		switch (type) {
 		case PRODUCT_SYSTEM:
@@ -107,12 +185,15 @@ public class DatabaseValidation {
 		}
 	}
 
-	private List<Reference> filter(Collection<Reference> references, long ownerId) {
-		List<Reference> filtered = new ArrayList<>();
-		for (Reference ref : references)
-			if (ref.ownerId == ownerId)
-				filtered.add(ref);
-		return filtered;
+	private Map<Long, List<Reference>> groupByOwner(Collection<Reference> references) {
+		Map<Long, List<Reference>> byOwner = new HashMap<>();
+		for (Reference ref : references) {
+			List<Reference> list = byOwner.get(ref.ownerId);
+			if (list == null)
+				byOwner.put(ref.ownerId, list = new ArrayList<>());
+			list.add(ref);
+		}
+		return byOwner;
 	}
 
 	private Set<Reference> checkExistence(List<Reference> references) {
@@ -166,4 +247,19 @@ public class DatabaseValidation {
 		return IReferenceSearch.FACTORY.createFor(type, Database.get(), true).findReferences(ids);
 	}
 
+	/**
+	 * The validation result of a model type; the references of the models
+	 * are only collected when the results are written to the cache.
+	 */
+	private static class TypeResult {
+
+		final Map<Long, CategorizedDescriptor> descriptors;
+		final List<ModelStatus> statuses = new ArrayList<>();
+		Map<Long, List<Reference>> references = new HashMap<>();
+
+		TypeResult(Map<Long, CategorizedDescriptor> descriptors) {
+			this.descriptors = descriptors;
+		}
+	}
+
 }
@@ -8,12 +8,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.openlca.core.database.FlowDao;
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.references.IReferenceSearch.Reference;
 import org.openlca.core.model.AbstractEntity;
 import org.openlca.core.model.Exchange;
-import org.openlca.core.model.Flow;
 import org.openlca.core.model.FlowPropertyFactor;
 import org.openlca.core.model.ImpactFactor;
 import org.openlca.core.model.ImpactMethod;
@@ -27,27 +26,33 @@ class FlowChainValidation {
 	// flowProperty.id -> unit.id
 	private final Map<Long, Set<Long>> units = new HashMap<>();
 
+	/**
+	 * Builds the flow chain maps with native SQL queries on the flow property
+	 * factor, flow property, and unit tables instead of loading the flows.
+	 * When a query fails, an exception is thrown because a validation against
+	 * incomplete maps would report valid flow chains as broken.
+	 */
 	FlowChainValidation(IDatabase database) {
-		for (Flow flow : new FlowDao(database).getAll()) {
-			Set<Long> factors = get(this.factors, flow.id);
-			for (FlowPropertyFactor factor : flow.flowPropertyFactors) {
-				factors.add(factor.id);
-				if (this.units.containsKey(factor.flowProperty.id))
-					continue;
-				Set<Long> units = get(this.units, factor.flowProperty.id);
-				for (Unit unit : factor.flowProperty.unitGroup.units) {
-					units.add(unit.id);
-				}
-			}
-		}
-	}
-
-	private Set<Long> get(Map<Long, Set<Long>> map, long id) {
-		Set<Long> values = map.get(id);
-		if (values == null) {
-			map.put(id, values = new HashSet<>());
+		try {
+			NativeSql sql = NativeSql.on(database);
+			sql.query("select id, f_flow from tbl_flow_property_factors", r -> {
+				put(factors, r.getLong(2), r.getLong(1));
+				return true;
+			});
+			Map<Long, Set<Long>> groupUnits = new HashMap<>();
+			sql.query("select id, f_unit_group from tbl_units", r -> {
+				put(groupUnits, r.getLong(2), r.getLong(1));
+				return true;
+			});
+			sql.query("select id, f_unit_group from tbl_flow_properties", r -> {
+				Set<Long> units = groupUnits.get(r.getLong(2));
+				this.units.put(r.getLong(1),
+						units != null ? units : new HashSet<>());
+				return true;
+			});
+		} catch (Exception e) {
+			throw new RuntimeException("failed to load flow chain maps", e);
 		}
-		return values;
 	}
 
 	private void put(Map<Long, Set<Long>> map, long id, long value) {
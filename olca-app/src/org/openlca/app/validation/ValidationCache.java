@@ -0,0 +1,464 @@
+package org.openlca.app.validation;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.references.IReferenceSearch.Reference;
+import org.openlca.core.model.AbstractEntity;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.BaseDescriptor;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.openlca.util.Dirs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent cache of the validation results of a database. The cache is
+ * stored in the folder <code>validation</code> of the file storage location of
+ * the database. For each validated model, it stores the validation status
+ * together with the version and last change of the model and the references
+ * of the model. When a model is changed or deleted, the cached status of that
+ * model and of the models that reference it are marked as dirty (see
+ * {@link #invalidate(List)}) and are re-validated in a background job. A cache
+ * file that cannot be opened is deleted and the cache starts empty.
+ *
+ * Each time a model is marked as dirty, it gets the next value of an
+ * invalidation counter. A validation takes the current value of that counter
+ * when it starts (see {@link #generation()}) and a model that was marked as
+ * dirty after that stays dirty when its status is stored, because the status
+ * may describe the model before its last change.
+ */
+public class ValidationCache {
+
+	private static final int VERSION = 1;
+	private static final char SEP = '\u0000';
+
+	private final IDatabase database;
+	private final File file;
+	private DB db;
+
+	/** Maps the keys of the validated models to their entries. */
+	private Map<String, Entry> entries;
+
+	/**
+	 * The references of the validated models in the format: reference type
+	 * SEP reference ID SEP owner key.
+	 */
+	private NavigableSet<String> dependents;
+
+	/** The keys of the models that need to be validated again. */
+	private NavigableSet<String> dirty;
+
+	/**
+	 * The value of the invalidation counter when a key was marked as dirty
+	 * the last time. This is only kept in memory: after a restart, no
+	 * validation is running that could have started before an invalidation.
+	 */
+	private final Map<String, Long> dirtySince = new HashMap<>();
+	private long generation;
+
+	private ValidationJob job;
+
+	private ValidationCache(IDatabase database, File file) {
+		this.database = database;
+		this.file = file;
+		open();
+	}
+
+	public static ValidationCache getFor(IDatabase database) {
+		File dir = new File(database.getFileStorageLocation(), "validation");
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		return new ValidationCache(database, new File(dir, "cache"));
+	}
+
+	private void open() {
+		try {
+			openFile();
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.warn("failed to open validation cache " + file
+					+ "; the cache is deleted", e);
+			if (db != null && !db.isClosed()) {
+				try {
+					db.close();
+				} catch (Exception ex) {
+					log.warn("failed to close validation cache", ex);
+				}
+			}
+			db = null;
+			Dirs.delete(file.getParentFile().toPath());
+			file.getParentFile().mkdirs();
+			try {
+				openFile();
+			} catch (Exception ex) {
+				log.error("failed to create validation cache " + file, ex);
+				db = null;
+			}
+		}
+	}
+
+	private void openFile() {
+		db = DBMaker.fileDB(file).closeOnJvmShutdown().make();
+		entries = db.hashMap("entries");
+		dependents = db.treeSet("dependents");
+		dirty = db.treeSet("dirty");
+		if (db.atomicInteger("version").get() != VERSION) {
+			entries.clear();
+			dependents.clear();
+			dirty.clear();
+			db.atomicInteger("version").set(VERSION);
+			db.commit();
+		}
+	}
+
+	/** Returns true if the cache is closed or could not be opened. */
+	private boolean isClosed() {
+		return db == null || db.isClosed();
+	}
+
+	IDatabase getDatabase() {
+		return database;
+	}
+
+	/**
+	 * Returns the current value of the invalidation counter. A validation
+	 * should call this before it reads the dirty keys and the models and pass
+	 * the value to {@link #put(CategorizedDescriptor, ModelStatus, Collection,
+	 * long)}.
+	 */
+	synchronized long generation() {
+		return generation;
+	}
+
+	public synchronized void close() {
+		if (job != null) {
+			job.cancel();
+			job = null;
+		}
+		if (isClosed())
+			return;
+		db.commit();
+		db.close();
+	}
+
+	/**
+	 * Returns the cached status of the given models. The models that are not
+	 * in the cache, that are marked as dirty, or that were changed since they
+	 * were validated are added to the given list of outdated models.
+	 */
+	synchronized List<ModelStatus> get(
+			Collection<CategorizedDescriptor> descriptors,
+			List<CategorizedDescriptor> outdated) {
+		List<ModelStatus> statuses = new ArrayList<>();
+		if (isClosed()) {
+			outdated.addAll(descriptors);
+			return statuses;
+		}
+		for (CategorizedDescriptor d : descriptors) {
+			String key = key(d.type, d.id);
+			Entry e = entries.get(key);
+			if (e == null || dirty.contains(key)
+					|| e.version != d.version
+					|| e.lastChange != d.lastChange) {
+				outdated.add(d);
+				continue;
+			}
+			ModelStatus status = e.toStatus(d.type, d.id);
+			if (status != null) {
+				statuses.add(status);
+			} else {
+				outdated.add(d);
+			}
+		}
+		return statuses;
+	}
+
+	/**
+	 * Returns the cached status of the given models that are not marked as
+	 * dirty. In contrast to {@link #get(Collection, List)}, the versions of
+	 * the models are not checked; thus, the descriptors can be older than
+	 * the cached status (e.g. when the view is refreshed after a
+	 * re-validation).
+	 */
+	synchronized List<ModelStatus> getCurrent(
+			Collection<CategorizedDescriptor> descriptors) {
+		List<ModelStatus> statuses = new ArrayList<>();
+		if (isClosed())
+			return statuses;
+		for (CategorizedDescriptor d : descriptors) {
+			String key = key(d.type, d.id);
+			Entry e = entries.get(key);
+			if (e == null || dirty.contains(key))
+				continue;
+			ModelStatus status = e.toStatus(d.type, d.id);
+			if (status != null) {
+				statuses.add(status);
+			}
+		}
+		return statuses;
+	}
+
+	/**
+	 * Stores the validation status of the given model. The references are
+	 * all references of the model (not only the broken ones) and are used to
+	 * invalidate the status when a referenced model changes. The generation
+	 * is the value of {@link #generation()} when the validation started; if
+	 * the model was marked as dirty after that, it stays dirty.
+	 */
+	synchronized void put(CategorizedDescriptor d, ModelStatus status,
+			Collection<Reference> references, long generation) {
+		if (isClosed())
+			return;
+		String key = key(d.type, d.id);
+		Entry old = entries.get(key);
+		if (old != null && old.dependencies != null) {
+			for (String dependency : old.dependencies) {
+				dependents.remove(dependency + SEP + key);
+			}
+		}
+		Set<String> dependencies = new HashSet<>();
+		if (references != null) {
+			for (Reference ref : references) {
+				if (ref.id == 0 || ref.getType() == null)
+					continue;
+				dependencies.add(ref.getType().getName() + SEP + ref.id);
+			}
+		}
+		for (String dependency : dependencies) {
+			dependents.add(dependency + SEP + key);
+		}
+		Entry e = Entry.of(d, status);
+		e.dependencies = dependencies.toArray(new String[dependencies.size()]);
+		entries.put(key, e);
+		Long since = dirtySince.get(key);
+		if (since == null || since <= generation) {
+			dirty.remove(key);
+			dirtySince.remove(key);
+		}
+	}
+
+	synchronized void commit() {
+		if (!isClosed()) {
+			db.commit();
+		}
+	}
+
+	/**
+	 * Marks the cached status of the given models and of the models that
+	 * reference them as dirty and schedules the re-validation of the dirty
+	 * models. Models that were never validated are ignored.
+	 */
+	public synchronized void invalidate(List<BaseDescriptor> descriptors) {
+		if (isClosed() || descriptors == null || descriptors.isEmpty())
+			return;
+		if (entries.isEmpty())
+			return;
+		boolean chainsChanged = false;
+		for (BaseDescriptor d : descriptors) {
+			if (d == null || d.type == null)
+				continue;
+			String key = key(d.type, d.id);
+			if (entries.containsKey(key)) {
+				setDirty(key);
+			}
+			if (d.type.getModelClass() == null)
+				continue;
+			String prefix = d.type.getModelClass().getName() + SEP + d.id
+					+ SEP;
+			for (String dependent : dependents.subSet(
+					prefix, true, prefix + '\uffff', true)) {
+				setDirty(dependent.substring(prefix.length()));
+			}
+			if (d.type == ModelType.UNIT_GROUP
+					|| d.type == ModelType.FLOW_PROPERTY) {
+				chainsChanged = true;
+			}
+		}
+		if (chainsChanged) {
+			// the flow chains of processes and LCIA methods go over flow
+			// properties and units which are not root entities
+			for (String key : entries.keySet()) {
+				if (key.startsWith(ModelType.PROCESS.name() + SEP)
+						|| key.startsWith(ModelType.IMPACT_METHOD.name() + SEP)) {
+					setDirty(key);
+				}
+			}
+		}
+		db.commit();
+		if (!dirty.isEmpty()) {
+			scheduleValidation();
+		}
+	}
+
+	/**
+	 * Marks the given models as dirty and schedules their validation in the
+	 * background.
+	 */
+	public synchronized void markDirty(
+			Collection<CategorizedDescriptor> descriptors) {
+		if (isClosed() || descriptors == null || descriptors.isEmpty())
+			return;
+		for (CategorizedDescriptor d : descriptors) {
+			setDirty(key(d.type, d.id));
+		}
+		db.commit();
+		scheduleValidation();
+	}
+
+	private void setDirty(String key) {
+		dirty.add(key);
+		dirtySince.put(key, ++generation);
+	}
+
+	/** Returns the keys of the dirty models. */
+	synchronized List<String> getDirty() {
+		if (isClosed())
+			return new ArrayList<>();
+		return new ArrayList<>(dirty);
+	}
+
+	/**
+	 * Removes the given key from the cache; e.g. when the model was deleted.
+	 */
+	synchronized void remove(String key) {
+		if (isClosed())
+			return;
+		Entry e = entries.remove(key);
+		if (e != null && e.dependencies != null) {
+			for (String dependency : e.dependencies) {
+				dependents.remove(dependency + SEP + key);
+			}
+		}
+		dirty.remove(key);
+		dirtySince.remove(key);
+	}
+
+	/**
+	 * Schedules the re-validation of the dirty models in a background job
+	 * with a low priority.
+	 */
+	synchronized void scheduleValidation() {
+		if (isClosed())
+			return;
+		if (job == null) {
+			job = new ValidationJob(this);
+		}
+		// a short delay to collect the events of subsequent changes
+		job.schedule(2000);
+	}
+
+	static String key(ModelType type, long id) {
+		return type.name() + SEP + id;
+	}
+
+	static ModelType typeOf(String key) {
+		try {
+			return ModelType.valueOf(key.substring(0, key.indexOf(SEP)));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	static long idOf(String key) {
+		try {
+			return Long.parseLong(key.substring(key.indexOf(SEP) + 1));
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
+	private static class Entry implements Serializable {
+
+		private static final long serialVersionUID = 3547425104624328105L;
+
+		long version;
+		long lastChange;
+		boolean validReferenceSet;
+		String[] dependencies;
+
+		// the broken references as columns
+		String[] properties;
+		String[] types;
+		long[] ids;
+		long[] ownerIds;
+		String[] nestedProperties;
+		String[] nestedOwnerTypes;
+		long[] nestedOwnerIds;
+		boolean[] optional;
+
+		static Entry of(CategorizedDescriptor d, ModelStatus status) {
+			Entry e = new Entry();
+			e.version = d.version;
+			e.lastChange = d.lastChange;
+			e.validReferenceSet = status.validReferenceSet;
+			int n = status.missing.size();
+			e.properties = new String[n];
+			e.types = new String[n];
+			e.ids = new long[n];
+			e.ownerIds = new long[n];
+			e.nestedProperties = new String[n];
+			e.nestedOwnerTypes = new String[n];
+			e.nestedOwnerIds = new long[n];
+			e.optional = new boolean[n];
+			for (int i = 0; i < n; i++) {
+				Reference ref = status.missing.get(i);
+				e.properties[i] = ref.property;
+				e.types[i] = ref.getType() != null
+						? ref.getType().getName()
+						: null;
+				e.ids[i] = ref.id;
+				e.ownerIds[i] = ref.ownerId;
+				e.nestedProperties[i] = ref.nestedProperty;
+				e.nestedOwnerTypes[i] = ref.nestedOwnerType;
+				e.nestedOwnerIds[i] = ref.nestedOwnerId;
+				e.optional[i] = ref.optional;
+			}
+			return e;
+		}
+
+		/**
+		 * Creates the model status from this entry. Returns null if a
+		 * reference could not be restored.
+		 */
+		ModelStatus toStatus(ModelType type, long id) {
+			List<Reference> missing = new ArrayList<>();
+			try {
+				for (int i = 0; i < ids.length; i++) {
+					missing.add(new Reference(properties[i],
+							classOf(types[i]), ids[i],
+							type.getModelClass(), ownerIds[i],
+							nestedProperties[i],
+							classOf(nestedOwnerTypes[i]),
+							nestedOwnerIds[i], optional[i]));
+				}
+			} catch (Exception e) {
+				Logger log = LoggerFactory.getLogger(ValidationCache.class);
+				log.warn("failed to restore validation status", e);
+				return null;
+			}
+			return new ModelStatus(type, id, missing, validReferenceSet);
+		}
+
+		@SuppressWarnings("unchecked")
+		private Class<? extends AbstractEntity> classOf(String name)
+				throws ClassNotFoundException {
+			if (name == null)
+				return null;
+			return (Class<? extends AbstractEntity>) Class.forName(name);
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.openlca.app.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.openlca.app.M;
+import org.openlca.app.db.Database;
+import org.openlca.core.database.Daos;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.descriptors.CategorizedDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-validates the dirty models of a validation cache in the background and
+ * refreshes the validation view when it is finished.
+ */
+class ValidationJob extends Job {
+
+	private final ValidationCache cache;
+
+	ValidationJob(ValidationCache cache) {
+		super(M.ValidatingDatabase);
+		this.cache = cache;
+		setPriority(Job.DECORATE);
+		setSystem(true);
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		IDatabase db = cache.getDatabase();
+		if (db == null || db != Database.get())
+			return Status.CANCEL_STATUS;
+		try {
+			// models that are invalidated from now on stay dirty
+			long generation = cache.generation();
+			List<CategorizedDescriptor> descriptors = new ArrayList<>();
+			for (String key : cache.getDirty()) {
+				if (monitor.isCanceled())
+					return Status.CANCEL_STATUS;
+				ModelType type = ValidationCache.typeOf(key);
+				long id = ValidationCache.idOf(key);
+				CategorizedDescriptor d = type == null || !type.isCategorized()
+						? null
+						: Daos.categorized(db, type).getDescriptor(id);
+				if (d == null) {
+					// the model was deleted
+					cache.remove(key);
+					continue;
+				}
+				descriptors.add(d);
+			}
+			if (!descriptors.isEmpty()) {
+				DatabaseValidation.with(monitor)
+						.cache(cache, generation)
+						.evaluate(descriptors);
+			} else {
+				cache.commit();
+			}
+			if (!monitor.isCanceled()) {
+				ValidationView.refresh();
+			}
+			return Status.OK_STATUS;
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("Failed to re-validate models", e);
+			return Status.CANCEL_STATUS;
+		}
+	}
+
+}
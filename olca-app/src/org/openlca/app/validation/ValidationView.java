@@ -17,6 +17,7 @@ import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.SashForm;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.part.ViewPart;
@@ -50,6 +51,9 @@ public class ValidationView extends ViewPart {
 	private static ValidationView instance;
 	private TreeViewer viewer;
 
+	/** The models of the last validation. */
+	private volatile Set<CategorizedDescriptor> descriptors;
+
 	public ValidationView() {
 		instance = this;
 	}
@@ -83,30 +87,72 @@ public class ValidationView extends ViewPart {
 		Trees.bindColumnWidths(viewer.getTree(), 0.5, 0.5);
 	}
 
+	/**
+	 * Shows the validation status of the models in the given selection. The
+	 * status of the models that are in the validation cache is shown
+	 * immediately; outdated models are validated in a background job which
+	 * refreshes the view when it is finished. Only when no model is in the
+	 * cache, the validation runs in a progress dialog.
+	 */
 	public static void validate(Collection<INavigationElement<?>> selection) {
 		IWorkbenchPage page = PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage();
 		try {
 			ValidationView instance = (ValidationView) page.showView("views.problems");
+			ValidationCache cache = Database.getValidationCache();
 			List<ModelStatus> result = new ArrayList<>();
+			List<CategorizedDescriptor> outdated = new ArrayList<>();
 			ProgressMonitorDialog dialog = new ProgressMonitorDialog(UI.shell());
 			dialog.run(true, true, (monitor) -> {
 				monitor.beginTask(M.Initializing, IProgressMonitor.UNKNOWN);
+				long generation = cache != null ? cache.generation() : 0;
 				Set<CategorizedDescriptor> descriptors = Navigator.collectDescriptors(selection);
-				DatabaseValidation validation = DatabaseValidation.with(monitor);
-				result.addAll(validation.evaluate(descriptors));
+				instance.descriptors = descriptors;
+				if (cache != null) {
+					result.addAll(cache.get(descriptors, outdated));
+				} else {
+					outdated.addAll(descriptors);
+				}
+				if (!result.isEmpty() || outdated.isEmpty())
+					return;
+				DatabaseValidation validation = DatabaseValidation.with(monitor)
+						.cache(cache, generation);
+				result.addAll(validation.evaluate(outdated));
+				outdated.clear();
 			});
 			StatusList[] model = createModel(result);
 			instance.viewer.setInput(model);
-			if (model.length == 0)
+			if (!outdated.isEmpty()) {
+				cache.markDirty(outdated);
+			} else if (model.length == 0) {
 				MsgBox.info(M.DatabaseValidationCompleteNoErrorsWereFound);
+			}
 		} catch (Exception e) {
 			log.error("Error validating database", e);
 		}
 	}
 
+	/**
+	 * Updates the view with the current status of the last validated models
+	 * from the validation cache. This method can be called from any thread.
+	 */
+	static void refresh() {
+		ValidationView view = instance;
+		ValidationCache cache = Database.getValidationCache();
+		if (view == null || view.descriptors == null || cache == null)
+			return;
+		List<ModelStatus> result = cache.getCurrent(view.descriptors);
+		StatusList[] model = createModel(result);
+		Display.getDefault().asyncExec(() -> {
+			if (instance != view || view.viewer.getControl().isDisposed())
+				return;
+			view.viewer.setInput(model);
+		});
+	}
+
 	public static void clear() {
 		if (instance == null)
 			return;
+		instance.descriptors = null;
 		instance.viewer.setInput(new Object[0]);
 	}
 